@@ -37,12 +37,17 @@ android {
     buildFeatures {
         compose = true
     }
+    testOptions {
+        // ReplayTransceiver 等类在 JVM 单元测试中运行，android.util.Log 返回默认值而不是抛出异常
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
 
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.lifecycle.runtime.ktx)
+    implementation(libs.kotlinx.coroutines.core)
     implementation(libs.androidx.activity.compose)
     implementation(platform(libs.androidx.compose.bom))
     implementation(libs.androidx.compose.ui)
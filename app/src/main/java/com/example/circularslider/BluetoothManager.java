@@ -23,13 +23,22 @@ public class BluetoothManager extends Transceiver {
     // SPP UUID (Serial Port Profile): "00001101-0000-1000-8000-00805F9B34FB"
     private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
 
+    // 接收缓冲区大小：每次 read() 最多读取的字节数
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    // 发送块大小：WritingTask 每次从 txBuffer 最多取出的字节数 (与 txBuffer 容量相同，一次取空)
+    private static final int WRITE_CHUNK_SIZE = 2048;
+
     private final BluetoothAdapter btAdapter;
     private BluetoothSocket btSocket;
 
-    // 线程引用
-    private ConnectThread connectThread;
-    private ReadingThread readingThread;
-    private WritingThread writingThread;
+    // 任务引用 (在 TransportExecutors 的线程上运行)
+    private ConnectTask connectTask;
+    private ReadingTask readingTask;
+    private WritingTask writingTask;
+
+    // sendEncodedBlocking() 等待空间时重新检查连接状态的间隔
+    private static final long TX_WAIT_MS = 100;
 
     // 发送 (Tx) 缓冲区 (Q.3.5-5)。容量 2K 字节。
     private ByteRingBuffer txBuffer = new ByteRingBuffer(2048);
@@ -40,127 +49,131 @@ public class BluetoothManager extends Transceiver {
     }
 
     // ----------------------------------------------------------------------
-    // --- 内部线程类 ---
+    // --- 内部任务类 ---
     // ----------------------------------------------------------------------
 
     /**
-     * ConnectThread (Q.3.5-3): 负责处理蓝牙连接的线程。
+     * ConnectTask (Q.3.5-3): 负责处理蓝牙连接的任务 (在 connectExecutor 上运行)。
      */
-    private class ConnectThread extends Thread {
+    private class ConnectTask extends TransportExecutors.Task {
         private final BluetoothDevice device;
+        private final long epoch;
 
         // 压制权限警告：假设 BTSetup 已在 connect() 调用前处理了 BLUETOOTH_SCAN 权限
         @SuppressLint("MissingPermission")
-        public ConnectThread(BluetoothDevice device) {
+        public ConnectTask(BluetoothDevice device, long epoch) {
             this.device = device;
+            this.epoch = epoch;
             // 确保连接前取消任何正在进行的设备发现
             if (btAdapter != null && btAdapter.isDiscovering()) {
                 btAdapter.cancelDiscovery();
             }
         }
 
-        public void run() {
-            Log.i(TAG, "ConnectThread started for " + device.getAddress());
-            updateConnectionStatus(STATE_CONNECTING);
+        @Override
+        protected void execute() {
+            Log.i(TAG, "ConnectTask started for " + device.getAddress());
 
             try {
                 // 1. 创建 RFCOMM Socket
-                btSocket = device.createRfcommSocketToServiceRecord(SPP_UUID);
-
-                // 2. 连接到 Socket (阻塞调用)
-                btSocket.connect();
+                BluetoothSocket socket = device.createRfcommSocketToServiceRecord(SPP_UUID);
+                synchronized (BluetoothManager.this) {
+                    if (!running) {
+                        socket.close();
+                        return;
+                    }
+                    btSocket = socket;
+                }
 
-                // 3. 连接成功，启动数据传输线程
-                Log.i(TAG, "Connection successful. Starting data threads.");
+                // 2. 连接到 Socket (阻塞调用，cancel() 关闭 Socket 使其立即返回)
+                socket.connect();
 
-                startConnectedThreads(btSocket);
+                // 3. 连接成功，启动数据传输任务
+                Log.i(TAG, "Connection successful. Starting data tasks.");
 
-                updateConnectionStatus(STATE_CONNECTED);
+                if (startConnectedTasks(this, socket)) {
+                    // 读写任务可能已经报告了连接丢失，此时转换被拒绝
+                    updateConnectionStatus(epoch, STATE_CONNECTED);
+                }
             } catch (IOException e) {
-                Log.e(TAG, "Connection failed: " + e.getMessage());
-                // 无法连接，报告断开
-                updateConnectionStatus(STATE_NOT_CONNECTED);
-                closeSocket();
-            } finally {
-                connectThread = null;
+                if (running) {
+                    Log.e(TAG, "Connection failed: " + e.getMessage());
+                    // 无法连接，关闭 Socket 后报告断开 (监听器可能立即重新连接)
+                    closeSocket();
+                    updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+                }
             }
         }
 
         /**
          * 外部调用：取消正在进行的连接，关闭 Socket。
          */
-        public void cancel() {
+        @Override
+        protected void onCancel() {
             closeSocket();
         }
     }
 
     /**
-     * ReadingThread (UML 图 5): 负责从 InputStream 异步读取数据并传递给 FrameProcessor。
+     * ReadingTask (UML 图 5): 负责从 InputStream 异步读取数据并传递给 FrameProcessor。
      */
-    private class ReadingThread extends Thread {
+    private class ReadingTask extends TransportExecutors.Task {
         private final InputStream mmInStream;
-        private volatile boolean running = true;
+        private final long epoch;
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
 
-        public ReadingThread(BluetoothSocket socket) throws IOException {
+        public ReadingTask(BluetoothSocket socket, long epoch) throws IOException {
             mmInStream = socket.getInputStream();
+            this.epoch = epoch;
         }
 
-        public void run() {
-            Log.i(TAG, "ReadingThread started.");
+        @Override
+        protected void execute() {
+            Log.i(TAG, "ReadingTask started.");
 
             while (running) {
                 try {
-                    // 读取单个字节 (阻塞调用)
-                    byte data = (byte) mmInStream.read();
-
-                    if (frameProcessor != null) {
-                        // 传递给 FrameProcessor 进行解码
-                        frameProcessor.fromFrame(data);
-
-                        // 检查是否有完整帧等待读取
-                        if (frameProcessor.framePending()) {
-                            FrameProcessor.Data decoded = frameProcessor.getData();
-                            if (listener != null) {
-                                // 传递给监听器 (OscilloManager 将处理线程切换到 UI)
-                                listener.onTransceiverDataReceived(decoded);
-                            }
-                        }
+                    // 读取一块数据 (阻塞调用)
+                    int count = mmInStream.read(readBuffer);
+                    if (count < 0) {
+                        throw new IOException("End of stream.");
                     }
+
+                    // 记录、解码并分发 (Transceiver.onBytesReceived)
+                    onBytesReceived(readBuffer, 0, count);
                 } catch (IOException e) {
                     // 连接丢失或 Socket 关闭
-                    Log.e(TAG, "Input stream was disconnected or closed.", e);
-                    if(running) {
+                    if (running) {
                         // 只有在非手动断开时才报告连接丢失
-                        updateConnectionStatus(STATE_NOT_CONNECTED);
+                        Log.e(TAG, "Input stream was disconnected or closed.", e);
+                        connectionLost(epoch);
                     }
-                    running = false;
                     break;
                 }
             }
         }
-
-        public void cancel() {
-            running = false;
-        }
     }
 
     /**
-     * WritingThread (Q.3.5-6): 负责从 ByteRingBuffer 中读取数据并写入 OutputStream。
+     * WritingTask (Q.3.5-6): 负责从 ByteRingBuffer 中读取数据并写入 OutputStream。
      */
-    private class WritingThread extends Thread {
+    private class WritingTask extends TransportExecutors.Task {
         private final OutputStream mmOutStream;
-        private volatile boolean running = true;
+        private final long epoch;
+        private final byte[] chunk = new byte[WRITE_CHUNK_SIZE];
 
-        public WritingThread(BluetoothSocket socket) throws IOException {
+        public WritingTask(BluetoothSocket socket, long epoch) throws IOException {
             mmOutStream = socket.getOutputStream();
+            this.epoch = epoch;
         }
 
-        public void run() {
-            Log.i(TAG, "WritingThread started.");
+        @Override
+        protected void execute() {
+            Log.i(TAG, "WritingTask started.");
 
             while (running) {
                 try {
-                    byte dataToSend;
+                    int n;
 
                     // 使用 txBuffer 作为锁对象
                     synchronized (txBuffer) {
@@ -172,31 +185,36 @@ public class BluetoothManager extends Transceiver {
 
                         if (!running) break;
 
-                        // 2. 从 Buffer 中提取数据
-                        dataToSend = txBuffer.get();
+                        // 2. 一次取出所有可用字节，并唤醒等待空间的 sendEncodedBlocking()
+                        n = txBuffer.get(chunk, 0, chunk.length);
+                        txBuffer.notifyAll();
                     }
 
-                    // 3. 写入 OutputStream (阻塞调用)
-                    mmOutStream.write(dataToSend);
+                    // 3. 整块写入 OutputStream (阻塞调用)，每块只 flush 一次
+                    mmOutStream.write(chunk, 0, n);
                     mmOutStream.flush();
 
                 } catch (IOException e) {
-                    Log.e(TAG, "Output stream write error.", e);
-                    if(running) {
-                        updateConnectionStatus(STATE_NOT_CONNECTED);
+                    if (running) {
+                        Log.e(TAG, "Output stream write error.", e);
+                        connectionLost(epoch);
                     }
-                    running = false;
                     break;
                 } catch (InterruptedException e) {
-                    Log.w(TAG, "WritingThread interrupted.", e);
-                    running = false;
-                    Thread.currentThread().interrupt();
+                    // cancel() 中断：正常退出
+                    break;
                 }
             }
         }
 
-        public void cancel() {
-            running = false;
+        /**
+         * 唤醒在 txBuffer.wait() 中等待的写任务，使其看到 running == false 并退出。
+         */
+        @Override
+        protected void onCancel() {
+            synchronized (txBuffer) {
+                txBuffer.notifyAll();
+            }
         }
     }
 
@@ -207,51 +225,64 @@ public class BluetoothManager extends Transceiver {
     @SuppressLint("MissingPermission")
     @Override
     public void connect(String deviceAddress) { // Q.3.5-4
-        if (state == STATE_CONNECTED || state == STATE_CONNECTING) {
-            Log.w(TAG, "Already connected or connecting.");
-            return;
-        }
+        ConnectTask task;
+        TransportExecutors.Task[] previous;
+        synchronized (this) {
+            // 1. NOT_CONNECTED -> CONNECTING (原子操作，并发的 connect() 只有一个成功)
+            long epoch = beginConnect();
+            if (epoch < 0) {
+                Log.w(TAG, "Already connected or connecting.");
+                return;
+            }
 
-        if (btAdapter == null || !btAdapter.isEnabled()) {
-            Log.e(TAG, "Bluetooth adapter not available or not enabled.");
-            updateConnectionStatus(STATE_NOT_CONNECTED);
-            return;
-        }
+            if (btAdapter == null || !btAdapter.isEnabled()) {
+                Log.e(TAG, "Bluetooth adapter not available or not enabled.");
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+                return;
+            }
+
+            // 格式错误的地址 (例如损坏的缓存) 会让 getRemoteDevice() 抛出异常，状态将停留在 CONNECTING
+            if (deviceAddress == null || !BluetoothAdapter.checkBluetoothAddress(deviceAddress)) {
+                Log.e(TAG, "Invalid Bluetooth address: " + deviceAddress);
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+                return;
+            }
 
-        // 1. 停止所有现有连接/线程
-        disconnect();
+            // 2. 取下上一次连接遗留的任务
+            previous = detachTasks();
 
-        // 2. 获取目标设备
-        BluetoothDevice device = btAdapter.getRemoteDevice(deviceAddress);
+            // 3. 获取目标设备，创建新的连接任务
+            BluetoothDevice device = btAdapter.getRemoteDevice(deviceAddress);
+            task = new ConnectTask(device, epoch);
+            connectTask = task;
+        }
 
-        // 3. 启动新的连接线程
-        connectThread = new ConnectThread(device);
-        connectThread.start();
+        // 4. 关闭旧 Socket 并等待旧任务结束，然后提交新的连接任务
+        closeSocket();
+        TransportExecutors.cancelAndAwait(previous);
+        if (!task.submit(getExecutors().getConnectExecutor())) {
+            updateConnectionStatus(task.epoch, STATE_NOT_CONNECTED);
+        }
     }
 
     @Override
     public void disconnect() { // Q.3.5-4
         Log.i(TAG, "Disconnecting Bluetooth connection.");
 
-        // 1. 停止所有线程
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
-        }
-        if (readingThread != null) {
-            readingThread.cancel();
-            readingThread = null;
+        // 1. 取消所有任务并关闭 Socket
+        long epoch;
+        TransportExecutors.Task[] tasks;
+        synchronized (this) {
+            epoch = getEpoch();
+            tasks = detachTasks();
         }
-        if (writingThread != null) {
-            writingThread.cancel();
-            writingThread = null;
-        }
-
-        // 2. 关闭 Socket
         closeSocket();
 
-        // 3. 报告断开连接
-        updateConnectionStatus(STATE_NOT_CONNECTED);
+        // 2. 等待任务结束 (从任务自身的线程调用时不等待自己)
+        TransportExecutors.cancelAndAwait(tasks);
+
+        // 3. 报告断开连接 (只影响被取消的这次连接)
+        updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
     }
 
     @Override
@@ -260,27 +291,60 @@ public class BluetoothManager extends Transceiver {
             Log.e(TAG, "FrameProcessor is not attached. Cannot send data.");
             return;
         }
-        if (state != STATE_CONNECTED || writingThread == null) {
-            Log.e(TAG, "Not connected or WritingThread not running. Cannot send data.");
-            return;
-        }
 
         // 1. 使用 FrameProcessor 编码数据 (Q.3.7-1)
         byte[] frameToSend = frameProcessor.toFrame(data);
 
-        // 2. 将 frameToSend 放入 Tx Buffer
-        synchronized (txBuffer) {
-            int bytesPushed = txBuffer.put(frameToSend);
+        // 2. 放入 Tx Buffer
+        sendEncoded(frameToSend, 0, frameToSend.length);
+    }
 
-            if (bytesPushed < frameToSend.length) {
-                Log.e(TAG, "Tx Buffer overflow. Dropping " + (frameToSend.length - bytesPushed) + " bytes.");
+    @Override
+    public boolean sendEncoded(byte[] frame, int offset, int length) {
+        if (getStatus() != STATE_CONNECTED || writingTask == null) {
+            Log.e(TAG, "Not connected or WritingTask not running. Cannot send data.");
+            return false;
+        }
+
+        // 将帧放入 Tx Buffer (空间不足时丢弃整帧，不发送被截断的帧)
+        synchronized (txBuffer) {
+            if (txBuffer.availableSpace() < length) {
+                Log.e(TAG, "Tx Buffer overflow. Dropping frame of " + length + " bytes.");
+                return false;
             }
+            txBuffer.put(frame, offset, length);
+            onBytesSent(frame, offset, length);
 
-            // 3. 通知 WritingThread 有新数据
-            txBuffer.notify();
+            // 通知 WritingTask 有新数据 (等待者可能还包括 sendEncodedBlocking())
+            txBuffer.notifyAll();
         }
 
-        Log.d(TAG, "Frame encoded and pushed to Tx buffer. Size: " + frameToSend.length);
+        Log.d(TAG, "Frame pushed to Tx buffer. Size: " + length);
+        return true;
+    }
+
+    @Override
+    public boolean sendEncodedBlocking(byte[] frame, int offset, int length) {
+        if (length > txBuffer.capacity()) {
+            return false;
+        }
+        synchronized (txBuffer) {
+            // 定时等待：断开时 WritingTask 可能已退出，不会再腾出空间
+            while (txBuffer.availableSpace() < length) {
+                if (getStatus() != STATE_CONNECTED) return false;
+                try {
+                    txBuffer.wait(TX_WAIT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (getStatus() != STATE_CONNECTED || writingTask == null) return false;
+            txBuffer.put(frame, offset, length);
+            onBytesSent(frame, offset, length);
+            txBuffer.notifyAll();
+        }
+        return true;
     }
 
     // ----------------------------------------------------------------------
@@ -288,29 +352,74 @@ public class BluetoothManager extends Transceiver {
     // ----------------------------------------------------------------------
 
     /**
-     * 启动连接成功后必须运行的读写线程。
+     * 提交连接成功后必须运行的读写任务。
+     * @return false 如果连接任务已被取消或执行器已关闭。
      */
-    private synchronized void startConnectedThreads(BluetoothSocket socket) throws IOException {
-        // 取消所有旧的连接/读写线程
-        if (readingThread != null) readingThread.cancel();
-        if (writingThread != null) writingThread.cancel();
+    private boolean startConnectedTasks(ConnectTask owner, BluetoothSocket socket) throws IOException {
+        ReadingTask reader = new ReadingTask(socket, owner.epoch);
+        WritingTask writer = new WritingTask(socket, owner.epoch);
+        synchronized (this) {
+            if (connectTask != owner || !owner.running) {
+                return false; // 连接期间被 disconnect() 取消
+            }
+            connectTask = null;
+            readingTask = reader;
+            writingTask = writer;
+        }
+        TransportExecutors executors = getExecutors();
+        if (!reader.submit(executors.getIoExecutor()) || !writer.submit(executors.getIoExecutor())) {
+            connectionLost(owner.epoch);
+            return false;
+        }
+        return true;
+    }
 
-        // 启动新的读写线程
-        readingThread = new ReadingThread(socket);
-        readingThread.start();
+    /**
+     * 读写任务检测到连接丢失：取消另一个任务、关闭 Socket 并报告断开 (只报告一次)。
+     * 不在这里等待任务结束，下一次 connect()/disconnect() 会等待。
+     * @param epoch 检测到丢失的任务所属连接的 epoch。
+     */
+    private void connectionLost(long epoch) {
+        synchronized (this) {
+            if (epoch != getEpoch()) {
+                return; // 已经被新的连接替换
+            }
+            if (readingTask == null && writingTask == null) {
+                return; // 已经断开
+            }
+            if (readingTask != null) readingTask.cancel();
+            if (writingTask != null) writingTask.cancel();
+        }
+        closeSocket();
+        updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+    }
 
-        writingThread = new WritingThread(socket);
-        writingThread.start();
+    /**
+     * 取出并清空所有任务引用，同时请求它们停止。
+     */
+    private synchronized TransportExecutors.Task[] detachTasks() {
+        TransportExecutors.Task[] tasks = { connectTask, readingTask, writingTask };
+        connectTask = null;
+        readingTask = null;
+        writingTask = null;
+        for (TransportExecutors.Task task : tasks) {
+            if (task != null) task.cancel();
+        }
+        return tasks;
     }
 
     /**
      * 关闭蓝牙 Socket。
      */
     private void closeSocket() {
-        if (btSocket != null) {
+        BluetoothSocket socket;
+        synchronized (this) {
+            socket = btSocket;
+            btSocket = null;
+        }
+        if (socket != null) {
             try {
-                btSocket.close();
-                btSocket = null;
+                socket.close();
             } catch (IOException e) {
                 Log.e(TAG, "Failed to close socket", e);
             }
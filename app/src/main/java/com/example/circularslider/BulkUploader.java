@@ -0,0 +1,278 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BulkUploader 类：把大块数据 (波形表、固件映像等) 从 ReadableByteChannel 流式上传到设备。
+ *
+ * 数据被切成块，每块一个帧：
+ * - DATA：[CMD_BULK_DATA][偏移量 32 位大端序][数据...]；
+ * - END：[CMD_BULK_END][总长度 32 位][CRC-32 32 位]，设备据此校验整个映像 (缺块或损坏时可以要求重传)。
+ *
+ * 流水线：上传线程读取并编码下一块的同时，Transceiver 的写任务正在写出上一块。
+ * 编码好的帧通过 Transceiver.sendEncodedBlocking() 整帧进入发送缓冲区，缓冲区满时上传线程等待 (背压)，
+ * 而不是像反复调用 send() 那样溢出发送缓冲区。读取和编码使用预分配的缓冲区，每块没有分配。
+ *
+ * 本层不做重传。帧的完整性模式与链路协商的一致 (Transceiver.getIntegrityMode())。
+ * 统计的字节数是已进入发送缓冲区的数据，长时间上传的平均速率即链路的持续吞吐量。
+ */
+public class BulkUploader {
+
+    private static final String TAG = "BulkUploader";
+
+    // 命令 ID
+    public static final byte CMD_BULK_DATA = (byte) 0xB0;
+    public static final byte CMD_BULK_END = (byte) 0xB1;
+
+    // 命令 ID + 32 位偏移量
+    private static final int HEADER_SIZE = 5;
+    public static final int MAX_CHUNK_SIZE = SampleDecoder.MAX_PARAM_SIZE - 1 - HEADER_SIZE;
+
+    // 最坏情况 (每个字节都要转义) 下帧长也不超过 BluetoothManager 的 2K 发送缓冲区
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    public static final long PROGRESS_INTERVAL_MS = 100;
+
+    private static final long MAX_UPLOAD_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * 上传进度的接收者。
+     */
+    public interface ProgressListener {
+        /**
+         * 在上传线程上调用，最多每 PROGRESS_INTERVAL_MS 一次，上传完成时再调用一次。
+         * @param bytesSent 已进入发送缓冲区的数据字节数。
+         * @param totalBytes 总字节数，未知时为 -1。
+         * @param bytesPerSecond 从开始到现在的平均速率 (字节/秒)。
+         */
+        void onProgress(long bytesSent, long totalBytes, double bytesPerSecond);
+    }
+
+    private final Transceiver transceiver;
+    private final int chunkSize;
+
+    // 只在上传线程上使用 (upload() 是同步的)
+    private final FrameProcessor encoder = new FrameProcessor();
+    private final byte[] payload;
+    private final ByteBuffer chunk;
+    private final byte[] frame;
+    private final byte[] endPayload = new byte[9];
+    private final byte[] endFrame = new byte[FrameProcessor.maxFrameSize(9)];
+
+    private volatile ProgressListener progressListener;
+    // uploadThread 的设置、清除和中断都在 threadLock 内进行：cancel() 只能中断仍在进行的上传
+    private final Object threadLock = new Object();
+    private volatile Thread uploadThread;
+    private volatile boolean cancelled = false;
+
+    // 统计 (当前或最近一次上传)
+    private volatile long bytesSent = 0;
+    private volatile long framesSent = 0;
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+    private volatile long uploads = 0;
+
+    public BulkUploader(Transceiver transceiver) {
+        this(transceiver, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param transceiver 上传使用的链路。
+     * @param chunkSize 每帧的数据字节数 (1 到 MAX_CHUNK_SIZE)。编码后的帧必须能放进链路的发送缓冲区。
+     */
+    public BulkUploader(Transceiver transceiver, int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.transceiver = transceiver;
+        this.chunkSize = chunkSize;
+        this.payload = new byte[HEADER_SIZE + chunkSize];
+        this.chunk = ByteBuffer.wrap(payload);
+        this.frame = new byte[FrameProcessor.maxFrameSize(HEADER_SIZE + chunkSize)];
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    // --------------------------------------------------------
+    // --- 上传 ---
+    // --------------------------------------------------------
+
+    /**
+     * 把 source 的全部内容上传到设备 (阻塞直到所有帧进入发送缓冲区)。同一时刻只进行一次上传。
+     * @param source 数据源 (阻塞模式)，读到末尾为止，不会被关闭。
+     * @param totalBytes 总字节数，仅用于进度报告，未知时传 -1。
+     * @return 上传的字节数。
+     * @throws InterruptedIOException 如果被 cancel() 取消。
+     * @throws IOException 如果读取 source 失败、链路断开，或帧大于链路的发送缓冲区。
+     */
+    public synchronized long upload(ReadableByteChannel source, long totalBytes) throws IOException {
+        synchronized (threadLock) {
+            cancelled = false;
+            uploadThread = Thread.currentThread();
+        }
+        bytesSent = 0;
+        framesSent = 0;
+        startNanos = System.nanoTime();
+        endNanos = 0;
+
+        long interval = TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MS);
+        long nextProgress = startNanos + interval;
+        long offset = 0;
+        int crc = Crc.CRC32_INIT;
+        try {
+            encoder.setIntegrityMode(transceiver.getIntegrityMode());
+            boolean eof = false;
+            while (!eof) {
+                // 1. 读取下一块 (尽量读满)
+                chunk.clear().position(HEADER_SIZE);
+                while (chunk.hasRemaining()) {
+                    int n = source.read(chunk);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    if (n == 0) break;
+                }
+                int length = chunk.position() - HEADER_SIZE;
+                if (length == 0) continue;
+                if (offset + length > MAX_UPLOAD_SIZE) {
+                    throw new IOException("Upload larger than " + MAX_UPLOAD_SIZE + " bytes");
+                }
+
+                // 2. 编码 (写任务同时在写出上一块)
+                payload[0] = CMD_BULK_DATA;
+                putInt(payload, 1, (int) offset);
+                crc = Crc.crc32Update(crc, payload, HEADER_SIZE, length);
+                int frameLength = encoder.toFrame(payload, 0, HEADER_SIZE + length, frame, 0);
+
+                // 3. 整帧进入发送缓冲区，满时等待
+                transmit(frame, frameLength);
+                offset += length;
+                bytesSent = offset;
+                framesSent++;
+
+                long now = System.nanoTime();
+                if (now >= nextProgress) {
+                    nextProgress = now + interval;
+                    reportProgress(now, totalBytes);
+                }
+            }
+
+            // 4. 结束帧：总长度和 CRC-32
+            endPayload[0] = CMD_BULK_END;
+            putInt(endPayload, 1, (int) offset);
+            putInt(endPayload, 5, Crc.crc32Final(crc));
+            transmit(endFrame, encoder.toFrame(endPayload, 0, endPayload.length, endFrame, 0));
+            endNanos = System.nanoTime();
+            uploads++;
+            reportProgress(endNanos, totalBytes);
+            Log.i(TAG, "Uploaded " + offset + " bytes in " + framesSent + " frames at "
+                    + Math.round(getBytesPerSecond() / 1024) + " KB/s");
+            return offset;
+        } finally {
+            if (endNanos == 0) endNanos = System.nanoTime();
+            synchronized (threadLock) {
+                uploadThread = null;
+                if (cancelled) {
+                    Thread.interrupted(); // 清除 cancel() 设置的中断状态 (之后 cancel() 不会再中断本线程)
+                }
+            }
+        }
+    }
+
+    /**
+     * 取消正在进行的上传 (任意线程)。upload() 抛出 InterruptedIOException。
+     * 已进入发送缓冲区的帧仍会发出，设备会因为缺少 END 帧而丢弃这次上传。
+     */
+    public void cancel() {
+        synchronized (threadLock) {
+            Thread t = uploadThread;
+            if (t != null) {
+                cancelled = true;
+                t.interrupt(); // 唤醒 sendEncodedBlocking() 中的等待
+            }
+        }
+    }
+
+    public boolean isUploading() {
+        return uploadThread != null;
+    }
+
+    private void transmit(byte[] encoded, int length) throws IOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Upload cancelled after " + bytesSent + " bytes");
+        }
+        if (!transceiver.sendEncodedBlocking(encoded, 0, length)) {
+            if (cancelled) {
+                throw new InterruptedIOException("Upload cancelled after " + bytesSent + " bytes");
+            }
+            throw new IOException("Link lost or frame of " + length + " bytes rejected after "
+                    + bytesSent + " bytes");
+        }
+    }
+
+    private void reportProgress(long now, long totalBytes) {
+        ProgressListener l = progressListener;
+        if (l != null) {
+            l.onProgress(bytesSent, totalBytes, rate(bytesSent, now - startNanos));
+        }
+    }
+
+    private static void putInt(byte[] dst, int offset, int value) {
+        dst[offset] = (byte) (value >>> 24);
+        dst[offset + 1] = (byte) (value >>> 16);
+        dst[offset + 2] = (byte) (value >>> 8);
+        dst[offset + 3] = (byte) value;
+    }
+
+    private static double rate(long bytes, long nanos) {
+        return nanos > 0 ? bytes * 1e9 / nanos : 0;
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回当前 (或最近一次) 上传已发送的数据字节数。
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * 返回当前 (或最近一次) 上传的 DATA 帧数。
+     */
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * 返回当前 (或最近一次) 上传的持续吞吐量 (字节/秒，从开始到现在或到结束)。
+     */
+    public double getBytesPerSecond() {
+        long start = startNanos;
+        if (start == 0) return 0;
+        long end = endNanos;
+        return rate(bytesSent, (end != 0 ? end : System.nanoTime()) - start);
+    }
+
+    /**
+     * 返回成功完成的上传次数。
+     */
+    public long getUploadCount() {
+        return uploads;
+    }
+}
@@ -83,6 +83,27 @@ public class ByteRingBuffer {
         return bytesPut;
     }
 
+    /**
+     * 向缓冲区中放入数组的一部分 (put byte[], offset, length)，使用 System.arraycopy 批量复制。
+     * @param data 源数组。
+     * @param offset 源起始位置。
+     * @param length 要放入的字节数。
+     * @return 实际放入的字节数 (受空闲空间限制)。
+     */
+    public synchronized int put(byte[] data, int offset, int length) {
+        int n = Math.min(length, capacity - count);
+        int first = Math.min(n, capacity - writeIndex);
+        System.arraycopy(data, offset, buffer, writeIndex, first);
+        System.arraycopy(data, offset + first, buffer, 0, n - first);
+        writeIndex = (writeIndex + n) % capacity;
+        count += n;
+
+        if (n > 0) {
+            notify();
+        }
+        return n;
+    }
+
     /**
      * 从缓冲区中取出一个字节 (get)。
      * 【注意】此方法在缓冲区为空时会抛出异常。
@@ -105,6 +126,24 @@ public class ByteRingBuffer {
         return b;
     }
 
+    /**
+     * 从缓冲区中批量取出字节 (get byte[])。缓冲区为空时返回 0，不抛出异常。
+     * 最多两次 System.arraycopy (环绕时分两段)，比逐字节 get() 少得多的加锁次数。
+     * @param dst 目标数组。
+     * @param offset 目标起始位置。
+     * @param length 最多取出的字节数。
+     * @return 实际取出的字节数。
+     */
+    public synchronized int get(byte[] dst, int offset, int length) {
+        int n = Math.min(length, count);
+        int first = Math.min(n, capacity - readIndex);
+        System.arraycopy(buffer, readIndex, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, n - first);
+        readIndex = (readIndex + n) % capacity;
+        count -= n;
+        return n;
+    }
+
     /**
      * 返回缓冲区中可读取的字节数 (bytesToRead)。
      */
@@ -112,6 +151,22 @@ public class ByteRingBuffer {
         return count;
     }
 
+    /**
+     * 丢弃缓冲区中的所有数据。
+     */
+    public synchronized void clear() {
+        readIndex = 0;
+        writeIndex = 0;
+        count = 0;
+    }
+
+    /**
+     * 返回缓冲区的总容量。
+     */
+    public int capacity() {
+        return capacity;
+    }
+
     /**
      * 返回缓冲区中可用的空闲空间。
      */
@@ -0,0 +1,57 @@
+package com.example.circularslider;
+
+/**
+ * calibration duty cycle 命令 (Table 1，ID 0x0A)：设置校准方波的占空比。
+ * 参数：dutycycle (1 byte)，0 到 100。设备回送相同的帧作为应答。
+ */
+public final class CalibrationDutyCycleCommand extends Command {
+
+    public static final byte ID = (byte) 0x0A;
+
+    private int percent;
+
+    public CalibrationDutyCycleCommand() {
+        super(ID);
+    }
+
+    /**
+     * 设置占空比。
+     * @param alpha 占空比 (0.0 到 1.0)，超出范围时截断。
+     */
+    public CalibrationDutyCycleCommand setDutyCycle(float alpha) {
+        return setPercent((int) (alpha * 100));
+    }
+
+    /**
+     * 设置占空比百分比 (超出 0 到 100 时截断)。
+     */
+    public CalibrationDutyCycleCommand setPercent(int percent) {
+        this.percent = Math.max(0, Math.min(100, percent));
+        return this;
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    public float getDutyCycle() {
+        return percent / 100f;
+    }
+
+    @Override
+    public int getParamLength() {
+        return 1;
+    }
+
+    @Override
+    protected void writeParams(byte[] dst, int offset) {
+        dst[offset] = (byte) percent;
+    }
+
+    @Override
+    protected boolean readParams(FrameProcessor.Data frame) {
+        if (frame.getParamLength() < 1) return false;
+        setPercent(frame.getParamByte(0));
+        return true;
+    }
+}
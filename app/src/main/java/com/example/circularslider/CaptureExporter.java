@@ -0,0 +1,327 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * CaptureExporter 类：把 FrameCaptureWriter 生成的记录文件流式导出为 CSV 或小端二进制。
+ *
+ * 【导出内容】：
+ * - CONTENT_FRAMES：每帧一行/一条记录。
+ *   CSV 列：frame,timestamp_ns,id,valid,length,params (参数为十六进制)。
+ *   二进制：timestampNanos (long) | commandId (byte) | flags (byte) | length (short) | 参数。
+ * - CONTENT_SAMPLES：0x8F 帧经 SampleDecoder 解码后的采样，每个采样一行/一条记录。
+ *   CSV 列：sample,timestamp_ns,raw,value。
+ *   二进制：value (float)，便于直接用 numpy.fromfile(dtype='<f4') 读取。
+ *
+ * 【性能说明】：
+ * 记录文件按块映射读取，输出先写入一个固定大小的直接缓冲区，满了再批量提交到 FileChannel。
+ * 数字格式化是手写的 (直接写 ASCII 字节)，不使用 String.format，也不产生临时字符串，
+ * 因此内存占用与记录长度无关。
+ *
+ * 进度每 PROGRESS_INTERVAL 帧回调一次；cancel() 可以从任意线程调用，
+ * 导出在处理完当前帧后停止，已写出的部分保留在输出文件中。
+ */
+public class CaptureExporter {
+
+    private static final String TAG = "CaptureExporter";
+
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_BINARY = 1;
+
+    public static final int CONTENT_FRAMES = 0;
+    public static final int CONTENT_SAMPLES = 1;
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1024;
+
+    // 一行 CSV 的最大长度：参数的十六进制 (每字节 2 字符) 加上前面的列
+    private static final int MAX_ROW_SIZE = SampleDecoder.MAX_PARAM_SIZE * 2 + 128;
+
+    // CSV 中浮点数的小数位数
+    private static final int FRACTION_DIGITS = 6;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    /**
+     * 导出进度回调 (在导出线程上调用)。
+     */
+    public interface ProgressListener {
+        void onProgress(long framesDone, long framesTotal);
+    }
+
+    private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] digits = new byte[20];
+    private final FrameCaptureReader.Frame frame = new FrameCaptureReader.Frame();
+
+    private final SampleDecoder decoder;
+    private FileChannel channel;
+    private ProgressListener progressListener;
+    private volatile boolean cancelled = false;
+
+    private long framesExported = 0;
+    private long recordsExported = 0;
+
+    /**
+     * 构造函数。
+     * @param decoder 导出采样时使用的解码器 (采样格式和校准需与记录时一致)。
+     */
+    public CaptureExporter(SampleDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * 请求停止正在进行的导出。
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 导出整个记录文件。
+     */
+    public boolean export(File capture, File destination, int content, int format) throws IOException {
+        return export(capture, destination, content, format, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 导出时间戳位于 [fromNanos, toNanos) 的帧。
+     * @return true 如果导出完成，false 如果被 cancel() 中止。
+     */
+    public boolean export(File capture, File destination, int content, int format,
+                          long fromNanos, long toNanos) throws IOException {
+        if ((content != CONTENT_FRAMES && content != CONTENT_SAMPLES)
+                || (format != FORMAT_CSV && format != FORMAT_BINARY)) {
+            throw new IllegalArgumentException("Invalid content/format: " + content + "/" + format);
+        }
+        cancelled = false;
+        framesExported = 0;
+        recordsExported = 0;
+        output.clear();
+
+        try (FrameCaptureReader reader = new FrameCaptureReader(capture);
+             RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(0);
+            channel = file.getChannel();
+            long total = reader.getFrameCount();
+
+            // 区间为空时 CSV 也是合法的文件 (只有表头)
+            if (format == FORMAT_CSV) {
+                writeHeader(content);
+            }
+            if (fromNanos != Long.MIN_VALUE && !reader.seekTime(fromNanos)) {
+                flush();
+                return true; // 区间内没有帧
+            }
+
+            long sampleIndex = 0;
+            while (!cancelled && reader.next(frame)) {
+                if (frame.getTimestampNanos() >= toNanos) break;
+
+                if (content == CONTENT_FRAMES) {
+                    if (format == FORMAT_CSV) writeFrameRow();
+                    else writeFrameRecord();
+                    recordsExported++;
+                } else {
+                    int count = decoder.decode(frame);
+                    if (format == FORMAT_CSV) writeSampleRows(sampleIndex, count);
+                    else writeSampleRecords(count);
+                    sampleIndex += count;
+                    recordsExported += count;
+                }
+
+                if (++framesExported % PROGRESS_INTERVAL == 0 && progressListener != null) {
+                    progressListener.onProgress(frame.getFrameNumber() + 1, total);
+                }
+            }
+            flush();
+            if (progressListener != null) {
+                progressListener.onProgress(cancelled ? frame.getFrameNumber() + 1 : total, total);
+            }
+        } finally {
+            channel = null;
+        }
+
+        if (cancelled) {
+            Log.i(TAG, "Export cancelled after " + framesExported + " frames.");
+            return false;
+        }
+        Log.i(TAG, "Exported " + framesExported + " frames, " + recordsExported + " records.");
+        return true;
+    }
+
+    // --------------------------------------------------------
+    // --- 记录格式 ---
+    // --------------------------------------------------------
+
+    private void writeHeader(int content) throws IOException {
+        ensure(MAX_ROW_SIZE);
+        putAscii(content == CONTENT_FRAMES
+                ? "frame,timestamp_ns,id,valid,length,params\n"
+                : "sample,timestamp_ns,raw,value\n");
+    }
+
+    private void writeFrameRow() throws IOException {
+        ensure(MAX_ROW_SIZE);
+        ByteBuffer params = frame.getParams();
+        putLong(frame.getFrameNumber());
+        output.put((byte) ',');
+        putLong(frame.getTimestampNanos());
+        output.put((byte) ',');
+        putHex(frame.getId());
+        output.put((byte) ',');
+        output.put((byte) (frame.getFrameValidity() ? '1' : '0'));
+        output.put((byte) ',');
+        putLong(params.remaining());
+        output.put((byte) ',');
+        for (int i = params.position(); i < params.limit(); i++) {
+            putHex(params.get(i));
+        }
+        output.put((byte) '\n');
+    }
+
+    private void writeFrameRecord() throws IOException {
+        ByteBuffer params = frame.getParams();
+        int length = params.remaining();
+        ensure(FrameCaptureWriter.FRAME_HEADER_SIZE + length);
+        output.putLong(frame.getTimestampNanos());
+        output.put(frame.getId());
+        output.put((byte) (frame.getFrameValidity() ? 1 : 0));
+        output.putShort((short) length);
+        int position = params.position();
+        output.put(params);
+        params.position(position);
+    }
+
+    private void writeSampleRows(long firstIndex, int count) throws IOException {
+        short[] raw = decoder.getRawSamples();
+        float[] values = decoder.getSamples();
+        long timestamp = frame.getTimestampNanos();
+        for (int i = 0; i < count; i++) {
+            ensure(128);
+            putLong(firstIndex + i);
+            output.put((byte) ',');
+            putLong(timestamp);
+            output.put((byte) ',');
+            putLong(raw[i]);
+            output.put((byte) ',');
+            putFloat(values[i]);
+            output.put((byte) '\n');
+        }
+    }
+
+    private void writeSampleRecords(int count) throws IOException {
+        float[] values = decoder.getSamples();
+        for (int i = 0; i < count; i++) {
+            ensure(4);
+            output.putFloat(values[i]);
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 手写格式化 ---
+    // --------------------------------------------------------
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            output.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putHex(byte value) {
+        output.put(HEX[(value >> 4) & 0x0F]);
+        output.put(HEX[value & 0x0F]);
+    }
+
+    private void putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            putAscii("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            output.put((byte) '-');
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        while (n > 0) {
+            output.put(digits[--n]);
+        }
+    }
+
+    /**
+     * 以 FRACTION_DIGITS 位小数写出浮点数 (定点格式，末尾的 0 被去掉)。
+     */
+    private void putFloat(float value) {
+        double abs = Math.abs((double) value);
+        if (!(abs < 1e12)) {
+            // NaN、无穷大或超出定点范围：极少出现，退回到标准格式
+            putAscii(Float.toString(value));
+            return;
+        }
+        long scaled = Math.round(abs * 1_000_000L);
+        long integer = scaled / 1_000_000L;
+        long fraction = scaled % 1_000_000L;
+        if (value < 0 && scaled != 0) {
+            output.put((byte) '-');
+        }
+        putLong(integer);
+        if (fraction == 0) return;
+
+        int n = FRACTION_DIGITS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            n--;
+        }
+        output.put((byte) '.');
+        for (int i = n - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + (fraction % 10));
+            fraction /= 10;
+        }
+        for (int i = 0; i < n; i++) {
+            output.put(digits[i]);
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 缓冲输出 ---
+    // --------------------------------------------------------
+
+    private void ensure(int size) throws IOException {
+        if (output.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+
+    public long getFramesExported() {
+        return framesExported;
+    }
+
+    /**
+     * 返回最近一次导出写出的记录数 (帧或采样)。
+     */
+    public long getRecordsExported() {
+        return recordsExported;
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+
+/**
+ * 抽象类：基于 NIO ByteChannel 的 Transceiver 通用实现。
+ *
+ * 结构与 BluetoothManager 相同 (ConnectTask / ReadingTask / WritingTask + ByteRingBuffer 发送缓冲区，
+ * 任务运行在 TransportExecutors 的线程上)，
+ * 接收路径同样经过 Transceiver.onBytesReceived()，因此帧格式、缓冲方式和监听器约定都一致。
+ * 子类只需实现 openChannel()，例如 TcpTransceiver (SocketChannel) 和 LoopbackTransceiver (Pipe)。
+ *
+ * 与 BluetoothManager 的区别：
+ * - 缓冲区更大 (每次最多 READ_BUFFER_SIZE / WRITE_CHUNK_SIZE 字节，txBuffer 默认 64K)；
+ * - enqueue() 可以在 txBuffer 空间不足时阻塞等待 (背压)，供高速数据源使用。
+ */
+public abstract class ChannelTransceiver extends Transceiver {
+
+    private static final String TAG = "ChannelTransceiver";
+
+    public static final int DEFAULT_TX_BUFFER_SIZE = 64 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int WRITE_CHUNK_SIZE = 16 * 1024;
+
+    // 发送 (Tx) 缓冲区，同时作为读写双方的锁对象
+    protected final ByteRingBuffer txBuffer;
+
+    // send() 复用的编码缓冲区 (由 txFrameLock 保护)
+    private final byte[] txFrame = new byte[FrameProcessor.maxFrameSize(SampleDecoder.MAX_PARAM_SIZE)];
+    private final Object txFrameLock = new Object();
+
+    private ByteChannel channel;
+    private ConnectTask connectTask;
+    private ReadingTask readingTask;
+    private WritingTask writingTask;
+
+    // 为 true 时 enqueue() 接受数据 (连接已建立且未断开)
+    private volatile boolean open = false;
+
+    protected ChannelTransceiver(int txBufferSize) {
+        this.txBuffer = new ByteRingBuffer(txBufferSize);
+    }
+
+    protected ChannelTransceiver() {
+        this(DEFAULT_TX_BUFFER_SIZE);
+    }
+
+    /**
+     * 打开到 id 的通道 (在 connectExecutor 的线程上调用，可以阻塞)。
+     * 返回的通道必须处于阻塞模式。
+     */
+    protected abstract ByteChannel openChannel(String id) throws IOException;
+
+    // ----------------------------------------------------------------------
+    // --- 内部任务类 ---
+    // ----------------------------------------------------------------------
+
+    private class ConnectTask extends TransportExecutors.Task {
+        private final String id;
+        private final long epoch;
+
+        ConnectTask(String id, long epoch) {
+            this.id = id;
+            this.epoch = epoch;
+        }
+
+        @Override
+        protected void execute() {
+            try {
+                ByteChannel ch = openChannel(id);
+                ReadingTask reader = new ReadingTask(ch, epoch);
+                WritingTask writer = new WritingTask(ch, epoch);
+                synchronized (ChannelTransceiver.this) {
+                    if (connectTask != this || !running) {
+                        // 连接期间被 disconnect() 取消
+                        ch.close();
+                        return;
+                    }
+                    channel = ch;
+                    open = true;
+                    readingTask = reader;
+                    writingTask = writer;
+                    connectTask = null;
+                }
+                TransportExecutors executors = getExecutors();
+                if (!reader.submit(executors.getIoExecutor()) || !writer.submit(executors.getIoExecutor())) {
+                    connectionLost(epoch);
+                    return;
+                }
+                Log.i(TAG, "Connected to " + id);
+                // 读写任务可能已经报告了连接丢失，此时转换被拒绝
+                updateConnectionStatus(epoch, STATE_CONNECTED);
+            } catch (IOException e) {
+                Log.e(TAG, "Connection failed: " + e.getMessage());
+                synchronized (ChannelTransceiver.this) {
+                    if (connectTask != this) return;
+                    connectTask = null;
+                }
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+            }
+        }
+    }
+
+    private class ReadingTask extends TransportExecutors.Task {
+        private final ByteChannel ch;
+        private final long epoch;
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        private final ByteBuffer readView = ByteBuffer.wrap(readBuffer);
+
+        ReadingTask(ByteChannel ch, long epoch) {
+            this.ch = ch;
+            this.epoch = epoch;
+        }
+
+        @Override
+        protected void execute() {
+            while (running) {
+                try {
+                    readView.clear();
+                    int count = ch.read(readView);
+                    if (count < 0) {
+                        throw new IOException("End of stream.");
+                    }
+                    onBytesReceived(readBuffer, 0, count);
+                } catch (IOException e) {
+                    if (running) {
+                        // 只有在非手动断开时才报告连接丢失
+                        Log.e(TAG, "Channel was disconnected or closed: " + e.getMessage());
+                        connectionLost(epoch);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private class WritingTask extends TransportExecutors.Task {
+        private final ByteChannel ch;
+        private final long epoch;
+        private final byte[] chunk = new byte[WRITE_CHUNK_SIZE];
+        private final ByteBuffer chunkView = ByteBuffer.wrap(chunk);
+
+        WritingTask(ByteChannel ch, long epoch) {
+            this.ch = ch;
+            this.epoch = epoch;
+        }
+
+        @Override
+        protected void execute() {
+            while (running) {
+                try {
+                    int n;
+                    synchronized (txBuffer) {
+                        // 1. 等待数据进入 Tx Buffer
+                        while (txBuffer.bytesToRead() == 0 && running) {
+                            txBuffer.wait();
+                        }
+                        if (!running) break;
+
+                        // 2. 一次取出所有可用字节，并唤醒等待空间的 enqueue()
+                        n = txBuffer.get(chunk, 0, chunk.length);
+                        txBuffer.notifyAll();
+                    }
+
+                    // 3. 写入通道 (阻塞调用)
+                    chunkView.clear();
+                    chunkView.limit(n);
+                    while (chunkView.hasRemaining()) {
+                        ch.write(chunkView);
+                    }
+                } catch (IOException e) {
+                    if (running) {
+                        Log.e(TAG, "Channel write error: " + e.getMessage());
+                        connectionLost(epoch);
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    // cancel() 中断：正常退出
+                    break;
+                }
+            }
+        }
+
+        @Override
+        protected void onCancel() {
+            synchronized (txBuffer) {
+                txBuffer.notifyAll();
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 抽象方法实现 (Transceiver) ---
+    // ----------------------------------------------------------------------
+
+    @Override
+    public void connect(String id) {
+        ConnectTask task;
+        TransportExecutors.Task[] previous;
+        synchronized (this) {
+            long epoch = beginConnect();
+            if (epoch < 0) {
+                Log.w(TAG, "Already connected or connecting.");
+                return;
+            }
+            previous = closeChannel();
+            task = new ConnectTask(id, epoch);
+            connectTask = task;
+        }
+        // 上一次连接的任务必须先结束，线程才能回到线程池
+        TransportExecutors.cancelAndAwait(previous);
+        if (!task.submit(getExecutors().getConnectExecutor())) {
+            synchronized (this) {
+                if (connectTask == task) connectTask = null;
+            }
+            updateConnectionStatus(task.epoch, STATE_NOT_CONNECTED);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        long epoch;
+        TransportExecutors.Task[] tasks;
+        synchronized (this) {
+            epoch = getEpoch();
+            tasks = closeChannel();
+        }
+        // 在锁外等待：读任务在退出前可能需要进入 connectionLost()
+        TransportExecutors.cancelAndAwait(tasks);
+        updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+    }
+
+    /**
+     * 只在当前连接的 epoch 仍为 expectedEpoch 时断开 (检查和关闭在同一把锁内完成)。
+     * 用于断开一个已知的旧连接，而不会误断在此期间重新建立的连接。
+     * @return true 如果已断开；false 如果连接已被替换。
+     */
+    boolean disconnect(long expectedEpoch) {
+        TransportExecutors.Task[] tasks;
+        synchronized (this) {
+            // beginConnect() 只在 this 锁内调用，持锁期间 epoch 不会改变
+            if (getEpoch() != expectedEpoch) {
+                return false;
+            }
+            tasks = closeChannel();
+        }
+        TransportExecutors.cancelAndAwait(tasks);
+        updateConnectionStatus(expectedEpoch, STATE_NOT_CONNECTED);
+        return true;
+    }
+
+    @Override
+    public void send(byte[] data) {
+        if (frameProcessor == null) {
+            Log.e(TAG, "FrameProcessor is not attached. Cannot send data.");
+            return;
+        }
+        if (data.length > SampleDecoder.MAX_PARAM_SIZE - 1) {
+            Log.e(TAG, "Payload too large: " + data.length);
+            return;
+        }
+        synchronized (txFrameLock) {
+            int length = frameProcessor.toFrame(data, 0, data.length, txFrame, 0);
+            sendEncoded(txFrame, 0, length);
+        }
+    }
+
+    @Override
+    public boolean sendEncoded(byte[] frame, int offset, int length) {
+        if (!enqueue(frame, offset, length, false)) {
+            Log.e(TAG, "Not connected or Tx Buffer full. Dropping frame of " + length + " bytes.");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean sendEncodedBlocking(byte[] frame, int offset, int length) {
+        return enqueue(frame, offset, length, true);
+    }
+
+    /**
+     * 把一个已编码的帧整体放入发送缓冲区 (不会与其他帧交错)。
+     * @param block true 时在空间不足时等待；false 时空间不足直接丢弃整帧。
+     * @return true 如果已放入；false 如果未连接、空间不足 (非阻塞) 或等待期间断开。
+     */
+    protected boolean enqueue(byte[] frame, int offset, int length, boolean block) {
+        if (length > txBuffer.capacity()) {
+            return false;
+        }
+        synchronized (txBuffer) {
+            while (open && txBuffer.availableSpace() < length) {
+                if (!block) return false;
+                try {
+                    txBuffer.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (!open) return false;
+            txBuffer.put(frame, offset, length);
+            onBytesSent(frame, offset, length);
+            txBuffer.notifyAll();
+        }
+        return true;
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 实用方法 ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * 读写线程检测到连接丢失：关闭通道并报告断开 (只报告一次)。
+     * @param epoch 检测到丢失的任务所属连接的 epoch。
+     */
+    private void connectionLost(long epoch) {
+        synchronized (this) {
+            if (channel == null || epoch != getEpoch()) {
+                return; // 已经断开或已被新的连接替换
+            }
+            closeChannel();
+        }
+        updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+    }
+
+    /**
+     * 请求所有任务停止并关闭通道。关闭通道会让阻塞中的 read()/write() 立即返回。
+     * 调用者必须持有 this 锁，并在释放锁后等待返回的任务 (TransportExecutors.cancelAndAwait)。
+     * @return 被取消的任务 (可能包含 null)。
+     */
+    private TransportExecutors.Task[] closeChannel() {
+        open = false;
+        TransportExecutors.Task[] tasks = { connectTask, readingTask, writingTask };
+        connectTask = null;
+        readingTask = null;
+        writingTask = null;
+        for (TransportExecutors.Task task : tasks) {
+            if (task != null) task.cancel();
+        }
+        synchronized (txBuffer) {
+            txBuffer.clear();
+            txBuffer.notifyAll();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close channel", e);
+            }
+            channel = null;
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.circularslider;
+
+/**
+ * 抽象类 Command：一个命令 ID (Table 1) 的类型化编码和解析。
+ *
+ * 每个命令 ID 一个子类，字段保存在可重用的实例中：
+ * - encode() 把命令 ID 和参数直接写入调用者提供的 Payload 缓冲区 (通常由 CommandEncoder 持有)；
+ * - parse() 直接从接收帧中读取参数 (FrameProcessor.Data.getParamByte()，不复制)，填入同一个实例。
+ * 发送和解析都没有分配，也不需要在调用处手工拼字节。
+ *
+ * 实例不是线程安全的：每个发送者或接收线程使用自己的实例。
+ */
+public abstract class Command {
+
+    private final byte id;
+
+    protected Command(byte id) {
+        this.id = id;
+    }
+
+    /**
+     * 返回命令 ID。
+     */
+    public final byte getId() {
+        return id;
+    }
+
+    /**
+     * 返回参数的字节数 (不含命令 ID)。
+     */
+    public abstract int getParamLength();
+
+    /**
+     * 把参数写入 dst[offset .. offset + getParamLength())。
+     */
+    protected abstract void writeParams(byte[] dst, int offset);
+
+    /**
+     * 从帧的参数中读取字段 (帧的 ID 已经检查过)。
+     * @return false 如果参数格式不对 (例如长度不足)。
+     */
+    protected abstract boolean readParams(FrameProcessor.Data frame);
+
+    /**
+     * 编码 Payload (命令 ID + 参数) 到 dst[offset ..)。
+     * @return Payload 的字节数。
+     */
+    public final int encode(byte[] dst, int offset) {
+        dst[offset] = id;
+        writeParams(dst, offset + 1);
+        return 1 + getParamLength();
+    }
+
+    /**
+     * 如果 frame 是本命令的有效帧，读取其参数到本实例。
+     * @return true 如果 ID 相符、校验正确且参数格式正确。
+     */
+    public final boolean parse(FrameProcessor.Data frame) {
+        return frame.getId() == id && frame.getFrameValidity() && readParams(frame);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.circularslider;
+
+/**
+ * CommandEncoder 类：把 Command 编码成完整的帧并交给 Transceiver，使用预分配的 Payload 和帧缓冲区。
+ *
+ * 帧按链路当前的完整性模式 (Transceiver.getIntegrityMode()) 编码，然后通过 sendEncoded() 发送，
+ * 因此发送命令没有分配 (Transceiver.send() 的某些实现每次都会分配新的帧)。
+ * send() 是同步的，多个线程可以共享一个 CommandEncoder。
+ */
+public class CommandEncoder {
+
+    public static final int DEFAULT_MAX_PARAM_LENGTH = 16;
+
+    private final FrameProcessor encoder = new FrameProcessor();
+    private final byte[] payload;
+    private final byte[] frame;
+
+    public CommandEncoder() {
+        this(DEFAULT_MAX_PARAM_LENGTH);
+    }
+
+    /**
+     * @param maxParamLength 可以编码的最大参数字节数 (不超过 SampleDecoder.MAX_PARAM_SIZE - 1)。
+     */
+    public CommandEncoder(int maxParamLength) {
+        if (maxParamLength < 0 || maxParamLength > SampleDecoder.MAX_PARAM_SIZE - 1) {
+            throw new IllegalArgumentException("Invalid max parameter length: " + maxParamLength);
+        }
+        this.payload = new byte[1 + maxParamLength];
+        this.frame = new byte[FrameProcessor.maxFrameSize(payload.length)];
+    }
+
+    /**
+     * 编码并发送命令 (不阻塞，发送缓冲区满时由 Transceiver 丢弃整帧)。
+     * @return false 如果没有连接或帧被丢弃 (命令未发送)。
+     */
+    public synchronized boolean send(Transceiver transceiver, Command command) {
+        if (transceiver.getStatus() != Transceiver.STATE_CONNECTED) {
+            return false;
+        }
+        if (command.getParamLength() > payload.length - 1) {
+            throw new IllegalArgumentException("Command 0x" + Integer.toHexString(command.getId() & 0xFF)
+                    + " has " + command.getParamLength() + " parameter bytes, max " + (payload.length - 1));
+        }
+        int payloadLength = command.encode(payload, 0);
+        encoder.setIntegrityMode(transceiver.getIntegrityMode());
+        int frameLength = encoder.toFrame(payload, 0, payloadLength, frame, 0);
+        return transceiver.sendEncoded(frame, 0, frameLength);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.circularslider;
+
+/**
+ * Classe Crc : calcul de CRC par tables précalculées, utilisé par FrameProcessor
+ * pour les modes d’intégrité INTEGRITY_CRC16 et INTEGRITY_CRC32.
+ *
+ * - CRC-16/CCITT-FALSE : polynôme 0x1021, MSB en premier, valeur initiale 0xFFFF, pas de XOR final.
+ * - CRC-32 (IEEE 802.3, identique à java.util.zip.CRC32) : polynôme réfléchi 0xEDB88320,
+ *   valeur initiale 0xFFFFFFFF, XOR final 0xFFFFFFFF.
+ *
+ * Les méthodes update(byte) servent au décodage octet par octet ; les versions sur tableau
+ * traitent 8 octets par itération (slicing-by-8) pour les grands payloads.
+ */
+public final class Crc {
+
+    public static final int CRC16_INIT = 0xFFFF;
+    public static final int CRC32_INIT = 0xFFFFFFFF;
+
+    // Longueur minimale pour laquelle le slicing-by-8 est utilisé
+    private static final int SLICING_THRESHOLD = 16;
+
+    private static final char[] CRC16_TABLE = new char[256];
+    private static final int[][] CRC32_TABLES = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC16_TABLE[i] = (char) crc;
+        }
+
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xEDB88320 : crc >>> 1;
+            }
+            CRC32_TABLES[0][i] = crc;
+        }
+        // Table t[k][i] : CRC de l’octet i suivi de k octets nuls
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                int prev = CRC32_TABLES[t - 1][i];
+                CRC32_TABLES[t][i] = (prev >>> 8) ^ CRC32_TABLES[0][prev & 0xFF];
+            }
+        }
+    }
+
+    private Crc() {
+    }
+
+    // ----------------------------------------------------------------------
+    // --- CRC-16/CCITT-FALSE ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * Intègre un octet dans le registre CRC-16 (16 bits de poids faible).
+     */
+    public static int crc16Update(int crc, byte b) {
+        return ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+    }
+
+    /**
+     * Intègre buf[offset .. offset+length) dans le registre CRC-16.
+     */
+    public static int crc16Update(int crc, byte[] buf, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ buf[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    // ----------------------------------------------------------------------
+    // --- CRC-32 ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * Intègre un octet dans le registre CRC-32 (avant XOR final).
+     */
+    public static int crc32Update(int crc, byte b) {
+        return (crc >>> 8) ^ CRC32_TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    /**
+     * Intègre buf[offset .. offset+length) dans le registre CRC-32 (avant XOR final).
+     * Slicing-by-8 : 8 octets par itération, un accès à chacune des 8 tables.
+     */
+    public static int crc32Update(int crc, byte[] buf, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        if (length >= SLICING_THRESHOLD) {
+            int[] t0 = CRC32_TABLES[0], t1 = CRC32_TABLES[1], t2 = CRC32_TABLES[2], t3 = CRC32_TABLES[3];
+            int[] t4 = CRC32_TABLES[4], t5 = CRC32_TABLES[5], t6 = CRC32_TABLES[6], t7 = CRC32_TABLES[7];
+            for (int limit = end - 8; i <= limit; i += 8) {
+                int lo = crc ^ ((buf[i] & 0xFF) | (buf[i + 1] & 0xFF) << 8
+                        | (buf[i + 2] & 0xFF) << 16 | (buf[i + 3] & 0xFF) << 24);
+                crc = t7[lo & 0xFF] ^ t6[(lo >>> 8) & 0xFF] ^ t5[(lo >>> 16) & 0xFF] ^ t4[lo >>> 24]
+                        ^ t3[buf[i + 4] & 0xFF] ^ t2[buf[i + 5] & 0xFF]
+                        ^ t1[buf[i + 6] & 0xFF] ^ t0[buf[i + 7] & 0xFF];
+            }
+        }
+        for (; i < end; i++) {
+            crc = (crc >>> 8) ^ CRC32_TABLES[0][(crc ^ buf[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    /**
+     * Valeur finale du CRC-32 (XOR final appliqué).
+     */
+    public static int crc32Final(int crc) {
+        return ~crc;
+    }
+}
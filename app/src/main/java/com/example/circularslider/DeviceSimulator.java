@@ -0,0 +1,414 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * DeviceSimulator 类：在进程内模拟示波器设备，按 FrameProcessor 线路协议收发数据。
+ *
+ * - 收到 0x0A (calibration duty cycle) 命令后，原样回送一帧 0x0A 作为应答，
+ *   并把校准方波的占空比改为命令中的值。
+ * - 收到 keepalive (LinkMonitor.CMD_KEEPALIVE) 后原样回送。
+ * - 收到 IntegrityNegotiator.CMD_SET_INTEGRITY 后用当前格式回送确认，之后的帧改用新的完整性模式
+ *   (重新连接时恢复为 INTEGRITY_SUM8)。
+ * - 接收 BulkUploader 的 DATA/END 帧，检查偏移量连续并在 END 帧校验总长度和 CRC-32。
+ * - 按配置的采样率持续发送 0x8F (dataTransfert) 帧，参数为 16 位大端序采样
+ *   (与 SampleDecoder 的默认格式一致)。
+ *
+ * 为了测量解码路径，还可以配置：
+ * - 每帧的参数字节数 (决定帧率 = 采样率 / 每帧采样数)；
+ * - 转义字节密度：参数中被强制改为 0x04..0x06 (需要转义) 的字节比例；
+ * - 错误注入率：编码后被破坏一个字节的帧所占比例 (接收端会看到校验失败或失步)。
+ *
+ * 模拟器是设备端 ChannelTransceiver (通常是 LoopbackTransceiver.peer()) 的监听器：
+ * 命令由该端的读取线程解码后送到 onTransceiverDataReceived()，
+ * 连接建立时启动发送线程，连接断开时停止。发送线程以阻塞方式 enqueue() 已编码的帧，
+ * 因此不限速时的发送速率由链路和主机端的解码速度决定 (背压)，不会丢帧。
+ * 生成过程使用预分配的数组和 xorshift 随机数，每帧没有分配。
+ */
+public class DeviceSimulator implements TransceiverListener {
+
+    private static final String TAG = "DeviceSimulator";
+
+    // Table 1: 命令 ID
+    public static final byte CMD_CALIBRATION_DUTY_CYCLE = CalibrationDutyCycleCommand.ID;
+
+    public static final int WAVE_SQUARE = 0; // 校准方波 (占空比由 0x0A 命令设置)
+    public static final int WAVE_SINE = 1;
+
+    // FrameProcessor 接收端限制：Payload (含命令 ID) + CTRL <= 4096
+    public static final int MAX_PARAM_SIZE = 4094;
+
+    // 采样率为 0 时不限速，每帧之间不等待
+    private volatile float sampleRate = 100_000f;
+    private volatile int paramSize = 1024;
+    private volatile float escapeDensity = 0f;
+    private volatile float errorRate = 0f;
+
+    // 波形
+    private volatile int waveform = WAVE_SQUARE;
+    private volatile float signalFrequency = 1000f;
+    private volatile short amplitude = 2000;
+    private volatile short noise = 8;
+    private volatile float dutyCycle = 0.5f;
+
+    // 设备端链路
+    private final ChannelTransceiver link;
+
+    // 设备 -> 主机：应答 (读取线程) 和采样流 (发送线程) 各自复用的缓冲区
+    private final byte[] response = new byte[FrameProcessor.maxFrameSize(2)];
+    private final byte[] responsePayload = new byte[2];
+    private final byte[] payload = new byte[MAX_PARAM_SIZE + 1];
+    private final byte[] frame = new byte[FrameProcessor.maxFrameSize(MAX_PARAM_SIZE + 1)];
+    private final FrameProcessor encoder = new FrameProcessor();
+
+    // 命令的解析和应答 (只在读取线程上使用)
+    private final CalibrationDutyCycleCommand dutyCycleCommand = new CalibrationDutyCycleCommand();
+    private final KeepaliveCommand keepaliveCommand = new KeepaliveCommand();
+    private final SetIntegrityCommand integrityCommand = new SetIntegrityCommand();
+
+    private StreamThread streamThread;
+
+    /**
+     * 构造函数：把模拟器挂在设备端链路上 (替换该链路的监听器和 FrameProcessor)。
+     * @param link 设备端 Transceiver，例如 LoopbackTransceiver.peer()。
+     */
+    public DeviceSimulator(ChannelTransceiver link) {
+        this.link = link;
+        link.attachFrameProcessor(new FrameProcessor());
+        link.setTransceiverListener(this);
+    }
+
+    // 统计
+    private volatile long framesSent = 0;
+    private volatile long bytesSent = 0;
+    private volatile long errorsInjected = 0;
+    private volatile long commandsReceived = 0;
+
+    // 批量上传接收状态 (只在读取线程上使用)
+    private long uploadOffset = 0;
+    private int uploadCrc = Crc.CRC32_INIT;
+    private boolean uploadBroken = false;
+    private final byte[] uploadChunk = new byte[MAX_PARAM_SIZE];
+    private volatile long uploadBytesReceived = 0;
+    private volatile long uploadsVerified = 0;
+    private volatile long uploadsFailed = 0;
+
+    // --------------------------------------------------------
+    // --- 配置 ---
+    // --------------------------------------------------------
+
+    /**
+     * 设置采样率 (Hz)。0 表示不限速 (用于吞吐量测试)。
+     */
+    public void setSampleRate(float sampleRate) {
+        if (!(sampleRate >= 0)) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 设置每个 0x8F 帧的参数字节数 (偶数，2 到 MAX_PARAM_SIZE)。
+     */
+    public void setPayloadSize(int paramSize) {
+        if (paramSize < 2 || paramSize > MAX_PARAM_SIZE || (paramSize & 1) != 0) {
+            throw new IllegalArgumentException("Invalid payload size: " + paramSize);
+        }
+        this.paramSize = paramSize;
+    }
+
+    /**
+     * 设置参数中需要转义的字节比例 (0.0 到 1.0)。
+     */
+    public void setEscapeDensity(float density) {
+        this.escapeDensity = clamp01(density);
+    }
+
+    /**
+     * 设置被注入错误的帧所占比例 (0.0 到 1.0)。
+     */
+    public void setErrorRate(float rate) {
+        this.errorRate = clamp01(rate);
+    }
+
+    /**
+     * 设置模拟信号。
+     * @param waveform WAVE_SQUARE 或 WAVE_SINE。
+     * @param frequency 信号频率 (Hz)。
+     * @param amplitude 幅度 (LSB)。
+     * @param noise 叠加的均匀噪声幅度 (LSB)。
+     */
+    public void setSignal(int waveform, float frequency, int amplitude, int noise) {
+        this.waveform = waveform;
+        this.signalFrequency = frequency;
+        this.amplitude = (short) Math.max(0, Math.min(Short.MAX_VALUE, amplitude));
+        this.noise = (short) Math.max(0, Math.min(Short.MAX_VALUE, noise));
+    }
+
+    public float getDutyCycle() {
+        return dutyCycle;
+    }
+
+    private static float clamp01(float value) {
+        return value < 0f ? 0f : (value > 1f ? 1f : value);
+    }
+
+    // --------------------------------------------------------
+    // --- TransceiverListener 实现 (设备端链路的事件) ---
+    // --------------------------------------------------------
+
+    @Override
+    public void onTransceiverConnectionStatusChanged(int status) {
+        if (status == Transceiver.STATE_CONNECTED) {
+            startStreaming();
+        } else if (status == Transceiver.STATE_NOT_CONNECTED) {
+            stopStreaming();
+            encoder.setIntegrityMode(FrameProcessor.INTEGRITY_SUM8);
+            resetUpload();
+        }
+    }
+
+    /**
+     * 主机发来的命令 (在设备端的读取线程上调用)。
+     */
+    @Override
+    public void onTransceiverDataReceived(FrameProcessor.Data command) {
+        commandsReceived++;
+        if (!command.getFrameValidity()) {
+            Log.w(TAG, "Dropping corrupted command 0x" + Integer.toHexString(command.getId() & 0xFF));
+            return;
+        }
+        if (dutyCycleCommand.parse(command)) {
+            dutyCycle = dutyCycleCommand.getDutyCycle();
+
+            // 应答：回送相同的命令 ID 和参数 (整帧放入发送缓冲区，不会与采样帧交错)
+            respond(dutyCycleCommand);
+        } else if (keepaliveCommand.parse(command)) {
+            respond(keepaliveCommand);
+        } else if (command.getId() == SetIntegrityCommand.ID) {
+            if (!integrityCommand.parse(command)) {
+                Log.w(TAG, "Unsupported integrity mode request.");
+                return;
+            }
+            int mode = integrityCommand.getMode();
+            // 确认使用旧格式；持有 encoder 锁，发送线程的下一帧一定在确认之后、使用新格式
+            synchronized (encoder) {
+                respond(integrityCommand);
+                encoder.setIntegrityMode(mode);
+                link.setIntegrityMode(mode); // 在读取线程上：后续命令按新格式解码
+            }
+        } else if (command.getId() == BulkUploader.CMD_BULK_DATA && command.getParamLength() > 4) {
+            int length = command.getParam(uploadChunk, 0);
+            long offset = readInt(uploadChunk, 0) & 0xFFFFFFFFL;
+            if (offset == 0) {
+                resetUpload(); // 新的上传
+            }
+            if (offset != uploadOffset) {
+                uploadBroken = true; // 缺块或乱序
+            }
+            uploadCrc = Crc.crc32Update(uploadCrc, uploadChunk, 4, length - 4);
+            uploadOffset = offset + length - 4;
+            uploadBytesReceived += length - 4;
+        } else if (command.getId() == BulkUploader.CMD_BULK_END && command.getParamLength() >= 8) {
+            command.getParam(uploadChunk, 0);
+            long total = readInt(uploadChunk, 0) & 0xFFFFFFFFL;
+            int crc = readInt(uploadChunk, 4);
+            if (!uploadBroken && total == uploadOffset && crc == Crc.crc32Final(uploadCrc)) {
+                uploadsVerified++;
+                Log.i(TAG, "Upload of " + total + " bytes verified.");
+            } else {
+                uploadsFailed++;
+                Log.w(TAG, "Upload of " + total + " bytes failed verification.");
+            }
+            resetUpload();
+        } else {
+            Log.w(TAG, "Unsupported command 0x" + Integer.toHexString(command.getId() & 0xFF));
+        }
+    }
+
+    /**
+     * 回送命令 (编码到预分配的应答缓冲区，以阻塞方式放入发送缓冲区)。
+     */
+    private void respond(Command reply) {
+        int payloadLength = reply.encode(responsePayload, 0);
+        int length = encoder.toFrame(responsePayload, 0, payloadLength, response, 0);
+        link.enqueue(response, 0, length, true);
+    }
+
+    private void resetUpload() {
+        uploadOffset = 0;
+        uploadCrc = Crc.CRC32_INIT;
+        uploadBroken = false;
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return (src[offset] & 0xFF) << 24 | (src[offset + 1] & 0xFF) << 16
+                | (src[offset + 2] & 0xFF) << 8 | (src[offset + 3] & 0xFF);
+    }
+
+    private synchronized void startStreaming() {
+        stopStreaming();
+        streamThread = new StreamThread();
+        streamThread.start();
+    }
+
+    private synchronized void stopStreaming() {
+        if (streamThread != null) {
+            streamThread.cancel();
+            if (streamThread != Thread.currentThread()) {
+                try {
+                    streamThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            streamThread = null;
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 发送线程 ---
+    // --------------------------------------------------------
+
+    private class StreamThread extends Thread {
+        private volatile boolean running = true;
+
+        // 信号相位 (周期的分数) 和随机数状态
+        private double phase = 0;
+        private int random = 0x9E3779B9;
+
+        StreamThread() {
+            super("DeviceSimulator");
+        }
+
+        public void run() {
+            long next = System.nanoTime();
+            while (running) {
+                // 按采样率节奏发送一帧采样
+                float rate = sampleRate;
+                int size = paramSize;
+                if (rate > 0) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        continue;
+                    }
+                    // 落后超过 1 秒 (例如接收端阻塞) 时不再补发，重新对齐时钟
+                    if (-wait > 1_000_000_000L) next = System.nanoTime();
+                    next += (long) (size / 2 * 1e9 / rate);
+                }
+                boolean sent;
+                int length;
+                synchronized (encoder) {
+                    length = buildFrame(size, rate);
+                    sent = link.enqueue(frame, 0, length, true);
+                }
+                if (!sent) {
+                    break; // 链路已断开
+                }
+                framesSent++;
+                bytesSent += length;
+            }
+        }
+
+        private int buildFrame(int size, float rate) {
+            payload[0] = SampleDecoder.CMD_DATA_TRANSFERT;
+
+            // 采样
+            int count = size / 2;
+            double step = rate > 0 ? signalFrequency / rate : 0.001;
+            int wave = waveform;
+            int amp = amplitude;
+            int noiseAmp = noise;
+            float duty = dutyCycle;
+            for (int i = 0, p = 1; i < count; i++, p += 2) {
+                double value = wave == WAVE_SINE
+                        ? amp * Math.sin(2 * Math.PI * phase)
+                        : (phase < duty ? amp : -amp);
+                if (noiseAmp > 0) {
+                    value += nextInt(2 * noiseAmp + 1) - noiseAmp;
+                }
+                int sample = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+                payload[p] = (byte) (sample >> 8);
+                payload[p + 1] = (byte) sample;
+                phase += step;
+                if (phase >= 1) phase -= Math.floor(phase);
+            }
+
+            // 转义字节密度：把一部分参数字节改为 0x04..0x06
+            float density = escapeDensity;
+            if (density > 0) {
+                int threshold = (int) (density * 0x7FFFFFFF);
+                for (int p = 1; p <= size; p++) {
+                    if ((nextRandom() >>> 1) < threshold) {
+                        payload[p] = (byte) (0x04 + nextInt(3));
+                    }
+                }
+            }
+
+            int length = encoder.toFrame(payload, 0, size + 1, frame, 0);
+
+            // 错误注入：破坏一个帧内字节 (不含 HEADER 和 TAIL)
+            float errors = errorRate;
+            if (errors > 0 && (nextRandom() >>> 1) < (int) (errors * 0x7FFFFFFF)) {
+                int position = 1 + nextInt(length - 2);
+                frame[position] ^= (byte) (1 + nextInt(255));
+                errorsInjected++;
+            }
+            return length;
+        }
+
+        private int nextRandom() {
+            // xorshift32
+            int x = random;
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            random = x;
+            return x;
+        }
+
+        private int nextInt(int bound) {
+            return (int) (((nextRandom() & 0xFFFFFFFFL) * bound) >>> 32);
+        }
+
+        void cancel() {
+            running = false;
+            interrupt(); // 唤醒 parkNanos() 或 enqueue() 中的等待
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getErrorsInjected() {
+        return errorsInjected;
+    }
+
+    public long getCommandsReceived() {
+        return commandsReceived;
+    }
+
+    public long getUploadBytesReceived() {
+        return uploadBytesReceived;
+    }
+
+    public long getUploadsVerified() {
+        return uploadsVerified;
+    }
+
+    public long getUploadsFailed() {
+        return uploadsFailed;
+    }
+}
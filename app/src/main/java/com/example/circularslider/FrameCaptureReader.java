@@ -0,0 +1,352 @@
+package com.example.circularslider;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * FrameCaptureReader 类：读取 FrameCaptureWriter 生成的 .fcap 文件，支持按时间或帧序号随机定位。
+ *
+ * 打开时只读入稀疏索引 (沿索引块链)，不扫描数据；seekFrame()/seekTime() 先在索引上二分查找，
+ * 再从最近的索引条目向前最多扫描 indexInterval 帧，因此定位代价为 O(log n + interval)。
+ * 文件按 chunkSize 分块、按需以只读方式映射；next() 返回的帧参数是映射缓冲区上的视图，不复制数据。
+ * 未正常关闭的文件最后一条记录可能只写了一部分：不完整的记录被当作文件末尾。
+ *
+ * 本类不是线程安全的。
+ */
+public class FrameCaptureReader implements Closeable {
+
+    /**
+     * 一帧的零拷贝视图。由调用者分配一次并反复传给 next()。
+     * params 指向映射的文件内容，只在下一次 next() 之前有效。
+     */
+    public static final class Frame {
+        private long frameNumber;
+        private long timestampNanos;
+        private byte commandId;
+        private boolean valid;
+        private ByteBuffer params;
+
+        public long getFrameNumber() { return frameNumber; }
+        public long getTimestampNanos() { return timestampNanos; }
+        public byte getId() { return commandId; }
+        public boolean getFrameValidity() { return valid; }
+        /** 参数视图 (position 到 limit 为参数内容，只读，小端序)。 */
+        public ByteBuffer getParams() { return params; }
+        public int getParamLength() { return params.remaining(); }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int chunkSize;
+    private final int indexInterval;
+
+    // 按需映射的块，以及每块一个复用的只读视图
+    private final MappedByteBuffer[] chunks;
+    private final ByteBuffer[] views;
+
+    // 稀疏索引 (按帧序号和时间递增)
+    private long[] indexFrame;
+    private long[] indexTime;
+    private long[] indexOffset;
+    private int indexSize;
+    private long frameCount;
+
+    // 游标
+    private long cursor;
+    private long cursorFrame;
+
+    public FrameCaptureReader(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        channel = file.getChannel();
+        fileSize = channel.size();
+        if (fileSize < FrameCaptureWriter.HEADER_SIZE) {
+            close();
+            throw new IOException("File too short: " + path);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(FrameCaptureWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // 读满文件头
+        }
+        if (header.getInt(0) != FrameCaptureWriter.MAGIC) {
+            close();
+            throw new IOException("Not a frame capture: " + path);
+        }
+        chunkSize = header.getInt(FrameCaptureWriter.HEADER_CHUNK_SIZE);
+        indexInterval = header.getInt(FrameCaptureWriter.HEADER_INDEX_INTERVAL);
+        frameCount = header.getLong(FrameCaptureWriter.HEADER_FRAME_COUNT);
+        long lastIndex = header.getLong(FrameCaptureWriter.HEADER_LAST_INDEX);
+
+        int chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        chunks = new MappedByteBuffer[chunkCount];
+        views = new ByteBuffer[chunkCount];
+
+        if (lastIndex > 0) {
+            loadIndexChain(lastIndex);
+        } else {
+            rebuildIndex();
+        }
+        rewind();
+    }
+
+    // --------------------------------------------------------
+    // --- 索引 ---
+    // --------------------------------------------------------
+
+    /**
+     * 沿索引块链 (从最后一块向前) 读入所有条目。
+     */
+    private void loadIndexChain(long lastIndex) throws IOException {
+        // 第一遍：统计条目数
+        int total = 0;
+        for (long offset = lastIndex; offset > 0; ) {
+            ByteBuffer chunk = chunkAt(offset);
+            int p = (int) (offset % chunkSize);
+            total += chunk.getInt(p + 1);
+            offset = chunk.getLong(p + 5);
+        }
+        allocateIndex(total);
+
+        // 第二遍：从后往前填充，得到递增的数组
+        int fill = total;
+        for (long offset = lastIndex; offset > 0; ) {
+            ByteBuffer chunk = chunkAt(offset);
+            int p = (int) (offset % chunkSize);
+            int count = chunk.getInt(p + 1);
+            int entry = p + FrameCaptureWriter.INDEX_HEADER_SIZE;
+            fill -= count;
+            for (int i = 0; i < count; i++, entry += FrameCaptureWriter.INDEX_ENTRY_SIZE) {
+                indexFrame[fill + i] = chunk.getLong(entry);
+                indexTime[fill + i] = chunk.getLong(entry + 8);
+                indexOffset[fill + i] = chunk.getLong(entry + 16);
+            }
+            offset = chunk.getLong(p + 5);
+        }
+        indexSize = total;
+    }
+
+    /**
+     * 文件未正常关闭时：线性扫描一次，重建索引和帧总数。
+     */
+    private void rebuildIndex() throws IOException {
+        allocateIndex(64);
+        indexSize = 0;
+        Frame frame = new Frame();
+        cursor = FrameCaptureWriter.HEADER_SIZE;
+        cursorFrame = 0;
+        long offset;
+        while ((offset = peekFrameOffset()) >= 0) {
+            if (cursorFrame % indexInterval == 0) {
+                if (indexSize == indexFrame.length) growIndex();
+                indexFrame[indexSize] = cursorFrame;
+                indexOffset[indexSize] = offset;
+                next(frame);
+                indexTime[indexSize] = frame.timestampNanos;
+                indexSize++;
+            } else {
+                next(frame);
+            }
+        }
+        frameCount = cursorFrame;
+    }
+
+    private void allocateIndex(int size) {
+        indexFrame = new long[size];
+        indexTime = new long[size];
+        indexOffset = new long[size];
+    }
+
+    private void growIndex() {
+        int size = indexFrame.length * 2;
+        indexFrame = Arrays.copyOf(indexFrame, size);
+        indexTime = Arrays.copyOf(indexTime, size);
+        indexOffset = Arrays.copyOf(indexOffset, size);
+    }
+
+    // --------------------------------------------------------
+    // --- 定位 ---
+    // --------------------------------------------------------
+
+    /**
+     * 回到第一帧。
+     */
+    public void rewind() {
+        cursor = FrameCaptureWriter.HEADER_SIZE;
+        cursorFrame = 0;
+    }
+
+    /**
+     * 定位到指定帧序号，之后 next() 返回该帧。
+     * @return false 如果帧序号超出范围。
+     */
+    public boolean seekFrame(long frameNumber) throws IOException {
+        if (frameNumber < 0 || frameNumber >= frameCount) return false;
+        int i = upperBound(indexFrame, frameNumber) - 1;
+        positionAtIndex(i);
+        while (cursorFrame < frameNumber) {
+            if (!skip()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 定位到时间戳不早于 timestampNanos 的第一帧。
+     * @return false 如果没有这样的帧。
+     */
+    public boolean seekTime(long timestampNanos) throws IOException {
+        // 最后一个时间戳严格早于目标的索引条目 (相同时间戳的帧可能位于它之前)
+        int i = upperBound(indexTime, timestampNanos - 1) - 1;
+        positionAtIndex(i);
+        long offset;
+        while ((offset = peekFrameOffset()) >= 0) {
+            ByteBuffer chunk = chunkAt(offset);
+            long t = chunk.getLong((int) (offset % chunkSize) + 5);
+            if (t >= timestampNanos) return true;
+            skip();
+        }
+        return false;
+    }
+
+    private void positionAtIndex(int i) {
+        if (i < 0) {
+            rewind();
+        } else {
+            cursor = indexOffset[i];
+            cursorFrame = indexFrame[i];
+        }
+    }
+
+    /**
+     * 返回 keys[0..indexSize) 中第一个大于 key 的位置 (二分查找)。
+     */
+    private int upperBound(long[] keys, long key) {
+        int lo = 0;
+        int hi = indexSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // --------------------------------------------------------
+    // --- 顺序读取 ---
+    // --------------------------------------------------------
+
+    /**
+     * 读取游标处的帧并前进。
+     * @param out 调用者复用的帧视图。
+     * @return false 如果已到文件末尾。
+     */
+    public boolean next(Frame out) throws IOException {
+        long offset = peekFrameOffset();
+        if (offset < 0) return false;
+
+        int chunkIndex = (int) (offset / chunkSize);
+        ByteBuffer chunk = chunkAt(offset);
+        int p = (int) (offset % chunkSize);
+        int length = chunk.getShort(p + 3) & 0xFFFF;
+
+        out.frameNumber = cursorFrame;
+        out.commandId = chunk.get(p + 1);
+        out.valid = (chunk.get(p + 2) & 1) != 0;
+        out.timestampNanos = chunk.getLong(p + 5);
+
+        ByteBuffer view = views[chunkIndex];
+        view.limit(p + FrameCaptureWriter.FRAME_HEADER_SIZE + length);
+        view.position(p + FrameCaptureWriter.FRAME_HEADER_SIZE);
+        out.params = view;
+
+        cursor = offset + FrameCaptureWriter.FRAME_HEADER_SIZE + length;
+        cursorFrame++;
+        return true;
+    }
+
+    private boolean skip() throws IOException {
+        long offset = peekFrameOffset();
+        if (offset < 0) return false;
+        int length = chunkAt(offset).getShort((int) (offset % chunkSize) + 3) & 0xFFFF;
+        cursor = offset + FrameCaptureWriter.FRAME_HEADER_SIZE + length;
+        cursorFrame++;
+        return true;
+    }
+
+    /**
+     * 从游标开始跳过填充和索引块，返回下一条帧记录的偏移；没有更多帧时返回 -1。
+     */
+    private long peekFrameOffset() throws IOException {
+        while (cursor < fileSize) {
+            ByteBuffer chunk = chunkAt(cursor);
+            int p = (int) (cursor % chunkSize);
+            if (p >= chunk.limit()) {
+                return -1;
+            }
+            byte type = chunk.get(p);
+            if (type == FrameCaptureWriter.TYPE_FRAME) {
+                // 被截断的记录 (写入中途停止) 视为文件末尾
+                if (p + FrameCaptureWriter.FRAME_HEADER_SIZE > chunk.limit()
+                        || p + FrameCaptureWriter.FRAME_HEADER_SIZE + (chunk.getShort(p + 3) & 0xFFFF) > chunk.limit()) {
+                    return -1;
+                }
+                return cursor;
+            } else if (type == FrameCaptureWriter.TYPE_INDEX) {
+                if (p + FrameCaptureWriter.INDEX_HEADER_SIZE > chunk.limit()) {
+                    return -1;
+                }
+                cursor += FrameCaptureWriter.INDEX_HEADER_SIZE
+                        + (long) chunk.getInt(p + 1) * FrameCaptureWriter.INDEX_ENTRY_SIZE;
+            } else {
+                // 填充：跳到下一个块
+                cursor = (cursor / chunkSize + 1) * chunkSize;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回包含 offset 的块 (按需映射)。
+     */
+    private ByteBuffer chunkAt(long offset) throws IOException {
+        int index = (int) (offset / chunkSize);
+        MappedByteBuffer chunk = chunks[index];
+        if (chunk == null) {
+            long start = (long) index * chunkSize;
+            long size = Math.min(chunkSize, fileSize - start);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunks[index] = chunk;
+            views[index] = chunk.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return chunk;
+    }
+
+    // --------------------------------------------------------
+    // --- 状态 ---
+    // --------------------------------------------------------
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 返回第一帧的时间戳；文件为空时返回 -1。
+     */
+    public long getFirstTimestamp() {
+        return indexSize > 0 ? indexTime[0] : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+}
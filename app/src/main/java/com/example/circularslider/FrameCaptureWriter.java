@@ -0,0 +1,227 @@
+package com.example.circularslider;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * FrameCaptureWriter 类：把解码后的帧写入带稀疏索引的二进制记录文件 (.fcap)。
+ *
+ * 【文件格式】(小端序)：
+ * - 文件头 (HEADER_SIZE 字节)：
+ *   magic (int) | version (int) | chunkSize (int) | indexInterval (int)
+ *   | 创建时间 currentTimeMillis (long) | 帧总数 (long) | 最后一个索引块的偏移 (long)
+ *   帧总数和索引偏移在 close() 时写入；为 0 表示文件未正常关闭，读取时需要线性重建索引。
+ * - 帧记录 (TYPE_FRAME)：type (byte) | commandId (byte) | flags (byte, bit0 = 有效)
+ *   | 参数长度 (short) | timestampNanos (long) | 参数
+ * - 索引块 (TYPE_INDEX)：type (byte) | 条目数 (int) | 上一个索引块的偏移 (long)
+ *   | 条目 × (帧序号 long | timestampNanos long | 帧记录偏移 long)
+ * - 类型字节为 0 表示填充：跳到下一个块 (chunk) 边界。
+ *
+ * 记录永远不会跨越 chunkSize 边界，因此读取端可以按块映射文件 (单个映射最大 2 GB)。
+ * 每 indexInterval 帧记录一个索引条目，条目攒满 INDEX_BLOCK_ENTRIES 个后写成一个索引块，
+ * 索引块之间用偏移反向链接，读取时只需读入这条很小的链。
+ *
+ * 写入通过固定大小的直接缓冲区批量提交到 FileChannel，每帧没有分配。
+ * 本类不是线程安全的：应只在接收线程上调用 append()。
+ */
+public class FrameCaptureWriter implements Closeable {
+
+    public static final int MAGIC = 0x43464353; // "SCFC" (小端序)
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+
+    public static final byte TYPE_PAD = 0;
+    public static final byte TYPE_FRAME = 1;
+    public static final byte TYPE_INDEX = 2;
+
+    public static final int FRAME_HEADER_SIZE = 13;
+    public static final int INDEX_HEADER_SIZE = 13;
+    public static final int INDEX_ENTRY_SIZE = 24;
+    public static final int INDEX_BLOCK_ENTRIES = 256;
+
+    // 文件头中各字段的偏移
+    static final int HEADER_CHUNK_SIZE = 8;
+    static final int HEADER_INDEX_INTERVAL = 12;
+    static final int HEADER_FRAME_COUNT = 24;
+    static final int HEADER_LAST_INDEX = 32;
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_INTERVAL = 64;
+
+    private static final int STAGING_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final int indexInterval;
+
+    // 暂存缓冲区：内容对应文件中从 stagingStart 开始的连续字节
+    private final ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long stagingStart;
+
+    private final byte[] paramScratch = new byte[SampleDecoder.MAX_PARAM_SIZE];
+
+    // 待写入的索引条目
+    private final long[] pendingFrame = new long[INDEX_BLOCK_ENTRIES];
+    private final long[] pendingTime = new long[INDEX_BLOCK_ENTRIES];
+    private final long[] pendingOffset = new long[INDEX_BLOCK_ENTRIES];
+    private int pendingCount = 0;
+    private long lastIndexOffset = 0;
+
+    private long frameCount = 0;
+    private boolean closed = false;
+
+    /**
+     * 创建 (或覆盖) 记录文件。
+     * @param file 目标文件。
+     * @param chunkSize 映射块大小 (必须能容纳最大的记录)。
+     * @param indexInterval 每隔多少帧记录一个索引条目。
+     */
+    public FrameCaptureWriter(File file, int chunkSize, int indexInterval) throws IOException {
+        int largestRecord = Math.max(FRAME_HEADER_SIZE + SampleDecoder.MAX_PARAM_SIZE,
+                INDEX_HEADER_SIZE + INDEX_BLOCK_ENTRIES * INDEX_ENTRY_SIZE);
+        if (chunkSize < HEADER_SIZE + largestRecord || indexInterval <= 0) {
+            throw new IllegalArgumentException("Invalid chunkSize/indexInterval");
+        }
+        this.chunkSize = chunkSize;
+        this.indexInterval = indexInterval;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(chunkSize);
+        header.putInt(indexInterval);
+        header.putLong(System.currentTimeMillis());
+        header.putLong(0); // 帧总数 (close 时写入)
+        header.putLong(0); // 最后一个索引块 (close 时写入)
+        header.clear();
+        writeFully(header, 0);
+        stagingStart = HEADER_SIZE;
+    }
+
+    public FrameCaptureWriter(File file) throws IOException {
+        this(file, DEFAULT_CHUNK_SIZE, DEFAULT_INDEX_INTERVAL);
+    }
+
+    // --------------------------------------------------------
+    // --- 写入 ---
+    // --------------------------------------------------------
+
+    /**
+     * 追加一帧。
+     * @param data FrameProcessor 解码得到的帧。
+     * @param timestampNanos 接收时间 (System.nanoTime())。
+     */
+    public void append(FrameProcessor.Data data, long timestampNanos) throws IOException {
+        int length = data.getParam(paramScratch, 0);
+        append(data.getId(), data.getFrameValidity(), paramScratch, 0, length, timestampNanos);
+    }
+
+    /**
+     * 追加一帧 (参数来自任意数组)。
+     */
+    public void append(byte commandId, boolean valid, byte[] params, int offset, int length,
+                       long timestampNanos) throws IOException {
+        if (closed) throw new IOException("Writer closed");
+
+        long recordOffset = reserve(FRAME_HEADER_SIZE + length);
+        staging.put(TYPE_FRAME);
+        staging.put(commandId);
+        staging.put((byte) (valid ? 1 : 0));
+        staging.putShort((short) length);
+        staging.putLong(timestampNanos);
+        staging.put(params, offset, length);
+
+        if (frameCount % indexInterval == 0) {
+            pendingFrame[pendingCount] = frameCount;
+            pendingTime[pendingCount] = timestampNanos;
+            pendingOffset[pendingCount] = recordOffset;
+            if (++pendingCount == INDEX_BLOCK_ENTRIES) {
+                writeIndexBlock();
+            }
+        }
+        frameCount++;
+    }
+
+    /**
+     * 为一条 size 字节的记录预留位置：必要时跳到下一个块边界，必要时提交暂存缓冲区。
+     * @return 记录在文件中的偏移。
+     */
+    private long reserve(int size) throws IOException {
+        long position = stagingStart + staging.position();
+        long inChunk = position % chunkSize;
+        if (inChunk + size > chunkSize) {
+            // 剩余部分是填充 (文件空洞读出为 0 = TYPE_PAD)
+            flushStaging();
+            position += chunkSize - inChunk;
+            stagingStart = position;
+        }
+        if (staging.remaining() < size) {
+            flushStaging();
+        }
+        return stagingStart + staging.position();
+    }
+
+    private void writeIndexBlock() throws IOException {
+        if (pendingCount == 0) return;
+        long blockOffset = reserve(INDEX_HEADER_SIZE + pendingCount * INDEX_ENTRY_SIZE);
+        staging.put(TYPE_INDEX);
+        staging.putInt(pendingCount);
+        staging.putLong(lastIndexOffset);
+        for (int i = 0; i < pendingCount; i++) {
+            staging.putLong(pendingFrame[i]);
+            staging.putLong(pendingTime[i]);
+            staging.putLong(pendingOffset[i]);
+        }
+        lastIndexOffset = blockOffset;
+        pendingCount = 0;
+    }
+
+    private void flushStaging() throws IOException {
+        staging.flip();
+        int length = staging.remaining();
+        writeFully(staging, stagingStart);
+        stagingStart += length;
+        staging.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 写入剩余的索引条目，更新文件头并关闭文件。
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            writeIndexBlock();
+            flushStaging();
+
+            ByteBuffer trailer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putLong(frameCount);
+            trailer.putLong(lastIndexOffset);
+            trailer.flip();
+            writeFully(trailer, HEADER_FRAME_COUNT);
+            channel.force(false);
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+}
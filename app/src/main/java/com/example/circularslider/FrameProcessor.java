@@ -1,7 +1,5 @@
 package com.example.circularslider;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Consumer;
+import java.util.Arrays;
 
 public class FrameProcessor {
 
@@ -10,12 +8,28 @@ public class FrameProcessor {
     private static final byte TAIL = (byte) 0x04;
     private static final byte ESCAPE = (byte) 0x06;
 
+    // --- Modes d’intégrité (champ CTRL) ---
+    // INTEGRITY_SUM8 : CTRL sur 1 octet, complément modulo 256 (format d’origine, mode par défaut)
+    // INTEGRITY_CRC16 : CRC-16/CCITT-FALSE sur 2 octets (poids fort en premier)
+    // INTEGRITY_CRC32 : CRC-32 IEEE sur 4 octets (poids fort en premier)
+    // Dans tous les cas le contrôle porte sur LENGTH + PAYLOAD. Le mode se négocie avec le
+    // périphérique (voir IntegrityNegotiator) ; les deux côtés doivent utiliser le même.
+    public static final int INTEGRITY_SUM8 = 0;
+    public static final int INTEGRITY_CRC16 = 1;
+    public static final int INTEGRITY_CRC32 = 2;
+
+    // Taille maximale du champ CTRL (INTEGRITY_CRC32)
+    private static final int MAX_CHECK_SIZE = 4;
+
+    // Limite de sécurité du décodeur : PAYLOAD (N) + 1 <= 4096, quel que soit le mode
+    private static final int MAX_PAYLOAD_SIZE = 4095;
+
     // --- Machine à états du décodage ---
     private enum State {
         SEARCH_HEADER, // Recherche de l’en-tête (0x05)
         GET_LENGTH_H,  // Lecture de l’octet de poids fort de LENGTH
         GET_LENGTH_L,  // Lecture de l’octet de poids faible de LENGTH
-        GET_PAYLOAD,   // Lecture du PAYLOAD + CTRL
+        GET_PAYLOAD,   // Lecture du PAYLOAD + CTRL (1, 2 ou 4 octets selon le mode)
         GET_TAIL       // Lecture de l’octet de fin (0x04)
     }
 
@@ -24,11 +38,16 @@ public class FrameProcessor {
     private boolean waitingForEscape = false; // Indique si un octet d’échappement doit être traité
     private int payloadLength = 0;            // N (taille effective du payload, sans échappement)
     private int bytesRead = 0;                // Nombre total de bytes lus (PAYLOAD + CTRL)
-    private int totalPayloadAndCtrlSize = 0;  // N + 1 (PAYLOAD + CTRL)
+    private int totalPayloadAndCtrlSize = 0;  // N + taille du CTRL (PAYLOAD + CTRL)
+    private int frameMode = INTEGRITY_SUM8;   // Mode d’intégrité de la trame en cours
+    private int runningCheck = 0;             // Somme ou registre CRC, mis à jour octet par octet
     private byte[] rawPayloadAndCtrl = null;  // Stockage du PAYLOAD + CTRL (après déséchapement)
     private Data decodedData = null;          // Dernière trame décodée
     private boolean frameAvailable = false;   // Indique qu’une trame complète est prête à être lue
 
+    // Mode courant (modifiable depuis un autre thread ; pris en compte à la trame suivante)
+    private volatile int integrityMode = INTEGRITY_SUM8;
+
     /**
      * Classe interne Data : contient les informations extraites d’une trame complète.
      * Elle regroupe l'identifiant de commande, les paramètres et la validité de la trame.
@@ -53,11 +72,77 @@ public class FrameProcessor {
             return parameters != null ? parameters.clone() : new byte[0];
         }
 
+        /**
+         * Retourne le nombre d’octets de paramètres (sans l’ID de commande).
+         */
+        public int getParamLength() {
+            return parameters != null ? parameters.length : 0;
+        }
+
+        /**
+         * Lit un octet de paramètre sur place, sans copie (pour les analyseurs de réponses).
+         * @param index Position dans les paramètres (0 .. getParamLength()-1)
+         */
+        public byte getParamByte(int index) {
+            if (index < 0 || index >= getParamLength()) {
+                throw new IndexOutOfBoundsException("Parameter index " + index + " out of " + getParamLength());
+            }
+            return parameters[index];
+        }
+
+        /**
+         * Copie les paramètres dans un tableau fourni par l’appelant, sans allocation.
+         * @param dst Tableau destination (réutilisable d’une trame à l’autre)
+         * @param dstOffset Position de départ dans dst
+         * @return Nombre d’octets copiés (tronqué à la place disponible dans dst)
+         */
+        public int getParam(byte[] dst, int dstOffset) {
+            int len = Math.min(getParamLength(), dst.length - dstOffset);
+            if (len > 0) {
+                System.arraycopy(parameters, 0, dst, dstOffset, len);
+            }
+            return Math.max(len, 0);
+        }
+
         public boolean getFrameValidity() {
             return frameValidity; // Validité de la trame (checksum correct ou non)
         }
     }
 
+    // ----------------------------------------------------------------------
+    // --- 0. Mode d’intégrité ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * Choisit le mode d’intégrité utilisé pour l’encodage et pour le décodage.
+     * Une trame en cours de décodage garde le mode dans lequel elle a commencé.
+     * @param mode INTEGRITY_SUM8, INTEGRITY_CRC16 ou INTEGRITY_CRC32
+     */
+    public void setIntegrityMode(int mode) {
+        checkSize(mode); // Validation
+        this.integrityMode = mode;
+    }
+
+    public int getIntegrityMode() {
+        return integrityMode;
+    }
+
+    /**
+     * Retourne la taille du champ CTRL (en octets, avant échappement) pour un mode donné.
+     */
+    public static int checkSize(int mode) {
+        switch (mode) {
+            case INTEGRITY_SUM8:
+                return 1;
+            case INTEGRITY_CRC16:
+                return 2;
+            case INTEGRITY_CRC32:
+                return 4;
+            default:
+                throw new IllegalArgumentException("Invalid integrity mode: " + mode);
+        }
+    }
+
     // ----------------------------------------------------------------------
     // --- 1. Méthode d’encodage : public byte[] toFrame(byte[] c) ---
     // ----------------------------------------------------------------------
@@ -68,58 +153,85 @@ public class FrameProcessor {
      * @return Tableau d’octets représentant la trame encodée.
      */
     public byte[] toFrame(byte[] c) {
-        int payloadLen = c.length; // N
+        byte[] frame = new byte[maxFrameSize(c.length)];
+        int frameSize = toFrame(c, 0, c.length, frame, 0);
+        return Arrays.copyOf(frame, frameSize);
+    }
 
-        // 1. Calcul de LENGTH (2 octets)
-        byte lengthH = (byte) ((payloadLen >> 8) & 0xFF);
-        byte lengthL = (byte) (payloadLen & 0xFF);
+    /**
+     * Taille maximale d’une trame encodée pour un payload de payloadLength octets
+     * (cas où chaque octet de LENGTH, PAYLOAD et CTRL doit être échappé),
+     * valable pour tous les modes d’intégrité.
+     */
+    public static int maxFrameSize(int payloadLength) {
+        return 2 + 2 * (payloadLength + 2 + MAX_CHECK_SIZE);
+    }
 
-        // 2. Calcul du checksum (CTRL) – complément modulo 256
-        int sum = (lengthH & 0xFF) + (lengthL & 0xFF);
-        for (byte b : c) {
-            sum += (b & 0xFF);
-        }
-        // CTRL = 256 - (Sum mod 256)
-        byte ctrl = (byte) (0x100 - (sum % 0x100));
-
-        // 3. Application du byte-stuffing (échappement) après calcul de LENGTH + CTRL
-        List<Byte> stuffedData = new ArrayList<>();
-
-        // Fonction utilitaire : ajoute un octet avec échappement si nécessaire
-        Consumer<Byte> addByteWithStuffing = (b) -> {
-            // Valeurs nécessitant un échappement : 0x04 (TAIL), 0x05 (HEADER), 0x06 (ESCAPE)
-            if (b == TAIL || b == HEADER || b == ESCAPE) {
-                stuffedData.add(ESCAPE); // Ajout du marqueur d’échappement
-                stuffedData.add((byte) (b + ESCAPE)); // Ajout de la valeur échappée
-            } else {
-                stuffedData.add(b);
+    /**
+     * Encode c[offset .. offset+length) directement dans dst, sans allocation.
+     * @param dst Tableau destination, avec au moins maxFrameSize(length) octets disponibles
+     * @param dstOffset Position de départ dans dst
+     * @return Nombre d’octets écrits (taille de la trame)
+     */
+    public int toFrame(byte[] c, int offset, int length, byte[] dst, int dstOffset) {
+        // 1. Calcul de LENGTH (2 octets)
+        byte lengthH = (byte) ((length >> 8) & 0xFF);
+        byte lengthL = (byte) (length & 0xFF);
+
+        // 2. Calcul du CTRL selon le mode (sur LENGTH + PAYLOAD)
+        int mode = integrityMode;
+        int check;
+        switch (mode) {
+            case INTEGRITY_CRC16:
+                check = Crc.crc16Update(Crc.CRC16_INIT, lengthH);
+                check = Crc.crc16Update(check, lengthL);
+                check = Crc.crc16Update(check, c, offset, length);
+                break;
+            case INTEGRITY_CRC32:
+                check = Crc.crc32Update(Crc.CRC32_INIT, lengthH);
+                check = Crc.crc32Update(check, lengthL);
+                check = Crc.crc32Final(Crc.crc32Update(check, c, offset, length)); // slicing-by-8
+                break;
+            default: {
+                // Complément modulo 256 : CTRL = 256 - (Sum mod 256)
+                int sum = (lengthH & 0xFF) + (lengthL & 0xFF);
+                for (int i = offset; i < offset + length; i++) {
+                    sum += (c[i] & 0xFF);
+                }
+                check = 0x100 - (sum % 0x100);
             }
-        };
-
-        // a. LENGTH
-        addByteWithStuffing.accept(lengthH);
-        addByteWithStuffing.accept(lengthL);
-
-        // b. PAYLOAD
-        for (byte b : c) {
-            addByteWithStuffing.accept(b);
         }
 
-        // c. CTRL
-        addByteWithStuffing.accept(ctrl);
+        // 3. Construction de la trame avec byte-stuffing
+        int p = dstOffset;
+        dst[p++] = HEADER;
+        p = putStuffed(lengthH, dst, p);
+        p = putStuffed(lengthL, dst, p);
+        for (int i = offset; i < offset + length; i++) {
+            p = putStuffed(c[i], dst, p);
+        }
+        // CTRL, poids fort en premier
+        for (int shift = 8 * (checkSize(mode) - 1); shift >= 0; shift -= 8) {
+            p = putStuffed((byte) (check >>> shift), dst, p);
+        }
+        dst[p++] = TAIL;
 
-        // 4. Construction finale de la trame
-        int frameSize = 2 + stuffedData.size(); // HEADER + TAIL + données échappées
-        byte[] frame = new byte[frameSize];
-        frame[0] = HEADER;
+        return p - dstOffset;
+    }
 
-        int i = 1;
-        for (byte b : stuffedData) {
-            frame[i++] = b;
+    /**
+     * Écrit un octet avec échappement si nécessaire.
+     * @return Nouvelle position d’écriture
+     */
+    private static int putStuffed(byte b, byte[] dst, int p) {
+        // Valeurs nécessitant un échappement : 0x04 (TAIL), 0x05 (HEADER), 0x06 (ESCAPE)
+        if (b == TAIL || b == HEADER || b == ESCAPE) {
+            dst[p++] = ESCAPE; // Ajout du marqueur d’échappement
+            dst[p++] = (byte) (b + ESCAPE); // Ajout de la valeur échappée
+        } else {
+            dst[p++] = b;
         }
-        frame[frameSize - 1] = TAIL;
-
-        return frame;
+        return p;
     }
 
     // ----------------------------------------------------------------------
@@ -157,19 +269,23 @@ public class FrameProcessor {
                     payloadLength = 0;
                     bytesRead = 0;
                     rawPayloadAndCtrl = null;
+                    frameMode = integrityMode;
+                    runningCheck = initialCheck(frameMode);
                 }
                 break;
 
             case GET_LENGTH_H:
                 payloadLength = (workingData & 0xFF) << 8;
+                runningCheck = updateCheck(frameMode, runningCheck, workingData);
                 currentState = State.GET_LENGTH_L;
                 break;
 
             case GET_LENGTH_L:
                 payloadLength |= (workingData & 0xFF);
-                totalPayloadAndCtrlSize = payloadLength + 1; // PAYLOAD (N) + CTRL (1)
+                runningCheck = updateCheck(frameMode, runningCheck, workingData);
+                totalPayloadAndCtrlSize = payloadLength + checkSize(frameMode); // PAYLOAD (N) + CTRL
 
-                if (payloadLength <= 0 || totalPayloadAndCtrlSize > 4096) {
+                if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD_SIZE) {
                     // Longueur invalide ou trop grande (4K comme limite de sécurité)
                     currentState = State.SEARCH_HEADER;
                 } else {
@@ -179,6 +295,10 @@ public class FrameProcessor {
                 break;
 
             case GET_PAYLOAD:
+                if (bytesRead < payloadLength) {
+                    // Octet du PAYLOAD : mise à jour incrémentale du contrôle
+                    runningCheck = updateCheck(frameMode, runningCheck, workingData);
+                }
                 if (bytesRead < totalPayloadAndCtrlSize) {
                     rawPayloadAndCtrl[bytesRead++] = workingData;
                 }
@@ -213,34 +333,59 @@ public class FrameProcessor {
     }
 
     /**
-     * Méthode interne : vérifie l’intégrité de la trame via le checksum (CTRL).
-     * @return true si le checksum est correct, false sinon.
+     * Méthode interne : vérifie l’intégrité de la trame via le CTRL.
+     * Le contrôle attendu a déjà été calculé au fil de la réception (runningCheck).
+     * @return true si le CTRL est correct, false sinon.
      */
     private boolean checkFrameIntegrity() {
-        if (rawPayloadAndCtrl == null || totalPayloadAndCtrlSize <= 1) {
+        int size = checkSize(frameMode);
+        if (rawPayloadAndCtrl == null || totalPayloadAndCtrlSize <= size) {
             return false; // Données insuffisantes
         }
 
-        // 1. CTRL reçu (dernier octet)
-        byte receivedCtrl = rawPayloadAndCtrl[totalPayloadAndCtrlSize - 1];
+        // 1. CTRL reçu (derniers octets, poids fort en premier)
+        int receivedCheck = 0;
+        for (int i = totalPayloadAndCtrlSize - size; i < totalPayloadAndCtrlSize; i++) {
+            receivedCheck = (receivedCheck << 8) | (rawPayloadAndCtrl[i] & 0xFF);
+        }
 
-        // 2. Reconstruction de LENGTH
-        byte lengthH = (byte) ((payloadLength >> 8) & 0xFF);
-        byte lengthL = (byte) (payloadLength & 0xFF);
+        // 2. CTRL attendu
+        int expectedCheck;
+        switch (frameMode) {
+            case INTEGRITY_CRC16:
+                expectedCheck = runningCheck;
+                break;
+            case INTEGRITY_CRC32:
+                expectedCheck = Crc.crc32Final(runningCheck);
+                break;
+            default:
+                expectedCheck = (0x100 - (runningCheck % 0x100)) & 0xFF;
+        }
 
-        // 3. Calcul de la somme (LENGTH + PAYLOAD)
-        int sum = (lengthH & 0xFF) + (lengthL & 0xFF);
+        // 3. Comparaison
+        return expectedCheck == receivedCheck;
+    }
 
-        int payloadOnlyLength = totalPayloadAndCtrlSize - 1;
-        for (int i = 0; i < payloadOnlyLength; i++) {
-            sum += (rawPayloadAndCtrl[i] & 0xFF);
+    private static int initialCheck(int mode) {
+        switch (mode) {
+            case INTEGRITY_CRC16:
+                return Crc.CRC16_INIT;
+            case INTEGRITY_CRC32:
+                return Crc.CRC32_INIT;
+            default:
+                return 0;
         }
+    }
 
-        // 4. CTRL attendu
-        byte expectedCtrl = (byte) (0x100 - (sum % 0x100));
-
-        // 5. Comparaison
-        return expectedCtrl == receivedCtrl;
+    private static int updateCheck(int mode, int check, byte b) {
+        switch (mode) {
+            case INTEGRITY_CRC16:
+                return Crc.crc16Update(check, b);
+            case INTEGRITY_CRC32:
+                return Crc.crc32Update(check, b);
+            default:
+                return check + (b & 0xFF);
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -0,0 +1,260 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FramePublisher 类：把接收到的帧作为 java.util.concurrent.Flow.Publisher 提供 (带需求信号的响应式流)。
+ *
+ * TransceiverListener.onTransceiverDataReceived() 只能推送。FramePublisher 建立在 FrameRing 之上：
+ * 每个订阅是环的一个消费者，只在订阅者请求 (request(n)) 的范围内从环中读取并调用 onNext()。
+ * 订阅者没有需求时帧留在环中，需求因此回传给解码阶段的缓冲策略：
+ * - FrameRing.POLICY_BLOCK：环满后写者 (读取线程) 等待，最多 maxStall，对链路形成背压；
+ * - FrameRing.POLICY_LAP：写者不等待，该订阅丢失最旧的帧 (计入 getDroppedFrames())。
+ * 因此过滤、窗口和采样等操作符可以组合在订阅者一侧，而不需要无界队列。
+ *
+ * onNext() 收到的 Data 是独立的副本，可以在回调返回后保留。信号 (包括 onSubscribe()) 在 executor 上
+ * 按订阅串行发出：订阅者在 onSubscribe() 中调用 request() 时，onNext() 要等 onSubscribe() 返回后才开始。
+ * 写者必须调用 publish() (而不是直接调用 FrameRing.publish()) 以唤醒有需求的订阅。
+ * Kotlin 代码可以用 FramePublisherFlow.kt 中的 asFlow() 得到 kotlinx.coroutines Flow。
+ */
+public class FramePublisher implements Flow.Publisher<FrameProcessor.Data> {
+
+    private static final String TAG = "FramePublisher";
+
+    private final FrameRing ring;
+    private final Executor executor;
+    private final int defaultPolicy;
+
+    // FrameProcessor.Data 是 FrameProcessor 的内部类，用这个实例创建副本
+    private final FrameProcessor dataFactory = new FrameProcessor();
+
+    private volatile FrameSubscription[] subscriptions = new FrameSubscription[0]; // 写时复制
+    private volatile boolean completed = false;
+
+    // 统计
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong droppedByClosed = new AtomicLong();
+
+    /**
+     * @param ring 帧来源。
+     * @param executor 发出 onNext()/onError()/onComplete() 的执行器。
+     * @param defaultPolicy subscribe(Subscriber) 使用的缓冲策略 (FrameRing.POLICY_BLOCK 或 POLICY_LAP)。
+     */
+    public FramePublisher(FrameRing ring, Executor executor, int defaultPolicy) {
+        if (defaultPolicy != FrameRing.POLICY_BLOCK && defaultPolicy != FrameRing.POLICY_LAP) {
+            throw new IllegalArgumentException("Invalid policy: " + defaultPolicy);
+        }
+        this.ring = ring;
+        this.executor = executor;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super FrameProcessor.Data> subscriber) {
+        subscribe(subscriber, defaultPolicy);
+    }
+
+    /**
+     * 以指定的缓冲策略订阅。
+     * @param policy FrameRing.POLICY_BLOCK 或 FrameRing.POLICY_LAP。
+     */
+    public void subscribe(Flow.Subscriber<? super FrameProcessor.Data> subscriber, int policy) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        FrameSubscription subscription = new FrameSubscription(subscriber, ring.newConsumer(policy));
+        add(subscription);
+        // onSubscribe() 由排空任务发出 (已经结束时随后发出 onComplete())
+        subscription.signal();
+    }
+
+    /**
+     * 发布一帧并唤醒有需求的订阅 (只能由写者线程调用)。
+     */
+    public void publish(FrameProcessor.Data data, long timestampNanos) {
+        ring.publish(data, timestampNanos);
+        for (FrameSubscription s : subscriptions) {
+            if (s.demand.get() > 0) {
+                s.signal();
+            }
+        }
+    }
+
+    /**
+     * 结束流：每个订阅收到已在环中的帧 (在需求范围内) 后收到 onComplete()。之后的订阅立即完成。
+     */
+    public void complete() {
+        completed = true;
+        for (FrameSubscription s : subscriptions) {
+            s.signal();
+        }
+    }
+
+    private synchronized void add(FrameSubscription subscription) {
+        FrameSubscription[] current = subscriptions;
+        FrameSubscription[] updated = new FrameSubscription[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+    }
+
+    private synchronized void remove(FrameSubscription subscription) {
+        FrameSubscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                FrameSubscription[] updated = new FrameSubscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated;
+                droppedByClosed.addAndGet(subscription.consumer.getLappedFrames());
+                return;
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 订阅 ---
+    // --------------------------------------------------------
+
+    private final class FrameSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super FrameProcessor.Data> subscriber;
+        private final FrameRing.Consumer consumer;
+        private final FrameRing.Frame scratch = new FrameRing.Frame(); // 只在排空任务中使用
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger(); // 排空任务的串行化计数
+        private boolean subscribed = false; // 只在排空任务中访问
+        private volatile boolean cancelled = false;
+        private volatile Throwable pendingError;
+
+        FrameSubscription(Flow.Subscriber<? super FrameProcessor.Data> subscriber, FrameRing.Consumer consumer) {
+            this.subscriber = subscriber;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                pendingError = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                long current, updated;
+                do {
+                    current = demand.get();
+                    if (current == Long.MAX_VALUE) break;
+                    updated = current + n < 0 ? Long.MAX_VALUE : current + n; // 溢出时视为无界
+                } while (!demand.compareAndSet(current, updated));
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                consumer.close(); // 不再阻塞写者
+                remove(this);
+            }
+        }
+
+        /**
+         * 安排排空任务 (如果已在运行，让它再循环一次)。
+         */
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    Log.e(TAG, "Delivery rejected: " + e.getMessage());
+                    cancel();
+                }
+            }
+        }
+
+        /**
+         * 排空任务：在需求范围内读取环并发出信号。同一订阅同一时刻只有一个在运行。
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    // 第一个信号：之后的信号都在它返回之后发出
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                if (cancelled) return;
+                Throwable error = pendingError;
+                if (error != null) {
+                    cancel();
+                    subscriber.onError(error);
+                    return;
+                }
+
+                long requested = demand.get();
+                long emitted = 0;
+                boolean drained = false;
+                while (emitted != requested && !cancelled) {
+                    if (!consumer.poll(scratch)) {
+                        drained = true;
+                        break;
+                    }
+                    subscriber.onNext(copyOf(scratch));
+                    emitted++;
+                }
+                if (emitted != 0) {
+                    delivered.addAndGet(emitted);
+                    if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-emitted);
+                    }
+                }
+
+                if (completed && !cancelled && (drained || consumer.getLag() == 0)) {
+                    cancel();
+                    subscriber.onComplete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private FrameProcessor.Data copyOf(FrameRing.Frame frame) {
+            byte[] params = new byte[frame.getParamLength()];
+            System.arraycopy(frame.getParamArray(), 0, params, 0, params.length);
+            return dataFactory.new Data(frame.getId(), params, frame.getFrameValidity());
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回当前的订阅数。
+     */
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    /**
+     * 返回发给所有订阅者的帧数。
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * 返回 POLICY_LAP (或超时的 POLICY_BLOCK) 订阅因为需求不足而丢失的帧数。
+     */
+    public long getDroppedFrames() {
+        long dropped = droppedByClosed.get();
+        for (FrameSubscription s : subscriptions) {
+            dropped += s.consumer.getLappedFrames();
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.circularslider
+
+import java.util.concurrent.Flow as JdkFlow
+import java.util.concurrent.atomic.AtomicReference
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+
+/**
+ * 把 FramePublisher 转换为 kotlinx.coroutines 的冷 Flow：每次 collect 建立一个新的订阅，
+ * collect 结束或被取消时取消订阅 (环的消费者随之注销)。
+ *
+ * 需求与收集速度挂钩：先请求 prefetch 帧，之后每收集一半再补充相同数量，
+ * Channel 的容量等于 prefetch，因此 onNext() 永远不会溢出，也不需要无界队列。
+ * 收集端跟不上时由订阅的缓冲策略 (FrameRing.POLICY_BLOCK / POLICY_LAP) 处理。
+ *
+ * @param prefetch 未满足的最大需求 (也是 Channel 容量)。
+ * @param policy FrameRing.POLICY_BLOCK 或 FrameRing.POLICY_LAP。
+ */
+fun FramePublisher.asFlow(
+    prefetch: Int = DEFAULT_PREFETCH,
+    policy: Int = FrameRing.POLICY_LAP
+): Flow<FrameProcessor.Data> {
+    require(prefetch > 0) { "Invalid prefetch: $prefetch" }
+    return flow {
+        val channel = Channel<FrameProcessor.Data>(prefetch)
+        val subscriber = ChannelSubscriber(channel, prefetch)
+        subscribe(subscriber, policy)
+        try {
+            for (frame in channel) {
+                emit(frame)
+                subscriber.consumed()
+            }
+        } finally {
+            subscriber.cancel()
+        }
+    }
+}
+
+private const val DEFAULT_PREFETCH = 32
+
+/**
+ * 把信号转交给 Channel 的订阅者。consumed() 只在收集协程上调用。
+ */
+private class ChannelSubscriber(
+    private val channel: Channel<FrameProcessor.Data>,
+    private val prefetch: Int
+) : JdkFlow.Subscriber<FrameProcessor.Data> {
+
+    private val subscription = AtomicReference<JdkFlow.Subscription?>()
+    private val replenish = maxOf(1, prefetch / 2)
+    private var consumed = 0
+
+    @Volatile
+    private var cancelled = false
+
+    override fun onSubscribe(s: JdkFlow.Subscription) {
+        if (cancelled || !subscription.compareAndSet(null, s)) {
+            s.cancel()
+            return
+        }
+        if (cancelled) {
+            // cancel() 在上面的检查之后、登记之前执行：由这里取消
+            subscription.getAndSet(null)?.cancel()
+            return
+        }
+        s.request(prefetch.toLong())
+    }
+
+    override fun onNext(item: FrameProcessor.Data) {
+        // 未满足的需求不超过 Channel 容量，trySend() 总是成功
+        channel.trySend(item)
+    }
+
+    override fun onError(throwable: Throwable) {
+        channel.close(throwable)
+    }
+
+    override fun onComplete() {
+        channel.close()
+    }
+
+    fun consumed() {
+        if (++consumed >= replenish) {
+            subscription.get()?.request(consumed.toLong())
+            consumed = 0
+        }
+    }
+
+    fun cancel() {
+        cancelled = true
+        subscription.getAndSet(null)?.cancel()
+        channel.close()
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.circularslider;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FrameRing 类：解码帧的单写多读广播环 (disruptor 风格)。
+ *
+ * 读取线程 (唯一的写者) 用 publish() 把每个帧复制到预分配的槽中，不加锁、不分配；
+ * 每个消费者 (UI、记录器、测量、日志……) 持有自己的序号，在自己的线程上按自己的节奏 poll()/take()。
+ *
+ * 慢消费者按各自的策略处理：
+ * - POLICY_BLOCK：写者在覆盖该消费者尚未读取的槽之前等待 (背压)，但最多等待 maxStall，
+ *   超时后照常覆盖 (该消费者被套圈，计入 getSlowCount())，并且在它追上之前不再等待它，
+ *   读取线程不会被一个卡住的消费者拖死；
+ * - POLICY_LAP：写者从不等待，落后超过一圈的消费者被套圈，跳到仍然可用的最旧帧，
+ *   丢失的帧数计入 getLappedFrames()。
+ *
+ * 槽用序列锁保护：写者先用读-改-写把槽的印记改为"正在写"，写完后再写入序号；
+ * 读者复制后用 compareAndSet(s, s) 校验印记未变 (读-改-写保证复制的普通读不会被重排到校验之后)，
+ * 被覆盖的复制会被丢弃并重试。
+ */
+public class FrameRing {
+
+    public static final int POLICY_BLOCK = 0;
+    public static final int POLICY_LAP = 1;
+
+    public static final long DEFAULT_MAX_STALL_MS = 50;
+
+    // 写者等待 POLICY_BLOCK 消费者时每次休眠的时间
+    private static final long STALL_PARK_NANOS = 50_000;
+
+    private static final long WRITING = -1;
+
+    /**
+     * 一帧的副本：环中的槽和消费者自己的读取缓冲区都使用这个类 (参数数组预分配为 MAX_PARAM_SIZE)。
+     */
+    public static final class Frame {
+        private byte commandId;
+        private final byte[] parameters = new byte[SampleDecoder.MAX_PARAM_SIZE];
+        private int paramLength;
+        private boolean frameValidity;
+        private long timestampNanos;
+        private long sequence;
+
+        public byte getId() {
+            return commandId;
+        }
+
+        /**
+         * 返回参数数组 (只有前 getParamLength() 个字节有效，下一次读取时被覆盖)。
+         */
+        public byte[] getParamArray() {
+            return parameters;
+        }
+
+        public int getParamLength() {
+            return paramLength;
+        }
+
+        public boolean getFrameValidity() {
+            return frameValidity;
+        }
+
+        /**
+         * 发布时间 (System.nanoTime())。
+         */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        /**
+         * 帧在环中的序号 (从 0 开始连续递增，跳号表示被套圈丢失的帧)。
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        private void copyFrom(Frame other) {
+            commandId = other.commandId;
+            paramLength = other.paramLength;
+            frameValidity = other.frameValidity;
+            timestampNanos = other.timestampNanos;
+            System.arraycopy(other.parameters, 0, parameters, 0, other.paramLength);
+        }
+    }
+
+    /**
+     * 一个消费者：自己的读取序号和慢读统计。只能在一个线程上读取。
+     */
+    public final class Consumer {
+        private final int policy;
+        private volatile long next;        // 下一个要读取的序号
+        private volatile Thread waiter;    // 在 take() 中等待的线程
+        private volatile boolean closed = false;
+        private volatile boolean lagging = false; // POLICY_BLOCK 超时后为 true，追上之前写者不再等待
+
+        private volatile long lappedFrames = 0;
+        private volatile long slowCount = 0;
+
+        private Consumer(int policy, long next) {
+            this.policy = policy;
+            this.next = next;
+        }
+
+        /**
+         * 读取下一帧到 dst (不等待)。
+         * @return false 如果没有新帧。
+         */
+        public boolean poll(Frame dst) {
+            while (true) {
+                long s = next;
+                long published = cursor.get();
+                if (s > published) {
+                    return false;
+                }
+                if (published - s >= capacity) {
+                    // 被套圈：跳到仍然可用的最旧帧
+                    long oldest = published - capacity + 1;
+                    lappedFrames += oldest - s;
+                    next = oldest;
+                    continue;
+                }
+                int index = (int) (s & mask);
+                if (stamps.get(index) != s) {
+                    continue; // 正在被覆盖：重新计算 (下一轮会检测到套圈)
+                }
+                dst.copyFrom(slots[index]);
+                if (!stamps.compareAndSet(index, s, s)) {
+                    continue; // 复制期间被覆盖，丢弃
+                }
+                dst.sequence = s;
+                next = s + 1;
+                if (lagging && published - s <= capacity / 2) {
+                    lagging = false; // 已追上一半：重新参与背压
+                }
+                return true;
+            }
+        }
+
+        /**
+         * 读取下一帧到 dst，没有新帧时最多等待 timeoutMs 毫秒。
+         * @return false 如果超时或消费者已关闭。
+         */
+        public boolean take(Frame dst, long timeoutMs) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (!closed) {
+                if (poll(dst)) {
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                waiter = Thread.currentThread();
+                if (next > cursor.get()) { // 设置 waiter 后再检查一次，避免错过唤醒
+                    LockSupport.parkNanos(this, remaining);
+                }
+                waiter = null;
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 落后的帧数 (已发布但尚未读取)。
+         */
+        public long getLag() {
+            return Math.max(0, cursor.get() + 1 - next);
+        }
+
+        /**
+         * 被套圈而丢失的帧数。
+         */
+        public long getLappedFrames() {
+            return lappedFrames;
+        }
+
+        /**
+         * POLICY_BLOCK：写者等待超过 maxStall 后强行覆盖的次数。
+         */
+        public long getSlowCount() {
+            return slowCount;
+        }
+
+        public int getPolicy() {
+            return policy;
+        }
+
+        /**
+         * 注销消费者 (不再阻塞写者)，等待中的 take() 返回 false。
+         */
+        public void close() {
+            closed = true;
+            removeConsumer(this);
+            Thread w = waiter;
+            if (w != null) LockSupport.unpark(w);
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final Frame[] slots;
+    private final AtomicLongArray stamps;          // 每个槽当前保存的序号，或 WRITING
+    private final AtomicLong cursor = new AtomicLong(-1); // 最后发布的序号
+
+    private volatile Consumer[] consumers = new Consumer[0]; // 写时复制
+    private volatile long maxStallNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_STALL_MS);
+
+    // 写者统计
+    private volatile long writerStalls = 0;
+    private volatile long writerStallNanos = 0;
+
+    /**
+     * @param capacity 槽数 (2 的幂)。每个槽预分配 SampleDecoder.MAX_PARAM_SIZE 字节。
+     */
+    public FrameRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new Frame[capacity];
+        this.stamps = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Frame();
+            stamps.set(i, WRITING); // 尚未写入
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 设置写者等待 POLICY_BLOCK 消费者的最长时间。
+     */
+    public void setMaxStall(long maxStallMs) {
+        if (maxStallMs < 0) {
+            throw new IllegalArgumentException("Invalid max stall: " + maxStallMs);
+        }
+        this.maxStallNanos = TimeUnit.MILLISECONDS.toNanos(maxStallMs);
+    }
+
+    // --------------------------------------------------------
+    // --- 消费者 ---
+    // --------------------------------------------------------
+
+    /**
+     * 注册新的消费者，从下一帧开始读取。
+     * @param policy POLICY_BLOCK 或 POLICY_LAP。
+     */
+    public synchronized Consumer newConsumer(int policy) {
+        if (policy != POLICY_BLOCK && policy != POLICY_LAP) {
+            throw new IllegalArgumentException("Invalid policy: " + policy);
+        }
+        Consumer consumer = new Consumer(policy, cursor.get() + 1);
+        Consumer[] current = consumers;
+        Consumer[] updated = new Consumer[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = consumer;
+        consumers = updated;
+        return consumer;
+    }
+
+    private synchronized void removeConsumer(Consumer consumer) {
+        Consumer[] current = consumers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == consumer) {
+                Consumer[] updated = new Consumer[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                consumers = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 是否有消费者 (没有时写者可以跳过发布)。
+     */
+    public boolean hasConsumers() {
+        return consumers.length > 0;
+    }
+
+    // --------------------------------------------------------
+    // --- 发布 (只能由一个线程调用) ---
+    // --------------------------------------------------------
+
+    /**
+     * 发布一帧：复制到下一个槽并唤醒等待的消费者。不加锁、不分配。
+     * @return 该帧的序号。
+     */
+    public long publish(FrameProcessor.Data data, long timestampNanos) {
+        Consumer[] current = consumers;
+        long s = cursor.get() + 1;
+
+        // 1. 等待尚未读取被覆盖槽的 POLICY_BLOCK 消费者 (有上限)
+        long wrapPoint = s - capacity;
+        if (wrapPoint >= 0) {
+            awaitBlockingConsumers(current, wrapPoint);
+        }
+
+        // 2. 写入槽 (序列锁：先标记为正在写)
+        int index = (int) (s & mask);
+        stamps.getAndSet(index, WRITING);
+        Frame slot = slots[index];
+        slot.commandId = data.getId();
+        slot.paramLength = data.getParam(slot.parameters, 0);
+        slot.frameValidity = data.getFrameValidity();
+        slot.timestampNanos = timestampNanos;
+        slot.sequence = s;
+        stamps.set(index, s);
+
+        // 3. 发布并唤醒
+        cursor.set(s);
+        for (Consumer c : current) {
+            Thread w = c.waiter;
+            if (w != null) LockSupport.unpark(w);
+        }
+        return s;
+    }
+
+    private void awaitBlockingConsumers(Consumer[] current, long wrapPoint) {
+        long start = 0;
+        for (Consumer c : current) {
+            if (c.policy != POLICY_BLOCK || c.lagging) continue;
+            while (c.next <= wrapPoint && !c.closed) {
+                long now = System.nanoTime();
+                if (start == 0) {
+                    start = now;
+                    writerStalls++;
+                } else if (now - start >= maxStallNanos) {
+                    c.slowCount++; // 超时：套圈这个消费者，直到它追上
+                    c.lagging = true;
+                    break;
+                }
+                LockSupport.parkNanos(this, STALL_PARK_NANOS);
+            }
+        }
+        if (start != 0) {
+            writerStallNanos += System.nanoTime() - start;
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回已发布的帧数。
+     */
+    public long getPublishedCount() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * 返回写者因 POLICY_BLOCK 消费者而等待的次数。
+     */
+    public long getWriterStalls() {
+        return writerStalls;
+    }
+
+    /**
+     * 返回写者等待的总时间 (毫秒)。
+     */
+    public long getWriterStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerStallNanos);
+    }
+}
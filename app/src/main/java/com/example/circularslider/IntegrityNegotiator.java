@@ -0,0 +1,160 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntegrityNegotiator 类：与设备协商帧的完整性模式 (FrameProcessor.INTEGRITY_*)。
+ *
+ * 默认的 8 位求和 CTRL 检测不到许多突发错误。支持 CRC 的设备可以切换到 CRC-16 或 CRC-32：
+ * 1. 主机用当前格式发送 CMD_SET_INTEGRITY [mode]；
+ * 2. 设备用当前格式回送相同的帧作为确认，之后的帧 (收发) 都使用新格式；
+ * 3. 主机在读取线程上收到确认后立即切换 (Transceiver.setIntegrityMode())，后续字节按新格式解码。
+ * 不支持的设备不会回送确认，主机保持原格式：请求在 timeout (默认 DEFAULT_TIMEOUT_MS) 后不再算作等待中，
+ * isPending() 返回 false。超时后同一连接上迟到的确认仍然生效 (设备发出确认后已经切换)。
+ *
+ * 协商期间 (请求发出到确认到达或超时) 不应发送其他命令，否则设备可能按新格式解码旧格式的帧。
+ * 构造时传入 LinkMonitor 则在这段时间内暂停 keepalive。
+ * 如果确认帧本身损坏，两端格式不一致，所有帧都会校验失败，LinkMonitor 会判定死链；
+ * 重新连接时 (Transceiver.beginConnect()) 两端都恢复为 INTEGRITY_SUM8。
+ *
+ * 所有者必须把收到的帧交给 onFrame()。
+ */
+public class IntegrityNegotiator {
+
+    private static final String TAG = "IntegrityNegotiator";
+
+    // 完整性模式协商命令 ID，参数为 1 字节的模式
+    public static final byte CMD_SET_INTEGRITY = SetIntegrityCommand.ID;
+
+    // 等待确认的默认时间
+    public static final long DEFAULT_TIMEOUT_MS = 1000;
+
+    private final Transceiver transceiver;
+    private final LinkMonitor linkMonitor; // 可以为 null
+    private final CommandEncoder commandEncoder = new CommandEncoder(1);
+    private final SetIntegrityCommand request = new SetIntegrityCommand();
+    private final SetIntegrityCommand acknowledgement = new SetIntegrityCommand(); // 只在读取线程上使用
+
+    // 等待确认的模式 (-1 表示没有) 及其所属的连接和截止时间
+    private int pendingMode = -1;
+    private long pendingEpoch;
+    private long pendingDeadlineNanos;
+    private long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS);
+
+    // 统计
+    private volatile long negotiations = 0;
+
+    public IntegrityNegotiator(Transceiver transceiver) {
+        this(transceiver, null);
+    }
+
+    /**
+     * @param linkMonitor 同一 Transceiver 的 LinkMonitor，请求等待确认期间暂停其 keepalive (可以为 null)。
+     */
+    public IntegrityNegotiator(Transceiver transceiver, LinkMonitor linkMonitor) {
+        this.transceiver = transceiver;
+        this.linkMonitor = linkMonitor;
+    }
+
+    /**
+     * 设置等待确认的时间 (默认 DEFAULT_TIMEOUT_MS)。对下一次请求生效。
+     */
+    public synchronized void setTimeout(long timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeoutMs);
+        }
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    public synchronized long getTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    /**
+     * 请求切换到指定的完整性模式。确认到达后 Transceiver 才会切换。
+     * @param mode FrameProcessor.INTEGRITY_SUM8、INTEGRITY_CRC16 或 INTEGRITY_CRC32。
+     * @return false 如果没有连接或请求帧被丢弃 (发送缓冲区已满)。
+     */
+    public synchronized boolean request(int mode) {
+        request.setMode(mode); // 验证
+        if (transceiver.getStatus() != Transceiver.STATE_CONNECTED) {
+            Log.w(TAG, "Not connected. Integrity negotiation ignored.");
+            return false;
+        }
+        pendingMode = mode;
+        pendingEpoch = transceiver.getEpoch();
+        pendingDeadlineNanos = System.nanoTime() + timeoutNanos;
+        if (linkMonitor != null) {
+            // 在请求发出之前暂停：keepalive 不能夹在请求和确认之间
+            linkMonitor.pauseKeepalives(timeoutNanos);
+        }
+        if (!commandEncoder.send(transceiver, request)) {
+            pendingMode = -1;
+            if (linkMonitor != null) {
+                linkMonitor.resumeKeepalives();
+            }
+            Log.w(TAG, "Integrity request dropped.");
+            return false;
+        }
+        Log.i(TAG, "Requesting integrity mode " + mode);
+        return true;
+    }
+
+    /**
+     * 是否有请求在等待确认 (确认到达、超时或连接被替换后返回 false)。
+     */
+    public synchronized boolean isPending() {
+        return pendingMode >= 0
+                && transceiver.getEpoch() == pendingEpoch
+                && System.nanoTime() - pendingDeadlineNanos < 0;
+    }
+
+    /**
+     * 当前连接实际使用的完整性模式。
+     */
+    public int getMode() {
+        return transceiver.getIntegrityMode();
+    }
+
+    /**
+     * 处理收到的帧 (在读取线程上调用)。
+     * @return true 如果是协商确认帧 (已处理，不应再当作数据)。
+     */
+    public boolean onFrame(FrameProcessor.Data data) {
+        if (data.getId() != CMD_SET_INTEGRITY) {
+            return false;
+        }
+        if (!acknowledgement.parse(data)) {
+            Log.w(TAG, "Corrupted integrity acknowledgement.");
+            return true;
+        }
+        int mode = acknowledgement.getMode();
+        synchronized (this) {
+            if (mode != pendingMode || transceiver.getEpoch() != pendingEpoch) {
+                Log.w(TAG, "Unexpected integrity acknowledgement: " + mode);
+                return true;
+            }
+            if (System.nanoTime() - pendingDeadlineNanos >= 0) {
+                Log.w(TAG, "Integrity acknowledgement arrived after the timeout.");
+            }
+            pendingMode = -1;
+            // 在读取线程上切换：确认之后的字节按新格式解码
+            transceiver.setIntegrityMode(mode);
+            negotiations++;
+        }
+        if (linkMonitor != null) {
+            linkMonitor.resumeKeepalives();
+        }
+        Log.i(TAG, "Integrity mode " + mode + " in effect.");
+        return true;
+    }
+
+    /**
+     * 返回成功的协商次数。
+     */
+    public long getNegotiationCount() {
+        return negotiations;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.circularslider;
+
+/**
+ * keepalive 命令 (ID 0x00，无参数)：由 LinkMonitor 在链路空闲时发送，设备原样回送。
+ */
+public final class KeepaliveCommand extends Command {
+
+    public static final byte ID = (byte) 0x00;
+
+    public KeepaliveCommand() {
+        super(ID);
+    }
+
+    @Override
+    public int getParamLength() {
+        return 0;
+    }
+
+    @Override
+    protected void writeParams(byte[] dst, int offset) {
+    }
+
+    @Override
+    protected boolean readParams(FrameProcessor.Data frame) {
+        return true;
+    }
+}
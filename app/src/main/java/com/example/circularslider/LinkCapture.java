@@ -0,0 +1,340 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * LinkCapture 类：把链路上收发的原始字节块连同纳秒时间戳记录到内存映射文件中。
+ *
+ * 【文件格式】(小端序)：
+ * 目录中依次生成 capture-00000.lcap、capture-00001.lcap ... 每个段文件大小固定：
+ * - 段头 (32 字节)：magic (int) | version (int) | 段序号 (int) | 保留 (int)
+ *                   | 创建时的 System.currentTimeMillis() (long) | 同一时刻的 System.nanoTime() (long)
+ * - 记录：timestampNanos (long) | direction (byte, DIR_RX/DIR_TX) | length (int) | 数据
+ * - direction == 0 表示段内数据结束 (映射文件初始为全 0)。
+ *
+ * 【性能】：
+ * 记录直接写入 MappedByteBuffer，没有逐块分配，也没有系统调用。
+ * 下一个段由后台线程提前创建并映射，换段时只交换引用，接收线程不会等待文件 I/O；
+ * 如果下一个段尚未就绪，该记录被丢弃并计数，而不是阻塞接收线程。
+ *
+ * 【线程】：append() 是同步的：接收线程 (Rx) 和 send() 调用线程 (Tx) 可能同时写入，
+ * 锁内只做一次内存复制。
+ */
+public class LinkCapture {
+
+    private static final String TAG = "LinkCapture";
+
+    public static final int MAGIC = 0x50414353; // "SCAP" (小端序)
+    public static final int VERSION = 1;
+    public static final int SEGMENT_HEADER_SIZE = 32;
+    public static final int RECORD_HEADER_SIZE = 13;
+
+    public static final byte DIR_RX = 1;
+    public static final byte DIR_TX = 2;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final File directory;
+    private final int segmentSize;
+
+    // 当前段 (由 this 保护)
+    private MappedByteBuffer current;
+    private FileChannel currentChannel;
+    private int segmentIndex = 0;
+    private boolean open = false;
+
+    // 预先准备的下一个段 (由 this 保护)
+    private MappedByteBuffer next;
+    private FileChannel nextChannel;
+    private File nextFile;
+
+    // 后台线程：准备下一个段并刷新已写满的段
+    private SegmentThread segmentThread;
+    private FileChannel retiredChannel;
+    private MappedByteBuffer retired;
+
+    // 统计
+    private long recordsWritten = 0;
+    private long bytesWritten = 0;
+    private long recordsDropped = 0;
+
+    /**
+     * 构造函数。
+     * @param directory 存放段文件的目录 (不存在时自动创建)。
+     * @param segmentSize 每个段文件的字节数。
+     */
+    public LinkCapture(File directory, int segmentSize) {
+        if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + 1) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public LinkCapture(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    // --------------------------------------------------------
+    // --- 生命周期 ---
+    // --------------------------------------------------------
+
+    /**
+     * 删除目录中上一次记录的段文件，创建第一个段并启动后台线程。
+     * @throws IOException 无法创建目录、删除旧段或映射文件。
+     */
+    public synchronized void start() throws IOException {
+        if (open) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create capture directory: " + directory);
+        }
+        deleteSegments();
+        segmentIndex = 0;
+        File file = segmentFile(segmentIndex);
+        currentChannel = new RandomAccessFile(file, "rw").getChannel();
+        current = mapSegment(currentChannel, segmentIndex);
+        open = true;
+
+        segmentThread = new SegmentThread();
+        segmentThread.start();
+        Log.i(TAG, "Capture started in " + directory);
+    }
+
+    /**
+     * 停止记录：刷新当前段，删除未使用的预备段，并停止后台线程。
+     */
+    public void stop() {
+        SegmentThread t;
+        synchronized (this) {
+            if (!open) return;
+            open = false;
+            current.force();
+            closeQuietly(currentChannel);
+            current = null;
+            currentChannel = null;
+            if (nextChannel != null) {
+                closeQuietly(nextChannel);
+                if (!nextFile.delete()) {
+                    Log.w(TAG, "Unable to delete unused segment " + nextFile);
+                }
+                next = null;
+                nextChannel = null;
+                nextFile = null;
+            }
+            t = segmentThread;
+            segmentThread = null;
+            notifyAll();
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Log.i(TAG, "Capture stopped. Records: " + recordsWritten + ", dropped: " + recordsDropped);
+    }
+
+    // --------------------------------------------------------
+    // --- 写入 ---
+    // --------------------------------------------------------
+
+    /**
+     * 追加一个原始字节块。
+     * @param direction DIR_RX 或 DIR_TX。
+     * @param data 数据数组。
+     * @param offset 起始位置。
+     * @param length 字节数。
+     * @return true 如果已记录，false 如果被丢弃 (未启动、块过大或下一个段尚未就绪)。
+     */
+    public synchronized boolean append(byte direction, byte[] data, int offset, int length) {
+        if (!open || length <= 0) return false;
+        long timestamp = System.nanoTime();
+        int needed = RECORD_HEADER_SIZE + length;
+
+        if (current.remaining() < needed) {
+            if (needed > segmentSize - SEGMENT_HEADER_SIZE || !rotate()) {
+                recordsDropped++;
+                return false;
+            }
+        }
+
+        current.putLong(timestamp);
+        current.put(direction);
+        current.putInt(length);
+        current.put(data, offset, length);
+        recordsWritten++;
+        bytesWritten += length;
+        return true;
+    }
+
+    /**
+     * 切换到预先准备好的下一个段。持有 this 时调用。
+     * @return false 如果下一个段尚未就绪。
+     */
+    private boolean rotate() {
+        if (next == null) {
+            notifyAll(); // 催促后台线程
+            return false;
+        }
+        // 旧段交给后台线程刷新和关闭
+        retired = current;
+        retiredChannel = currentChannel;
+
+        current = next;
+        currentChannel = nextChannel;
+        next = null;
+        nextChannel = null;
+        nextFile = null;
+        segmentIndex++;
+        notifyAll();
+        return true;
+    }
+
+    // --------------------------------------------------------
+    // --- 后台线程 ---
+    // --------------------------------------------------------
+
+    private class SegmentThread extends Thread {
+
+        SegmentThread() {
+            super("LinkCapture-segments");
+        }
+
+        public void run() {
+            boolean stopped = false;
+            while (!stopped) {
+                MappedByteBuffer toFlush;
+                FileChannel toClose;
+                int indexToPrepare;
+                synchronized (LinkCapture.this) {
+                    while (open && next != null && retired == null) {
+                        try {
+                            LinkCapture.this.wait();
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                    // 停止时也要刷新并关闭最后一个退役的段
+                    stopped = !open;
+                    toFlush = retired;
+                    toClose = retiredChannel;
+                    retired = null;
+                    retiredChannel = null;
+                    indexToPrepare = open && next == null ? segmentIndex + 1 : -1;
+                }
+
+                // 在锁外完成所有文件 I/O
+                if (toFlush != null) {
+                    toFlush.force();
+                    closeQuietly(toClose);
+                }
+                if (indexToPrepare >= 0) {
+                    prepare(indexToPrepare);
+                }
+            }
+        }
+
+        private void prepare(int index) {
+            File file = segmentFile(index);
+            FileChannel channel = null;
+            try {
+                channel = new RandomAccessFile(file, "rw").getChannel();
+                MappedByteBuffer buffer = mapSegment(channel, index);
+                synchronized (LinkCapture.this) {
+                    if (open && next == null && segmentIndex + 1 == index) {
+                        next = buffer;
+                        nextChannel = channel;
+                        nextFile = file;
+                        return;
+                    }
+                }
+                // 已停止或已过期：丢弃这个段
+                closeQuietly(channel);
+                if (!file.delete()) {
+                    Log.w(TAG, "Unable to delete stale segment " + file);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to prepare segment " + file, e);
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 实用方法 ---
+    // --------------------------------------------------------
+
+    private File segmentFile(int index) {
+        return new File(directory, String.format(Locale.US, "capture-%05d.lcap", index));
+    }
+
+    /**
+     * 删除目录中的所有段文件 (新的记录不能与上一次记录的段混在一起)。
+     */
+    private void deleteSegments() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("capture-") && name.endsWith(".lcap"));
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) {
+                throw new IOException("Unable to delete old segment " + file);
+            }
+        }
+    }
+
+    private MappedByteBuffer mapSegment(FileChannel channel, int index) throws IOException {
+        // 截断后重新映射：文件内容全为 0，第一条记录之后就是结束标记 (direction == 0)
+        channel.truncate(0);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(index);
+        buffer.putInt(0);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(System.nanoTime());
+        return buffer;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close capture segment", e);
+        }
+    }
+
+    /**
+     * 返回已记录的字节块数。
+     */
+    public synchronized long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    /**
+     * 返回已记录的有效数据字节数 (不含记录头)。
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * 返回被丢弃的字节块数。
+     */
+    public synchronized long getRecordsDropped() {
+        return recordsDropped;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.circularslider;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * LinkCaptureReader 类：按顺序读取 LinkCapture 生成的段文件中的记录。
+ * 每个段以只读方式映射，记录数据通过 read() 复制到调用者提供的复用数组中。
+ *
+ * 用法：
+ * <pre>
+ * while (reader.next()) {
+ *     int n = reader.read(buffer, 0);
+ *     ...
+ * }
+ * </pre>
+ */
+public class LinkCaptureReader implements Closeable {
+
+    private final File[] segments;
+    private int segmentPosition = -1;
+    private MappedByteBuffer segment;
+
+    // 当前记录
+    private long timestampNanos;
+    private byte direction;
+    private int length;
+    private int dataPosition;
+
+    /**
+     * 构造函数。
+     * @param path 记录目录 (读取其中所有 .lcap 段，按文件名排序) 或单个段文件。
+     * @throws IOException 路径中没有段文件。
+     */
+    public LinkCaptureReader(File path) throws IOException {
+        if (path.isDirectory()) {
+            File[] files = path.listFiles((dir, name) -> name.endsWith(".lcap"));
+            if (files == null || files.length == 0) {
+                throw new IOException("No capture segments in " + path);
+            }
+            Arrays.sort(files);
+            segments = files;
+        } else if (path.isFile()) {
+            segments = new File[] { path };
+        } else {
+            throw new IOException("Capture not found: " + path);
+        }
+    }
+
+    /**
+     * 前进到下一条记录。
+     * @return false 如果所有段都已读完。
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment == null || !segmentHasRecord()) {
+                if (!openNextSegment()) {
+                    return false;
+                }
+                continue;
+            }
+            timestampNanos = segment.getLong();
+            direction = segment.get();
+            length = segment.getInt();
+            dataPosition = segment.position();
+            if (length < 0 || length > segment.remaining()) {
+                // 截断的记录 (例如进程被杀死时)：跳过该段剩余部分
+                segment = null;
+                continue;
+            }
+            segment.position(dataPosition + length);
+            return true;
+        }
+    }
+
+    private boolean segmentHasRecord() {
+        return segment.remaining() >= LinkCapture.RECORD_HEADER_SIZE
+                && segment.get(segment.position() + 8) != 0; // direction == 0 表示段结束
+    }
+
+    private boolean openNextSegment() throws IOException {
+        segment = null;
+        while (++segmentPosition < segments.length) {
+            try (RandomAccessFile file = new RandomAccessFile(segments[segmentPosition], "r");
+                 FileChannel channel = file.getChannel()) {
+                if (channel.size() < LinkCapture.SEGMENT_HEADER_SIZE) continue;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.getInt(0) != LinkCapture.MAGIC) {
+                    throw new IOException("Not a capture segment: " + segments[segmentPosition]);
+                }
+                buffer.position(LinkCapture.SEGMENT_HEADER_SIZE);
+                segment = buffer;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把当前记录的数据完整复制到 dst (dst 至少需要 getLength() 字节的剩余空间)。
+     * @return 复制的字节数 (等于 getLength())。
+     * @throws IndexOutOfBoundsException dst 的剩余空间不足 (不会只复制一部分)。
+     */
+    public int read(byte[] dst, int offset) {
+        int n = length;
+        if (offset < 0 || n > dst.length - offset) {
+            throw new IndexOutOfBoundsException("Record of " + n + " bytes does not fit at " + offset
+                    + " in " + dst.length + " bytes");
+        }
+        int saved = segment.position();
+        segment.position(dataPosition);
+        segment.get(dst, offset, n);
+        segment.position(saved);
+        return n;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * 返回 LinkCapture.DIR_RX 或 LinkCapture.DIR_TX。
+     */
+    public byte getDirection() {
+        return direction;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        segmentPosition = segments.length;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LinkMonitor 类：心跳和死链检测。
+ *
+ * 读取任务阻塞在 read() 上，半开的链路 (对端已消失但套接字没有报错) 原本要等到某次写入失败才会被发现。
+ * LinkMonitor 跟踪最近一次收到有效帧的时间 (Transceiver.getLastValidFrameNanos())：
+ * - 链路空闲超过 keepaliveInterval 时发送一帧 keepalive (CMD_KEEPALIVE，无参数)，设备应原样回送；
+ * - 超过 deadTimeout 没有任何有效帧时判定链路已死，调用 Transceiver.disconnect() 关闭套接字
+ *   (阻塞的 read() 随即返回)，所有者 (例如 ReconnectController) 会看到一次普通的 NOT_CONNECTED。
+ *
+ * 检查由 TransportExecutors 的共享定时器周期执行 (周期为 deadTimeout / CHECKS_PER_TIMEOUT)，
+ * 不为每个连接创建线程。因此从最后一帧到判定死链的时间不超过
+ * deadTimeout * (1 + 1 / CHECKS_PER_TIMEOUT) 加上定时器的调度误差，实际值由 getLastDetectionLatencyMillis() 给出。
+ *
+ * 默认关闭 (deadTimeout 为 0)：CMD_KEEPALIVE 不在 Table 1 中，不能假定设备固件会回送它，
+ * 空闲且不回送的设备会被反复判定为死链 (并触发 ReconnectController 的重连循环)。
+ * 只对已知会回送 keepalive 的设备 (例如 DeviceSimulator) 用 setTimeouts() 启用，
+ * 例如 RECOMMENDED_KEEPALIVE_INTERVAL_MS / RECOMMENDED_DEAD_TIMEOUT_MS。
+ *
+ * pauseKeepalives() 在一段时间内暂停 keepalive 和死链判定 (例如 IntegrityNegotiator 等待确认时)，
+ * 暂停结束的时刻算作一次活动，所以死链检测最多推迟暂停的时长。
+ *
+ * 所有者必须把 Transceiver 的状态变化转发给 onConnectionStatusChanged()。
+ */
+public class LinkMonitor {
+
+    private static final String TAG = "LinkMonitor";
+
+    // 心跳命令 ID (无参数)，设备回送相同的帧
+    public static final byte CMD_KEEPALIVE = KeepaliveCommand.ID;
+
+    // 对回送 keepalive 的设备建议使用的值 (默认不启用)
+    public static final long RECOMMENDED_KEEPALIVE_INTERVAL_MS = 1000;
+    public static final long RECOMMENDED_DEAD_TIMEOUT_MS = 3000;
+
+    // 每个 deadTimeout 内的检查次数
+    public static final int CHECKS_PER_TIMEOUT = 4;
+
+    private final Transceiver transceiver;
+    private final CommandEncoder commandEncoder = new CommandEncoder(0);
+    private final KeepaliveCommand keepalive = new KeepaliveCommand();
+
+    // 0：不检测、不发送 keepalive
+    private volatile long keepaliveIntervalNanos = 0;
+    private volatile long deadTimeoutNanos = 0;
+
+    // 以下状态由 this 锁保护
+    private ScheduledFuture<?> check;
+    private long epoch;                // 被监视的连接
+    private long connectedAtNanos;     // 连接建立的时刻 (在收到第一帧之前作为"最近活动")
+    private long lastKeepaliveNanos;
+    private boolean paused;
+    private long pausedUntilNanos;     // paused 为 true 时有效
+
+    // 统计
+    private volatile long keepalivesSent = 0;
+    private volatile long deadLinks = 0;
+    private volatile long lastDetectionNanos = 0;
+    private volatile long maxDetectionNanos = 0;
+
+    public LinkMonitor(Transceiver transceiver) {
+        this.transceiver = transceiver;
+    }
+
+    /**
+     * 设置心跳间隔和死链超时 (默认都为 0，即关闭)。对下一次连接生效。
+     * 只有设备会回送 CMD_KEEPALIVE 时才应启用，否则空闲的链路会被误判为死链。
+     * @param keepaliveIntervalMs 空闲多久后发送 keepalive，0 表示不发送。
+     * @param deadTimeoutMs 多久没有有效帧判定死链，0 表示不检测 (同时不发送 keepalive)。
+     */
+    public void setTimeouts(long keepaliveIntervalMs, long deadTimeoutMs) {
+        if (keepaliveIntervalMs < 0 || deadTimeoutMs < 0
+                || (deadTimeoutMs > 0 && keepaliveIntervalMs >= deadTimeoutMs)) {
+            throw new IllegalArgumentException("Invalid timeouts: " + keepaliveIntervalMs + "/" + deadTimeoutMs);
+        }
+        this.keepaliveIntervalNanos = TimeUnit.MILLISECONDS.toNanos(keepaliveIntervalMs);
+        this.deadTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(deadTimeoutMs);
+    }
+
+    public long getKeepaliveIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(keepaliveIntervalNanos);
+    }
+
+    public long getDeadTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadTimeoutNanos);
+    }
+
+    /**
+     * 由所有者在 Transceiver 报告状态变化时调用 (任意线程)。
+     */
+    public synchronized void onConnectionStatusChanged(int status) {
+        if (status == Transceiver.STATE_CONNECTED) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    private void start() {
+        stop();
+        long timeout = deadTimeoutNanos;
+        if (timeout == 0) return;
+        epoch = transceiver.getEpoch();
+        connectedAtNanos = System.nanoTime();
+        lastKeepaliveNanos = connectedAtNanos;
+        long period = Math.max(1, timeout / CHECKS_PER_TIMEOUT);
+        try {
+            check = transceiver.getExecutors().getScheduler()
+                    .scheduleAtFixedRate(this::check, period, period, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Link monitor rejected: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 暂停 keepalive 和死链判定 (任意线程)。已有的暂停只会被延长。
+     * @param durationNanos 暂停的时长；resumeKeepalives() 可以提前结束。
+     */
+    public synchronized void pauseKeepalives(long durationNanos) {
+        long until = System.nanoTime() + durationNanos;
+        if (!paused || until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+        paused = true;
+    }
+
+    /**
+     * 提前结束 pauseKeepalives() 的暂停。
+     */
+    public synchronized void resumeKeepalives() {
+        if (paused) {
+            pausedUntilNanos = Math.min(pausedUntilNanos, System.nanoTime());
+        }
+    }
+
+    /**
+     * 停止监视当前连接。
+     */
+    public synchronized void stop() {
+        if (check != null) {
+            check.cancel(false);
+            check = null;
+        }
+    }
+
+    /**
+     * 周期检查 (在共享定时器线程上，必须很快返回)。
+     */
+    private void check() {
+        long now = System.nanoTime();
+        long lastActivity;
+        final long deadEpoch;
+        synchronized (this) {
+            if (check == null) return;
+            if (transceiver.getEpoch() != epoch || transceiver.getStatus() != Transceiver.STATE_CONNECTED) {
+                stop(); // 连接已经结束或被替换
+                return;
+            }
+            lastActivity = Math.max(connectedAtNanos, transceiver.getLastValidFrameNanos());
+            if (paused) {
+                if (now - pausedUntilNanos < 0) return;
+                // 暂停结束的时刻算作活动
+                lastActivity = Math.max(lastActivity, pausedUntilNanos);
+            }
+            long silence = now - lastActivity;
+
+            if (silence < deadTimeoutNanos) {
+                // 空闲：发送 keepalive (每个间隔最多一次)
+                long interval = keepaliveIntervalNanos;
+                if (interval > 0 && silence >= interval && now - lastKeepaliveNanos >= interval) {
+                    lastKeepaliveNanos = now;
+                    if (commandEncoder.send(transceiver, keepalive)) {
+                        keepalivesSent++;
+                    }
+                }
+                return;
+            }
+
+            // 死链
+            stop();
+            deadEpoch = epoch;
+            deadLinks++;
+            lastDetectionNanos = silence;
+            maxDetectionNanos = Math.max(maxDetectionNanos, silence);
+        }
+        Log.w(TAG, "No valid frame for " + TimeUnit.NANOSECONDS.toMillis(now - lastActivity)
+                + " ms. Declaring link dead.");
+        // disconnect() 会等待读写任务结束，不在定时器线程上执行
+        try {
+            transceiver.getExecutors().getConnectExecutor().execute(() -> {
+                if (transceiver.getEpoch() == deadEpoch && transceiver.getStatus() == Transceiver.STATE_CONNECTED) {
+                    transceiver.disconnect();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Dead link disconnect rejected: " + e.getMessage());
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回已发送的 keepalive 帧数。
+     */
+    public long getKeepalivesSent() {
+        return keepalivesSent;
+    }
+
+    /**
+     * 返回判定为死链的次数。
+     */
+    public long getDeadLinkCount() {
+        return deadLinks;
+    }
+
+    /**
+     * 返回最近一次死链的检测延迟 (毫秒)：从最后一个有效帧 (或连接建立) 到判定死链的时间。
+     */
+    public long getLastDetectionLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastDetectionNanos);
+    }
+
+    /**
+     * 返回最长的检测延迟 (毫秒)。
+     */
+    public long getMaxDetectionLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDetectionNanos);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Pipe;
+
+/**
+ * 实现 Transceiver 抽象类的回环版本：两个端点通过一对 java.nio Pipe 相连，像一根串口线。
+ *
+ * new LoopbackTransceiver() 创建主机端，peer() 返回对端 (例如交给 DeviceSimulator)。
+ * 两端都是完整的 ChannelTransceiver：帧编码、txBuffer、读写线程和监听器约定与其他传输相同，
+ * 因此可以在没有硬件的情况下以远高于蓝牙的速率测试整条数据链路。
+ *
+ * - connect(id)：id 被忽略。连接任意一端时，如果对端尚未连接，会一起连接。
+ *   如果本端重新连接时对端还连在旧的管道上 (尚未察觉本端断开)，对端会被断开并重新连接到新的管道，
+ *   两端总是属于同一代管道。
+ * - disconnect()：关闭本端的通道，对端读到流结束后报告连接丢失。
+ * - setImpairment()：按帧随机丢弃或破坏本端发出的帧，用于测试重传和校验。
+ */
+public class LoopbackTransceiver extends ChannelTransceiver {
+
+    private static final String TAG = "LoopbackTransceiver";
+
+    /**
+     * 两个端点共享的管道对。每次重新连接时创建新的一代管道 (关闭的 Pipe 不能重用)。
+     */
+    private static final class Cable {
+        LoopbackTransceiver a;
+        LoopbackTransceiver b;
+        private Pipe aToB;
+        private Pipe bToA;
+
+        // 每一端最近一次打开通道时所属连接的 epoch，-1 表示在当前这一代管道上还没有打开过 (由 this 保护)
+        private long openEpochA = -1;
+        private long openEpochB = -1;
+
+        /**
+         * 为一端打开通道。管道的任意一端已关闭时创建新的一代管道。
+         * @param epoch 打开通道的连接的 epoch。
+         * @return 新的通道；如果创建了新的一代管道，而对端的连接仍属于旧的一代 (之后没有开始新的连接)，
+         *         stalePeerEpoch[0] 为对端那次连接的 epoch，否则为 -1。
+         */
+        synchronized ByteChannel open(boolean sideA, long epoch, long[] stalePeerEpoch) throws IOException {
+            stalePeerEpoch[0] = -1;
+            if (aToB == null || !aToB.sink().isOpen() || !aToB.source().isOpen()
+                    || !bToA.sink().isOpen() || !bToA.source().isOpen()) {
+                long peerEpoch = sideA ? openEpochB : openEpochA;
+                if (peerEpoch >= 0 && (sideA ? b : a).getEpoch() == peerEpoch) {
+                    stalePeerEpoch[0] = peerEpoch;
+                }
+                aToB = Pipe.open();
+                bToA = Pipe.open();
+                openEpochA = -1;
+                openEpochB = -1;
+            }
+            if (sideA) {
+                openEpochA = epoch;
+                return new PipeChannel(bToA.source(), aToB.sink());
+            } else {
+                openEpochB = epoch;
+                return new PipeChannel(aToB.source(), bToA.sink());
+            }
+        }
+    }
+
+    /**
+     * 把一个管道的读端和另一个管道的写端组合成一个 ByteChannel。
+     */
+    private static final class PipeChannel implements ByteChannel {
+        private final Pipe.SourceChannel source;
+        private final Pipe.SinkChannel sink;
+
+        PipeChannel(Pipe.SourceChannel source, Pipe.SinkChannel sink) {
+            this.source = source;
+            this.sink = sink;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return source.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return sink.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen() && sink.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                sink.close(); // 对端读到流结束
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    private final Cable cable;
+    private final boolean sideA;
+
+    // 损伤注入 (只影响本端发出的帧)
+    private volatile float lossRate = 0f;
+    private volatile float corruptRate = 0f;
+    private int random = 0x2545F491;
+    private final byte[] corruptFrame = new byte[FrameProcessor.maxFrameSize(SampleDecoder.MAX_PARAM_SIZE)];
+    private volatile long framesLost = 0;
+    private volatile long framesCorrupted = 0;
+
+    /**
+     * 创建主机端 (以及它的对端，通过 peer() 获得)。
+     */
+    public LoopbackTransceiver() {
+        this(new Cable(), true);
+    }
+
+    private LoopbackTransceiver(Cable cable, boolean sideA) {
+        this.cable = cable;
+        this.sideA = sideA;
+        if (sideA) {
+            cable.a = this;
+            cable.b = new LoopbackTransceiver(cable, false);
+        }
+    }
+
+    /**
+     * 返回线缆另一端的 Transceiver。
+     */
+    public LoopbackTransceiver peer() {
+        return sideA ? cable.b : cable.a;
+    }
+
+    /**
+     * 设置本端发出帧的损伤概率。
+     * @param lossRate 整帧丢弃的概率 (0.0 到 1.0)。
+     * @param corruptRate 帧内随机一个字节被改写的概率 (0.0 到 1.0)。
+     */
+    public void setImpairment(float lossRate, float corruptRate) {
+        this.lossRate = Math.max(0f, Math.min(1f, lossRate));
+        this.corruptRate = Math.max(0f, Math.min(1f, corruptRate));
+    }
+
+    public long getFramesLost() {
+        return framesLost;
+    }
+
+    public long getFramesCorrupted() {
+        return framesCorrupted;
+    }
+
+    // ----------------------------------------------------------------------
+    // --- ChannelTransceiver ---
+    // ----------------------------------------------------------------------
+
+    @Override
+    protected ByteChannel openChannel(String id) throws IOException {
+        long[] stalePeerEpoch = new long[1];
+        ByteChannel channel = cable.open(sideA, getEpoch(), stalePeerEpoch);
+        LoopbackTransceiver other = peer();
+        // 对端的连接属于旧的管道 (可能还没有察觉本端断开)：断开它并连接到新的管道。
+        // 只断开旧 epoch 的连接，对端在此期间自行建立的新连接不受影响
+        if (stalePeerEpoch[0] >= 0 && other.disconnect(stalePeerEpoch[0])) {
+            Log.i(TAG, "Moved loopback side " + (sideA ? "B" : "A") + " off the old pipes.");
+            if (other.getStatus() == STATE_NOT_CONNECTED) {
+                other.connect(id);
+            }
+        }
+        return channel;
+    }
+
+    @Override
+    public void connect(String id) {
+        super.connect(id);
+        LoopbackTransceiver other = peer();
+        if (other.getStatus() == STATE_NOT_CONNECTED) {
+            other.connect(id);
+        }
+    }
+
+    @Override
+    protected boolean enqueue(byte[] frame, int offset, int length, boolean block) {
+        float loss = lossRate;
+        float corrupt = corruptRate;
+        if (loss == 0f && corrupt == 0f) {
+            return super.enqueue(frame, offset, length, block);
+        }
+        synchronized (corruptFrame) {
+            if (nextUnit() < loss) {
+                framesLost++;
+                return true; // 对发送方而言帧已发出，只是在"线路"上丢失
+            }
+            if (nextUnit() < corrupt && length > 2 && length <= corruptFrame.length) {
+                System.arraycopy(frame, offset, corruptFrame, 0, length);
+                int position = 1 + (int) (nextUnit() * (length - 2));
+                corruptFrame[position] ^= (byte) (1 << (int) (nextUnit() * 8));
+                framesCorrupted++;
+                return super.enqueue(corruptFrame, 0, length, block);
+            }
+        }
+        return super.enqueue(frame, offset, length, block);
+    }
+
+    /**
+     * 返回 [0, 1) 的伪随机数 (xorshift32，调用者持有 corruptFrame 锁)。
+     */
+    private float nextUnit() {
+        int x = random;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        random = x;
+        return (x >>> 8) / (float) (1 << 24);
+    }
+
+    @Override
+    public void disconnect() {
+        Log.i(TAG, "Disconnecting loopback side " + (sideA ? "A" : "B"));
+        super.disconnect();
+    }
+}
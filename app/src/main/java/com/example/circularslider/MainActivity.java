@@ -1,7 +1,9 @@
 package com.example.circularslider;
 
 import android.app.Activity;
+import android.bluetooth.BluetoothAdapter;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
@@ -23,10 +25,15 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
 
     private static final String TAG = "MainActivity";
 
+    // 最近一次成功连接的设备地址 (用于启动时直接重连，跳过设备发现)
+    private static final String PREFS_NAME = "circularslider";
+    private static final String PREF_LAST_DEVICE = "last_device_address";
+
     // UI 元素
     private TextView valueText;
     private TextView statusText; // 用于显示连接状态的 TextView (Q.3.6-1)
     private CircularSlider circularSlider; // 假设您已定义此自定义 View
+    private OscilloscopeView oscilloscopeView; // 波形显示
 
     // 业务逻辑和通信管理
     private OscilloManager oscilloManager;
@@ -35,6 +42,9 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
     // Q.3.6-2: 抽象类实现的具体实例，用于附加到 OscilloManager
     private OscilloEventsListener oscilloEventsListener;
 
+    // 为 true 时 onBTSetupReady() 直接连接缓存的设备，而不是启动设备列表
+    private boolean warmStart = false;
+
     // --- ActivityResultLaunchers (用于处理异步结果) ---
 
     // 1. 权限请求启动器
@@ -105,6 +115,11 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
         valueText = findViewById(R.id.valueText);
         circularSlider = findViewById(R.id.circularSlider);
         statusText = findViewById(R.id.statusText);
+        oscilloscopeView = findViewById(R.id.oscilloscopeView);
+
+        if (oscilloscopeView != null) {
+            oscilloscopeView.setSource(oscilloManager.getHistory());
+        }
 
         if (circularSlider != null && valueText != null) {
             // 监听 Slider 变化
@@ -130,9 +145,11 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
                     String statusMsg;
                     boolean isConnected = false;
 
+                    boolean reconnecting = oscilloManager.getReconnectController().isReconnecting();
+
                     switch (status) {
                         case Transceiver.STATE_NOT_CONNECTED:
-                            statusMsg = "未连接";
+                            statusMsg = reconnecting ? "连接中断，正在重连..." : "未连接";
                             break;
                         case Transceiver.STATE_CONNECTING:
                             statusMsg = "连接中...";
@@ -140,6 +157,7 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
                         case Transceiver.STATE_CONNECTED:
                             statusMsg = "已连接";
                             isConnected = true;
+                            saveLastDevice(oscilloManager.getReconnectController().getLastAddress());
                             break;
                         default:
                             statusMsg = "未知状态";
@@ -152,7 +170,10 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
                         circularSlider.setEnabled(isConnected); // Q.3.8-1
                     }
 
-                    Toast.makeText(MainActivity.this, statusMsg, Toast.LENGTH_SHORT).show();
+                    // 自动重连期间每次尝试都会改变状态，不逐一提示
+                    if (!reconnecting) {
+                        Toast.makeText(MainActivity.this, statusMsg, Toast.LENGTH_SHORT).show();
+                    }
                 });
             }
 
@@ -166,9 +187,33 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
                     // TODO: 在这里处理收到的数据
                 });
             }
+
+            @Override
+            public void onSamplesReceived(float[] samples, int count) {
+                // 采样已写入 OscilloManager 的历史；这里只请求重绘 (可在任意线程调用)
+                if (oscilloscopeView != null) {
+                    oscilloscopeView.notifyDataChanged();
+                }
+            }
         };
 
         // 注意：第一次 addListener 在 onStart 中执行
+
+        // 恢复最近一次连接的设备；首次启动 (非配置更改) 时直接尝试连接它
+        ReconnectController reconnectController = oscilloManager.getReconnectController();
+        String lastDevice = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getString(PREF_LAST_DEVICE, null);
+        if (lastDevice != null && !BluetoothAdapter.checkBluetoothAddress(lastDevice)) {
+            Log.w(TAG, "Ignoring invalid cached device address: " + lastDevice);
+            lastDevice = null;
+        }
+        if (reconnectController.getLastAddress() == null && lastDevice != null) {
+            reconnectController.setLastAddress(lastDevice);
+        }
+        if (savedInstanceState == null && lastDevice != null
+                && oscilloManager.getTransceiver().getStatus() == Transceiver.STATE_NOT_CONNECTED) {
+            warmStart = true;
+            btSetup.BTReadyBT(requestPermissionLauncher, requestEnableBTLauncher);
+        }
     }
 
     @Override
@@ -219,6 +264,16 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
 
     @Override
     public void onBTSetupReady() {
+        String lastDevice = oscilloManager.getReconnectController().getLastAddress();
+        if (warmStart && lastDevice != null) {
+            // 快速启动：直接连接上次的设备，失败时用户仍可通过菜单选择设备
+            warmStart = false;
+            Log.i(TAG, "蓝牙设置全部就绪。连接上次的设备 " + lastDevice);
+            oscilloManager.connect(lastDevice);
+            return;
+        }
+        warmStart = false;
+
         Log.i(TAG, "蓝牙设置全部就绪。启动连接活动。");
         Toast.makeText(this, "蓝牙已就绪，启动设备列表...", Toast.LENGTH_SHORT).show();
 
@@ -229,6 +284,7 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
 
     @Override
     public void onBTSetupFailed(String reason) {
+        warmStart = false;
         Log.e(TAG, "蓝牙设置失败: " + reason);
         Toast.makeText(this, "蓝牙设置失败: " + reason, Toast.LENGTH_LONG).show();
         if (circularSlider != null) {
@@ -254,6 +310,15 @@ public class MainActivity extends AppCompatActivity implements BTSetupCallback {
         }
     }
 
+    /** 保存最近一次成功连接的设备地址。*/
+    private void saveLastDevice(String address) {
+        if (address == null) return;
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        if (!address.equals(prefs.getString(PREF_LAST_DEVICE, null))) {
+            prefs.edit().putString(PREF_LAST_DEVICE, address).apply();
+        }
+    }
+
     /** 用于封装启动蓝牙适配器 Intent 的逻辑，解决向前引用问题。*/
     private void requestEnableBT() {
         Intent enableBtIntent = new Intent(android.bluetooth.BluetoothAdapter.ACTION_REQUEST_ENABLE);
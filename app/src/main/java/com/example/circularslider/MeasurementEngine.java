@@ -0,0 +1,268 @@
+package com.example.circularslider;
+
+/**
+ * MeasurementEngine 类：在滑动窗口上实时计算均值、RMS、最小/最大值、峰峰值、频率和占空比。
+ *
+ * 【复杂度】：每个采样均摊 O(1)，从不重新遍历整个窗口。
+ * - 均值/RMS：滑动的 sum 和 sum of squares。为避免浮点误差累积，每 window 个采样
+ *   从环形缓冲区重新求和一次 (代价 O(window)，均摊到每个采样仍为 O(1))。
+ * - 最小/最大：两个单调双端队列，存放采样的绝对索引 (基本类型 long 环)。
+ * - 频率/占空比：以窗口中点电平 ± 迟滞判定高低状态，记录上升沿索引及当时的累计高电平数，
+ *   频率 = (上升沿数 - 1) / (末沿 - 首沿)，占空比 = 两沿之间高电平采样数 / 两沿间距。
+ *
+ * 【线程】：process() 在接收线程上调用；UI 线程通过 read() 无锁读取。
+ * 结果用序列锁 (seqlock) 发布：写入前后各递增一次 volatile 序号，
+ * 读者在序号为偶数且前后一致时接受结果，否则重试。
+ */
+public class MeasurementEngine {
+
+    // 以峰峰值的比例表示的迟滞，用于频率/占空比的电平判定
+    private static final float HYSTERESIS_RATIO = 0.1f;
+
+    /**
+     * 一组测量结果。由调用者预先分配并传给 read()，以避免分配。
+     */
+    public static final class Values {
+        private float mean;
+        private float rms;
+        private float min;
+        private float max;
+        private float frequency;
+        private float dutyCycle;
+        private int sampleCount;
+
+        public float getMean() { return mean; }
+        public float getRms() { return rms; }
+        public float getMin() { return min; }
+        public float getMax() { return max; }
+        public float getPeakToPeak() { return max - min; }
+        /** 频率 (Hz)，未检测到两个上升沿时为 0。 */
+        public float getFrequency() { return frequency; }
+        /** 占空比 (0.0 到 1.0)，未检测到两个上升沿时为 0。 */
+        public float getDutyCycle() { return dutyCycle; }
+        /** 窗口中的有效采样数。 */
+        public int getSampleCount() { return sampleCount; }
+    }
+
+    // --- 窗口 ---
+    private int window;
+    private float[] values;
+    private long total = 0;           // 已处理的采样数
+    private double sum = 0;
+    private double sumSq = 0;
+    private int sinceResum = 0;
+
+    // --- 单调双端队列 (存放绝对索引) ---
+    private long[] minDeque;
+    private int minHead, minSize;
+    private long[] maxDeque;
+    private int maxHead, maxSize;
+
+    // --- 电平状态与上升沿 ---
+    private boolean high = false;
+    private long highCount = 0;        // 累计高电平采样数 (从开始计)
+    private long[] edgeIndex;          // 上升沿的绝对索引
+    private long[] edgeHighCount;      // 上升沿处的累计高电平数
+    private int edgeHead, edgeSize;
+
+    private volatile float sampleRate = 1f;
+
+    // --- 序列锁发布 ---
+    private volatile int sequence = 0;
+    private volatile float pubMean, pubRms, pubMin, pubMax, pubFrequency, pubDutyCycle;
+    private volatile int pubCount;
+
+    public MeasurementEngine(int window) {
+        setWindow(window);
+    }
+
+    // --------------------------------------------------------
+    // --- 配置 ---
+    // --------------------------------------------------------
+
+    /**
+     * 设置滑动窗口长度 (采样数)，并清空当前状态。
+     */
+    public synchronized void setWindow(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be >= 2: " + window);
+        }
+        this.window = window;
+        values = new float[window];
+        minDeque = new long[window];
+        maxDeque = new long[window];
+        edgeIndex = new long[window / 2 + 1];
+        edgeHighCount = new long[window / 2 + 1];
+        total = 0;
+        sum = 0;
+        sumSq = 0;
+        sinceResum = 0;
+        minHead = minSize = 0;
+        maxHead = maxSize = 0;
+        edgeHead = edgeSize = 0;
+        high = false;
+        highCount = 0;
+    }
+
+    /**
+     * 设置采样率，用于把采样间隔换算为频率。
+     */
+    public void setSampleRate(float sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    // --------------------------------------------------------
+    // --- 处理 (接收线程) ---
+    // --------------------------------------------------------
+
+    /**
+     * 处理一批采样，并在结束时发布一次结果。
+     */
+    public synchronized void process(float[] samples, int offset, int count) {
+        final int w = window;
+        for (int i = 0; i < count; i++) {
+            float v = samples[offset + i];
+            long idx = total++;
+            int pos = (int) (idx % w);
+
+            // 1. 移出离开窗口的采样
+            if (idx >= w) {
+                float old = values[pos];
+                sum -= old;
+                sumSq -= (double) old * old;
+            }
+            values[pos] = v;
+            sum += v;
+            sumSq += (double) v * v;
+
+            // 2. 周期性重新求和，消除累积误差
+            if (++sinceResum >= w) {
+                sinceResum = 0;
+                double s = 0, sq = 0;
+                int n = (int) Math.min(total, w);
+                for (int k = 0; k < n; k++) {
+                    s += values[k];
+                    sq += (double) values[k] * values[k];
+                }
+                sum = s;
+                sumSq = sq;
+            }
+
+            long windowStart = idx - w + 1;
+
+            // 3. 最小值单调队列：先移出过期的队首，再从队尾移除所有不小于 v 的项
+            while (minSize > 0 && minDeque[minHead] < windowStart) {
+                minHead = (minHead + 1) % w;
+                minSize--;
+            }
+            while (minSize > 0 && values[(int) (minDeque[(minHead + minSize - 1) % w] % w)] >= v) {
+                minSize--;
+            }
+            minDeque[(minHead + minSize) % w] = idx;
+            minSize++;
+
+            // 4. 最大值单调队列
+            while (maxSize > 0 && maxDeque[maxHead] < windowStart) {
+                maxHead = (maxHead + 1) % w;
+                maxSize--;
+            }
+            while (maxSize > 0 && values[(int) (maxDeque[(maxHead + maxSize - 1) % w] % w)] <= v) {
+                maxSize--;
+            }
+            maxDeque[(maxHead + maxSize) % w] = idx;
+            maxSize++;
+
+            // 5. 高低电平判定 (窗口中点 ± 迟滞) 与上升沿记录
+            float mn = values[(int) (minDeque[minHead] % w)];
+            float mx = values[(int) (maxDeque[maxHead] % w)];
+            float mid = (mn + mx) * 0.5f;
+            float hyst = (mx - mn) * HYSTERESIS_RATIO;
+            if (!high && v > mid + hyst) {
+                high = true;
+                int cap = edgeIndex.length;
+                if (edgeSize == cap) {
+                    edgeHead = (edgeHead + 1) % cap;
+                    edgeSize--;
+                }
+                int slot = (edgeHead + edgeSize) % cap;
+                edgeIndex[slot] = idx;
+                edgeHighCount[slot] = highCount;
+                edgeSize++;
+            } else if (high && v < mid - hyst) {
+                high = false;
+            }
+            if (high) highCount++;
+
+            while (edgeSize > 0 && edgeIndex[edgeHead] < windowStart) {
+                edgeHead = (edgeHead + 1) % edgeIndex.length;
+                edgeSize--;
+            }
+        }
+        publish();
+    }
+
+    /**
+     * 计算结果并通过序列锁发布。只在持有对象锁的写线程上调用。
+     */
+    private void publish() {
+        int n = (int) Math.min(total, window);
+        if (n == 0) return;
+
+        float mean = (float) (sum / n);
+        float rms = (float) Math.sqrt(Math.max(sumSq / n, 0));
+        float mn = values[(int) (minDeque[minHead] % window)];
+        float mx = values[(int) (maxDeque[maxHead] % window)];
+
+        float frequency = 0f;
+        float duty = 0f;
+        if (edgeSize >= 2) {
+            int cap = edgeIndex.length;
+            int first = edgeHead;
+            int last = (edgeHead + edgeSize - 1) % cap;
+            long span = edgeIndex[last] - edgeIndex[first];
+            if (span > 0) {
+                frequency = (edgeSize - 1) * sampleRate / span;
+                duty = (float) (edgeHighCount[last] - edgeHighCount[first]) / span;
+            }
+        }
+
+        sequence++; // 奇数：写入中
+        pubMean = mean;
+        pubRms = rms;
+        pubMin = mn;
+        pubMax = mx;
+        pubFrequency = frequency;
+        pubDutyCycle = duty;
+        pubCount = n;
+        sequence++; // 偶数：写入完成
+    }
+
+    // --------------------------------------------------------
+    // --- 读取 (任意线程，无锁) ---
+    // --------------------------------------------------------
+
+    /**
+     * 读取最近一次发布的结果。不加锁，与写线程冲突时自旋重试。
+     * @param out 调用者预先分配的结果对象。
+     * @return out。
+     */
+    public Values read(Values out) {
+        while (true) {
+            int s1 = sequence;
+            if ((s1 & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            out.mean = pubMean;
+            out.rms = pubRms;
+            out.min = pubMin;
+            out.max = pubMax;
+            out.frequency = pubFrequency;
+            out.dutyCycle = pubDutyCycle;
+            out.sampleCount = pubCount;
+            if (sequence == s1) {
+                return out;
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MultiplexedTransport 类：用固定数量的线程服务任意多个 TCP 设备连接。
+ *
+ * BluetoothManager / ChannelTransceiver 每个连接使用 3 个专用线程 (连接、读、写)。
+ * 这里所有连接共享：
+ * - 1 个 Selector 线程：非阻塞地完成连接、读取和写出；
+ * - decodeThreads 个解码线程：运行 FrameProcessor 和监听器回调。
+ *
+ * 每个连接 (Link，一个普通的 Transceiver，可直接交给 OscilloManager) 持有：
+ * - 接收环形缓冲区：Selector 线程写入，解码任务读出。缓冲区满时暂停该连接的 OP_READ (背压)；
+ * - 发送环形缓冲区和一个写出暂存区：send() 写入，Selector 线程在 OP_WRITE 就绪时写出；
+ * - 一个 FrameProcessor。
+ * 同一连接的解码任务通过 decodeScheduled 标志串行化，保证帧顺序，不同连接可以并行解码。
+ *
+ * getThreadsPerLink() / getMemoryPerLink() 报告每个连接的线程和缓冲区开销。
+ */
+public class MultiplexedTransport implements Closeable {
+
+    private static final String TAG = "MultiplexedTransport";
+
+    // 每个连接的缓冲区大小
+    public static final int RX_BUFFER_SIZE = 16 * 1024;
+    public static final int TX_BUFFER_SIZE = 8 * 1024;
+    public static final int WRITE_STAGE_SIZE = 4 * 1024;
+
+    // sendEncodedBlocking() 等待空间时重新检查连接状态的间隔
+    private static final long TX_WAIT_MS = 100;
+
+    // Selector 线程和解码线程共享的读取/解码块大小
+    private static final int IO_CHUNK_SIZE = 16 * 1024;
+
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final ExecutorService decodePool;
+    private final int decodeThreads;
+
+    // 需要在 Selector 线程上执行的操作 (注册、改变 interestOps、关闭)
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<Link> links = new CopyOnWriteArrayList<>();
+
+    // Selector 线程复用的读取缓冲区
+    private final ByteBuffer readScratch = ByteBuffer.allocateDirect(IO_CHUNK_SIZE);
+    private final byte[] readBytes = new byte[IO_CHUNK_SIZE];
+
+    // 每个解码线程一个解码块 (线程创建后分配一次)
+    private final ThreadLocal<byte[]> decodeChunk = ThreadLocal.withInitial(() -> new byte[IO_CHUNK_SIZE]);
+
+    private volatile boolean running = true;
+
+    /**
+     * 创建传输并启动 Selector 线程和解码线程池。
+     * @param decodeThreads 解码线程数 (通常 1 到 CPU 核数)。
+     */
+    public MultiplexedTransport(int decodeThreads) throws IOException {
+        this(decodeThreads, new NamedThreadFactory(TAG, TransportExecutors.IO_PRIORITY, true));
+    }
+
+    /**
+     * 使用指定的 ThreadFactory 创建 Selector 线程和解码线程。
+     */
+    public MultiplexedTransport(int decodeThreads, ThreadFactory threadFactory) throws IOException {
+        if (decodeThreads < 1) {
+            throw new IllegalArgumentException("decodeThreads must be >= 1: " + decodeThreads);
+        }
+        this.decodeThreads = decodeThreads;
+        this.selector = Selector.open();
+        this.decodePool = Executors.newFixedThreadPool(decodeThreads, threadFactory);
+        this.selectorThread = threadFactory.newThread(this::selectLoop);
+        this.selectorThread.start();
+    }
+
+    /**
+     * 创建一个新的连接 (尚未连接，调用 connect("host:port") 开始连接)。
+     */
+    public Link openLink() {
+        Link link = new Link();
+        links.add(link);
+        return link;
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 连接 ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * 多路复用传输上的一个连接。
+     */
+    public class Link extends Transceiver {
+
+        private final ByteRingBuffer rxBuffer = new ByteRingBuffer(RX_BUFFER_SIZE);
+        private final ByteRingBuffer txBuffer = new ByteRingBuffer(TX_BUFFER_SIZE);
+        private final ByteBuffer writeStage = ByteBuffer.allocate(WRITE_STAGE_SIZE);
+        private final byte[] txFrame = new byte[FrameProcessor.maxFrameSize(SampleDecoder.MAX_PARAM_SIZE)];
+
+        private final AtomicBoolean decodeScheduled = new AtomicBoolean(false);
+        private final AtomicBoolean writePending = new AtomicBoolean(false);
+        private volatile boolean readPaused = false;
+
+        // 预先创建的任务，避免每次调度分配
+        private final Runnable decodeTask = this::decode;
+        private final Runnable enableWrite = () -> updateInterest(SelectionKey.OP_WRITE, true);
+        private final Runnable resumeRead = () -> updateInterest(SelectionKey.OP_READ, true);
+
+        private SocketChannel channel;
+        private SelectionKey key;
+        private long channelEpoch; // channel 所属连接的 epoch (只在 Selector 线程上访问)
+
+        private Link() {
+            writeStage.flip(); // 初始为空
+        }
+
+        @Override
+        public synchronized void connect(String id) {
+            final long epoch = beginConnect();
+            if (epoch < 0) {
+                Log.w(TAG, "Already connected or connecting.");
+                return;
+            }
+            int colon = id.lastIndexOf(':');
+            final InetSocketAddress address;
+            try {
+                address = new InetSocketAddress(id.substring(0, colon), Integer.parseInt(id.substring(colon + 1)));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Invalid address (expected host:port): " + id);
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+                return;
+            }
+            post(() -> open(address, epoch));
+        }
+
+        @Override
+        public void disconnect() {
+            final long epoch = getEpoch();
+            post(() -> close(epoch));
+        }
+
+        @Override
+        public void send(byte[] data) {
+            if (frameProcessor == null) {
+                Log.e(TAG, "FrameProcessor is not attached. Cannot send data.");
+                return;
+            }
+            if (data.length > SampleDecoder.MAX_PARAM_SIZE - 1) {
+                Log.e(TAG, "Payload too large: " + data.length);
+                return;
+            }
+            synchronized (txFrame) {
+                int length = frameProcessor.toFrame(data, 0, data.length, txFrame, 0);
+                sendEncoded(txFrame, 0, length);
+            }
+        }
+
+        @Override
+        public boolean sendEncoded(byte[] frame, int offset, int length) {
+            if (getStatus() != STATE_CONNECTED) {
+                Log.e(TAG, "Not connected. Cannot send data.");
+                return false;
+            }
+            synchronized (txBuffer) {
+                if (txBuffer.availableSpace() < length) {
+                    Log.e(TAG, "Tx Buffer overflow. Dropping frame of " + length + " bytes.");
+                    return false;
+                }
+                txBuffer.put(frame, offset, length);
+                onBytesSent(frame, offset, length);
+            }
+            if (writePending.compareAndSet(false, true)) {
+                post(enableWrite);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean sendEncodedBlocking(byte[] frame, int offset, int length) {
+            if (length > txBuffer.capacity()) {
+                return false;
+            }
+            synchronized (txBuffer) {
+                // Selector 线程取出数据后通知；定时等待以便看到断开
+                while (txBuffer.availableSpace() < length) {
+                    if (getStatus() != STATE_CONNECTED) return false;
+                    try {
+                        txBuffer.wait(TX_WAIT_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                if (getStatus() != STATE_CONNECTED) return false;
+                txBuffer.put(frame, offset, length);
+                onBytesSent(frame, offset, length);
+            }
+            if (writePending.compareAndSet(false, true)) {
+                post(enableWrite);
+            }
+            return true;
+        }
+
+        // --- 以下方法只在 Selector 线程上调用 ---
+
+        private void open(InetSocketAddress address, long epoch) {
+            if (epoch != getEpoch() || getStatus() != STATE_CONNECTING) {
+                return; // 在 open() 执行之前已被 disconnect() 取消
+            }
+            channelEpoch = epoch;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                boolean connected = channel.connect(address);
+                key = channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+                if (connected) {
+                    updateConnectionStatus(epoch, STATE_CONNECTED);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Connection failed: " + e.getMessage());
+                close(epoch);
+            }
+        }
+
+        private void onConnectable() {
+            try {
+                if (channel.finishConnect()) {
+                    key.interestOps(SelectionKey.OP_READ | (writePending.get() ? SelectionKey.OP_WRITE : 0));
+                    updateConnectionStatus(channelEpoch, STATE_CONNECTED);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Connection failed: " + e.getMessage());
+                close(channelEpoch);
+            }
+        }
+
+        private void onReadable() {
+            int space = rxBuffer.availableSpace();
+            if (space == 0) {
+                // 解码跟不上：暂停读取，由解码任务在腾出空间后恢复
+                readPaused = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                if (rxBuffer.availableSpace() > 0) {
+                    // 解码任务在设置 readPaused 之前已经清空了缓冲区
+                    updateInterest(SelectionKey.OP_READ, true);
+                }
+                return;
+            }
+            try {
+                readScratch.clear();
+                readScratch.limit(Math.min(space, readScratch.capacity()));
+                int count = channel.read(readScratch);
+                if (count < 0) {
+                    throw new IOException("End of stream.");
+                }
+                readScratch.flip();
+                readScratch.get(readBytes, 0, count);
+                rxBuffer.put(readBytes, 0, count);
+            } catch (IOException e) {
+                Log.e(TAG, "Link read error: " + e.getMessage());
+                close(channelEpoch);
+                return;
+            }
+            if (decodeScheduled.compareAndSet(false, true)) {
+                decodePool.execute(decodeTask);
+            }
+        }
+
+        private void onWritable() {
+            try {
+                while (true) {
+                    if (!writeStage.hasRemaining()) {
+                        writeStage.clear();
+                        int n;
+                        synchronized (txBuffer) {
+                            n = txBuffer.get(writeStage.array(), 0, writeStage.capacity());
+                            if (n > 0) txBuffer.notifyAll(); // 唤醒 sendEncodedBlocking()
+                        }
+                        writeStage.limit(n);
+                        if (n == 0) break;
+                    }
+                    channel.write(writeStage);
+                    if (writeStage.hasRemaining()) return; // 套接字发送缓冲区已满，等下一次 OP_WRITE
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Link write error: " + e.getMessage());
+                close(channelEpoch);
+                return;
+            }
+            // 全部写出：取消 OP_WRITE，除非 send() 在此期间又放入了数据
+            writePending.set(false);
+            if (txBuffer.bytesToRead() > 0 && writePending.compareAndSet(false, true)) {
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+
+        private void updateInterest(int op, boolean enable) {
+            if (key == null || !key.isValid()) return;
+            if (op == SelectionKey.OP_READ) readPaused = false;
+            if ((key.interestOps() & SelectionKey.OP_CONNECT) != 0) return; // 连接完成后再设置
+            key.interestOps(enable ? key.interestOps() | op : key.interestOps() & ~op);
+        }
+
+        /**
+         * 关闭 epoch 对应的连接并报告断开。旧 epoch 不会影响当前的通道。
+         */
+        private void close(long epoch) {
+            if (epoch != channelEpoch) {
+                // 通道不属于该连接 (open() 尚未执行，或 epoch 已过期)：只尝试更新状态
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+                return;
+            }
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to close channel", e);
+                }
+                channel = null;
+            }
+            txBuffer.clear();
+            writeStage.clear().flip();
+            writePending.set(false);
+            updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+        }
+
+        // --- 解码任务 (在解码线程上，同一连接同一时刻最多一个) ---
+
+        private void decode() {
+            byte[] chunk = decodeChunk.get();
+            while (true) {
+                int n;
+                while ((n = rxBuffer.get(chunk, 0, chunk.length)) > 0) {
+                    onBytesReceived(chunk, 0, n);
+                    if (readPaused) {
+                        post(resumeRead);
+                    }
+                }
+                decodeScheduled.set(false);
+                // 在清除标志之后又有数据到达：重新获得解码权继续
+                if (rxBuffer.bytesToRead() == 0 || !decodeScheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 从传输中移除此连接 (断开并释放)。
+         */
+        public void release() {
+            disconnect();
+            links.remove(this);
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // --- Selector 线程 ---
+    // ----------------------------------------------------------------------
+
+    private void post(Runnable task) {
+        pending.add(task);
+        selector.wakeup();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                Log.e(TAG, "Selector failed.", e);
+                break;
+            }
+
+            Runnable task;
+            while ((task = pending.poll()) != null) {
+                task.run();
+            }
+
+            Set<SelectionKey> selected = selector.selectedKeys();
+            Iterator<SelectionKey> it = selected.iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                Link link = (Link) key.attachment();
+                try {
+                    if (!key.isValid()) continue;
+                    if (key.isConnectable()) link.onConnectable();
+                    if (key.isValid() && key.isReadable()) link.onReadable();
+                    if (key.isValid() && key.isWritable()) link.onWritable();
+                } catch (CancelledKeyException e) {
+                    // 连接在处理过程中被关闭
+                }
+            }
+        }
+
+        // 退出：关闭所有连接
+        for (Link link : links) {
+            link.close(link.getEpoch());
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close selector", e);
+        }
+    }
+
+    /**
+     * 关闭所有连接并停止所有线程 (等待它们结束)。
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TransportExecutors.JOIN_TIMEOUT_MS);
+            decodePool.shutdownNow();
+            decodePool.awaitTermination(TransportExecutors.JOIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        links.clear();
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 资源统计 ---
+    // ----------------------------------------------------------------------
+
+    public int getLinkCount() {
+        return links.size();
+    }
+
+    /**
+     * 返回本传输使用的线程总数 (与连接数无关)。
+     */
+    public int getThreadCount() {
+        return 1 + decodeThreads;
+    }
+
+    /**
+     * 返回平均每个连接占用的线程数。
+     */
+    public double getThreadsPerLink() {
+        int n = links.size();
+        return n > 0 ? (double) getThreadCount() / n : getThreadCount();
+    }
+
+    /**
+     * 返回每个连接的缓冲区内存 (字节)：接收/发送环形缓冲区、写出暂存区和编码缓冲区。
+     * 不包括 FrameProcessor 解码时为每帧分配的临时数组和内核套接字缓冲区。
+     */
+    public long getMemoryPerLink() {
+        return RX_BUFFER_SIZE + TX_BUFFER_SIZE + WRITE_STAGE_SIZE
+                + FrameProcessor.maxFrameSize(SampleDecoder.MAX_PARAM_SIZE);
+    }
+
+    /**
+     * 返回共享缓冲区的内存 (Selector 读取缓冲区和每个解码线程的解码块)。
+     */
+    public long getSharedMemory() {
+        return 2L * IO_CHUNK_SIZE + (long) decodeThreads * IO_CHUNK_SIZE;
+    }
+
+    /**
+     * 在日志中报告当前的资源占用。
+     */
+    public void logResources() {
+        Log.i(TAG, links.size() + " links, " + getThreadCount() + " threads ("
+                + getThreadsPerLink() + " per link), " + getMemoryPerLink() + " bytes per link + "
+                + getSharedMemory() + " shared");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.circularslider;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NamedThreadFactory 类：创建带名称前缀和优先级的线程 (例如 "transport-io-3")，
+ * 便于在 systrace / 线程转储中识别传输层的线程。
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final int priority;
+    private final boolean daemon;
+    private final AtomicInteger number = new AtomicInteger();
+
+    /**
+     * 构造函数。
+     * @param prefix 线程名前缀。
+     * @param priority Thread.MIN_PRIORITY 到 Thread.MAX_PRIORITY。
+     * @param daemon 是否为守护线程 (不阻止 JVM 退出)。
+     */
+    public NamedThreadFactory(String prefix, int priority, boolean daemon) {
+        if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+            throw new IllegalArgumentException("Invalid priority: " + priority);
+        }
+        this.prefix = prefix;
+        this.priority = priority;
+        this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, prefix + "-" + number.incrementAndGet());
+        t.setPriority(priority);
+        t.setDaemon(daemon);
+        return t;
+    }
+
+    /**
+     * 返回已创建的线程数。
+     */
+    public int getCreatedCount() {
+        return number.get();
+    }
+}
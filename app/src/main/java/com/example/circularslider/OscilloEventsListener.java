@@ -17,4 +17,13 @@ public abstract class OscilloEventsListener {
      * @param data 从 FrameProcessor 接收的已处理数据 (例如，采集缓冲区)。
      */
     public abstract void onDataReceived(FrameProcessor.Data data);
+
+    /**
+     * 当一帧 dataTransfert (0x8F) 被解码为采样时调用 (在接收线程上)。
+     * 默认不做任何事，需要波形数据的监听器可覆盖此方法。
+     * @param samples 校准后的采样，数组由 SampleDecoder 复用，回调返回后内容会被覆盖。
+     * @param count 有效采样数。
+     */
+    public void onSamplesReceived(float[] samples, int count) {
+    }
 }
\ No newline at end of file
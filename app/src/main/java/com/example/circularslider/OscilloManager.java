@@ -4,10 +4,14 @@ import android.util.Log;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.MutableLiveData;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * OscilloManager 类：实现业务逻辑 (Model)，并继承 ViewModel 保持连接状态 (Q.3.6-1)。
@@ -17,19 +21,84 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
 
     private static final String TAG = "OscilloManager";
 
+    // 采样历史默认配置：2M 个采样 (约 14 MB，包括 min/max 金字塔)
+    private static final int DEFAULT_HISTORY_CAPACITY = 1 << 21;
+    private static final int DEFAULT_HISTORY_FACTOR = 4;
+
+    // 测量窗口默认长度 (采样数)
+    private static final int DEFAULT_MEASUREMENT_WINDOW = 4096;
+    private static final int DEFAULT_FRAME_RING_CAPACITY = 64;
+
     // Q.3.6-2: 用于通知 UI 层的监听器列表 (现在是抽象类类型)
     private final List<OscilloEventsListener> listeners = new ArrayList<>();
 
     // Q.3.6-1: 持有 Transceiver 实例 (这里是 BluetoothManager)
     private final Transceiver transceiver;
 
+    // 掉线后自动重连到最近一次的地址
+    private final ReconnectController reconnectController;
+
+    // 心跳和死链检测 (半开链路时主动断开，交给 reconnectController 恢复)
+    private final LinkMonitor linkMonitor;
+
+    // 帧完整性模式 (求和 / CRC) 协商
+    private final IntegrityNegotiator integrityNegotiator;
+
+    // dataTransfert (0x8F) 采样解码器 (只在接收线程上使用)
+    private final SampleDecoder sampleDecoder = new SampleDecoder();
+
+    // 0x8F 采样历史 (接收线程写入，UI 线程查询)
+    private final SampleHistory history =
+            new SampleHistory(DEFAULT_HISTORY_CAPACITY, DEFAULT_HISTORY_FACTOR);
+
+    // 触发检测 (在接收线程上运行)
+    private final TriggerEngine triggerEngine = new TriggerEngine();
+
+    // 频谱分析 (自带工作线程，接收线程只负责 push)
+    private final SpectrumAnalyzer spectrumAnalyzer = new SpectrumAnalyzer();
+
+    // 滑动窗口测量 (接收线程写入，UI 无锁读取)
+    private final MeasurementEngine measurementEngine = new MeasurementEngine(DEFAULT_MEASUREMENT_WINDOW);
+
+    // 原始链路记录 (null 表示未记录)
+    private LinkCapture linkCapture;
+
+    // 解码帧广播环：其他消费者 (记录、日志等) 在自己的线程上按自己的节奏读取
+    private final FrameRing frameRing = new FrameRing(DEFAULT_FRAME_RING_CAPACITY);
+
+    // 同一个环上的响应式流 (Flow.Publisher)，订阅者的需求决定读取节奏
+    private final ExecutorService publisherExecutor =
+            Executors.newCachedThreadPool(new NamedThreadFactory("FramePublisher", Thread.NORM_PRIORITY, true));
+    private final FramePublisher framePublisher =
+            new FramePublisher(frameRing, publisherExecutor, FrameRing.POLICY_LAP);
+
+    // 解码帧记录 (null 表示未记录；只在接收线程上写入)
+    private volatile FrameCaptureWriter frameRecorder;
+
+    // 命令的类型化编码 (预分配的实例和缓冲区，发送命令没有分配)
+    private final CommandEncoder commandEncoder = new CommandEncoder();
+    private final CalibrationDutyCycleCommand dutyCycleCommand = new CalibrationDutyCycleCommand();
+
+    // 最近一次发送的校准占空比 (0.0 到 1.0)，用于与测量得到的占空比对照
+    private volatile float commandedDutyCycle = -1f;
+
     /**
      * 构造函数：初始化通信管理器。
      * OscilloManager 在这里创建并配置 BluetoothManager。
      */
     public OscilloManager() {
         // 使用具体的实现类：BluetoothManager
-        this.transceiver = new BluetoothManager();
+        this(new BluetoothManager());
+    }
+
+    /**
+     * 使用指定的 Transceiver (例如连接 DeviceSimulator 的 LoopbackTransceiver，或 ReplayTransceiver)。
+     */
+    public OscilloManager(Transceiver transceiver) {
+        this.transceiver = transceiver;
+        this.reconnectController = new ReconnectController(transceiver);
+        this.linkMonitor = new LinkMonitor(transceiver);
+        this.integrityNegotiator = new IntegrityNegotiator(transceiver, linkMonitor);
 
         // 注册自身作为 Transceiver 的监听器
         this.transceiver.setTransceiverListener(this);
@@ -46,6 +115,177 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
         return transceiver;
     }
 
+    /**
+     * 返回自动重连控制器 (缓存的地址、退避参数和重连耗时统计)。
+     */
+    public ReconnectController getReconnectController() {
+        return reconnectController;
+    }
+
+    /**
+     * 返回链路监视器 (心跳/超时配置和死链检测延迟统计)。默认关闭，设备支持 keepalive 时用 setTimeouts() 启用。
+     */
+    public LinkMonitor getLinkMonitor() {
+        return linkMonitor;
+    }
+
+    /**
+     * 返回完整性模式协商器 (连接后调用 request() 切换到 CRC 校验)。
+     */
+    public IntegrityNegotiator getIntegrityNegotiator() {
+        return integrityNegotiator;
+    }
+
+    /**
+     * 返回解码帧广播环。用 newConsumer() 注册消费者，不再使用时 close()。
+     */
+    public FrameRing getFrameRing() {
+        return frameRing;
+    }
+
+    /**
+     * 返回接收帧的 Flow.Publisher (Kotlin 使用 asFlow())。
+     */
+    public FramePublisher getFramePublisher() {
+        return framePublisher;
+    }
+
+    /**
+     * 返回 0x8F 采样解码器，用于配置采样格式和校准参数。
+     */
+    public SampleDecoder getSampleDecoder() {
+        return sampleDecoder;
+    }
+
+    /**
+     * 返回采样历史，用于按任意缩放级别绘制波形。
+     */
+    public SampleHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * 返回触发引擎，用于配置触发条件和注册捕获监听器。
+     */
+    public TriggerEngine getTriggerEngine() {
+        return triggerEngine;
+    }
+
+    /**
+     * 返回频谱分析器。调用 start() 后才会开始计算。
+     */
+    public SpectrumAnalyzer getSpectrumAnalyzer() {
+        return spectrumAnalyzer;
+    }
+
+    /**
+     * 返回测量引擎。UI 线程可通过 read() 无锁读取最新结果。
+     */
+    public MeasurementEngine getMeasurementEngine() {
+        return measurementEngine;
+    }
+
+    /**
+     * 设置采样率 (Hz)，用于频率测量和频谱的频点换算。
+     */
+    public void setSampleRate(float sampleRate) {
+        measurementEngine.setSampleRate(sampleRate);
+        spectrumAnalyzer.setSampleRate(sampleRate);
+    }
+
+    /**
+     * 返回最近一次通过 setCalibrationDutyCyle() 发送的占空比，尚未发送时返回 -1。
+     */
+    public float getCommandedDutyCycle() {
+        return commandedDutyCycle;
+    }
+
+    /**
+     * 开始把链路上的原始收发数据记录到指定目录。
+     * @param directory 存放段文件的目录 (例如 Context.getFilesDir() 下的子目录)。
+     * @throws IOException 无法创建或映射记录文件。
+     */
+    public synchronized void startCapture(File directory) throws IOException {
+        stopCapture();
+        LinkCapture capture = new LinkCapture(directory);
+        capture.start();
+        linkCapture = capture;
+        transceiver.setLinkCapture(capture);
+    }
+
+    /**
+     * 停止链路记录。
+     */
+    public synchronized void stopCapture() {
+        if (linkCapture != null) {
+            transceiver.setLinkCapture(null);
+            linkCapture.stop();
+            linkCapture = null;
+        }
+    }
+
+    /**
+     * 开始把解码后的帧记录到带索引的 .fcap 文件 (可按时间或帧序号随机定位)。
+     * @param file 目标文件 (会被覆盖)。
+     * @throws IOException 无法创建文件。
+     */
+    public synchronized void startFrameRecording(File file) throws IOException {
+        stopFrameRecording();
+        frameRecorder = new FrameCaptureWriter(file);
+    }
+
+    /**
+     * 停止帧记录并写入索引。
+     */
+    public synchronized void stopFrameRecording() {
+        FrameCaptureWriter recorder = frameRecorder;
+        frameRecorder = null;
+        if (recorder != null) {
+            // 接收线程可能正在写入最后一帧：与 append() 互斥
+            synchronized (recorder) {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to close frame recording", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入失败后停止帧记录 (接收线程)。只有 frameRecorder 仍是这个实例时才清除并关闭它：
+     * 期间 startFrameRecording() 安装的新记录器不受影响，stopFrameRecording() 已经关闭的不会重复关闭。
+     */
+    private void stopFailedFrameRecording(FrameCaptureWriter recorder) {
+        synchronized (this) {
+            if (frameRecorder != recorder) {
+                return;
+            }
+            frameRecorder = null;
+        }
+        // 与 stopFrameRecording() 相同的加锁顺序：先 this，再 recorder (这里已释放 this)
+        synchronized (recorder) {
+            try {
+                // 尽量写入索引和文件头，读取端可以定位已记录的帧
+                recorder.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close frame recording", e);
+            }
+        }
+    }
+
+    /**
+     * 重新配置采样历史的容量和抽取倍数。已有的历史数据会被丢弃。
+     * 在原实例上重新配置，getHistory() 返回的引用 (例如 OscilloscopeView 的数据源) 仍然有效。
+     * @param capacity 保留的最大采样数 (决定内存上限)。
+     * @param factor 金字塔相邻两级之间的抽取倍数。
+     */
+    public void configureHistory(int capacity, int factor) {
+        history.reconfigure(capacity, factor);
+        Log.i(TAG, "History reconfigured: " + history.getCapacity() + " samples, "
+                + history.getMemoryBytes() + " bytes");
+    }
+
     /**
      * Q.3.6-4: 设置校准信号的占空比 (Calibration Duty Cycle)。
      * ID: 0x0A (Table 1)
@@ -58,22 +298,20 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
             return;
         }
 
-        // 将 float (0.0-1.0) 转换为 int (0-100)
-        int dutyCycleInt = (int) (alpha * 100);
-        if (dutyCycleInt < 0) dutyCycleInt = 0;
-        if (dutyCycleInt > 100) dutyCycleInt = 100;
-
-        // 1. 构建 Payload (命令ID 0x0A + 参数 dutycycle)
-        byte commandId = (byte) 0x0A;
-        byte dutyCycleByte = (byte) dutyCycleInt;
-
-        byte[] payload = new byte[2]; // 1 byte ID + 1 byte Param
-        payload[0] = commandId;
-        payload[1] = dutyCycleByte;
-
-        // 2. 通过 Transceiver 发送 Payload
-        transceiver.send(payload);
-        Log.i(TAG, "Sending setCalibrationDutyCyle: " + dutyCycleInt + "%");
+        // float (0.0-1.0) 转换为 0-100，编码并发送 (命令ID 0x0A + 参数 dutycycle)
+        int percent;
+        boolean sent;
+        synchronized (dutyCycleCommand) {
+            percent = dutyCycleCommand.setDutyCycle(alpha).getPercent();
+            sent = commandEncoder.send(transceiver, dutyCycleCommand);
+        }
+        if (!sent) {
+            // 连接刚断开或发送缓冲区已满：帧被丢弃，保持原来的占空比
+            Log.w(TAG, "setCalibrationDutyCyle dropped: " + percent + "%");
+            return;
+        }
+        commandedDutyCycle = percent / 100f;
+        Log.i(TAG, "Sending setCalibrationDutyCyle: " + percent + "%");
     }
 
     /**
@@ -99,14 +337,14 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
      * @param deviceAddress 目标设备的蓝牙地址。
      */
     public void connect(String deviceAddress) {
-        transceiver.connect(deviceAddress);
+        reconnectController.connect(deviceAddress);
     }
 
     /**
-     * Q.3.8-2: 断开连接 (由 onDestroy 调用)。
+     * Q.3.8-2: 断开连接 (由 onDestroy 调用)。用户主动断开后不会自动重连。
      */
     public void disconnect() {
-        transceiver.disconnect();
+        reconnectController.disconnect();
     }
 
     // --------------------------------------------------------
@@ -125,10 +363,52 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
         Log.d(TAG, "Data Received. ID: 0x" + String.format("%02X", data.getId()) +
                 ", Valid: " + data.getFrameValidity());
 
+        // 完整性模式协商的确认帧 (必须在读取线程上立即处理)
+        if (integrityNegotiator.onFrame(data)) {
+            return;
+        }
+
+        // 发布到广播环并唤醒有需求的订阅 (没有消费者时跳过复制)
+        if (frameRing.hasConsumers()) {
+            framePublisher.publish(data, System.nanoTime());
+        }
+
+        // 记录解码帧
+        FrameCaptureWriter recorder = frameRecorder;
+        if (recorder != null) {
+            boolean failed = false;
+            synchronized (recorder) {
+                try {
+                    recorder.append(data, System.nanoTime());
+                } catch (IOException e) {
+                    Log.e(TAG, "Frame recording failed, stopping.", e);
+                    failed = true;
+                }
+            }
+            if (failed) {
+                stopFailedFrameRecording(recorder);
+            }
+        }
+
         // 通知所有 UI 监听器 (Q.3.6-2)
         for (OscilloEventsListener listener : listeners) {
             listener.onDataReceived(data);
         }
+
+        // dataTransfert (0x8F)：解码为采样块并分发
+        if (data.getId() == SampleDecoder.CMD_DATA_TRANSFERT) {
+            int count = sampleDecoder.decode(data);
+            if (count > 0) {
+                float[] samples = sampleDecoder.getSamples();
+                history.append(samples, 0, count);
+                triggerEngine.process(samples, 0, count);
+                spectrumAnalyzer.push(samples, 0, count);
+                measurementEngine.process(samples, 0, count);
+                for (OscilloEventsListener listener : listeners) {
+                    listener.onSamplesReceived(samples, count);
+                }
+            }
+        }
     }
 
     /**
@@ -138,6 +418,10 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
     public void onTransceiverConnectionStatusChanged(final int status) {
         Log.i(TAG, "Connection Status Changed to: " + status);
 
+        // 连接建立时开始心跳监视；掉线时安排自动重连
+        linkMonitor.onConnectionStatusChanged(status);
+        reconnectController.onConnectionStatusChanged(status);
+
         // Q.3.6-3: 必须将 UI 更新推送到 UI 线程。
         for (OscilloEventsListener listener : listeners) {
             // 假设 listener (MainActivity) 会处理线程切换
@@ -152,8 +436,13 @@ public class OscilloManager extends ViewModel implements TransceiverListener {
     @Override
     protected void onCleared() {
         super.onCleared();
-        // 当 ViewModel 被销毁时，确保断开连接以释放资源
-        transceiver.disconnect();
+        // 当 ViewModel 被销毁时，确保断开连接以释放资源 (并取消等待中的重连)
+        reconnectController.disconnect();
+        spectrumAnalyzer.stop();
+        stopCapture();
+        stopFrameRecording();
+        framePublisher.complete();
+        publisherExecutor.shutdown();
         listeners.clear();
         Log.d(TAG, "OscilloManager onCleared. Disconnected.");
     }
@@ -0,0 +1,233 @@
+package com.example.circularslider;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Vue d’oscilloscope : affiche les derniers échantillons d’un SampleHistory.
+ *
+ * Aucune allocation dans onDraw() : les pinceaux, le chemin de la grille et les
+ * tableaux de travail (enveloppe min/max et segments pour Canvas.drawLines) sont
+ * alloués une fois, puis réutilisés. La vue n’est redessinée que lorsque
+ * notifyDataChanged() signale de nouvelles données, au plus une fois par VSYNC.
+ */
+public class OscilloscopeView extends View {
+
+    private static final int GRID_DIVISIONS_X = 10;
+    private static final int GRID_DIVISIONS_Y = 8;
+
+    // ---- Paramètres configurables ----
+    private int traceColor = Color.parseColor("#C2185B");
+    private int gridColor = Color.parseColor("#E0E0E0");
+    private float traceWidth = 2f;
+    private long spanSamples = 4096;     // Nombre d’échantillons visibles
+    private float minValue = -1f;        // Valeur en bas de l’écran
+    private float maxValue = 1f;         // Valeur en haut de l’écran
+
+    // ---- Pinceaux et chemin ----
+    private Paint tracePaint;
+    private Paint gridPaint;
+    private Path gridPath;
+
+    // ---- Tableaux de travail (dimensionnés dans onSizeChanged) ----
+    private float[] columnMin = new float[0];
+    private float[] columnMax = new float[0];
+    private float[] lineBuffer = new float[0]; // 2 segments (8 floats) par colonne
+
+    // ---- Source et synchronisation ----
+    private volatile SampleHistory source;
+    private final AtomicBoolean invalidatePending = new AtomicBoolean(false);
+
+    // ---- Mesure du temps de dessin ----
+    private long lastDrawTimeNanos = 0;
+    private long averageDrawTimeNanos = 0;
+    private OnFrameDrawnListener frameListener;
+
+    // ---- Constructeurs ----
+    public OscilloscopeView(Context context) {
+        super(context);
+        init(context, null);
+    }
+
+    public OscilloscopeView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs);
+    }
+
+    public OscilloscopeView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs);
+    }
+
+    // ---- Initialisation ----
+    private void init(Context context, @Nullable AttributeSet attrs) {
+
+        // ① Lecture des attributs personnalisés
+        if (attrs != null) {
+            TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.OscilloscopeView);
+
+            traceColor = a.getColor(R.styleable.OscilloscopeView_traceColor, traceColor);
+            gridColor = a.getColor(R.styleable.OscilloscopeView_gridColor, gridColor);
+            traceWidth = a.getDimension(R.styleable.OscilloscopeView_traceWidth, traceWidth);
+
+            a.recycle();
+        }
+
+        // ② Initialisation des pinceaux
+        tracePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        tracePaint.setStyle(Paint.Style.STROKE);
+        tracePaint.setStrokeWidth(traceWidth);
+        tracePaint.setColor(traceColor);
+
+        gridPaint = new Paint();
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(1f);
+        gridPaint.setColor(gridColor);
+
+        gridPath = new Path();
+    }
+
+    // ---- Dimensionnement ----
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        // Les tableaux ne sont réalloués que lorsque la taille change
+        int columns = Math.max(w, 1);
+        if (columnMin.length != columns) {
+            columnMin = new float[columns];
+            columnMax = new float[columns];
+            lineBuffer = new float[columns * 8];
+        }
+
+        // La grille est statique : construite une seule fois par taille
+        gridPath.reset();
+        for (int i = 0; i <= GRID_DIVISIONS_X; i++) {
+            float x = (w - 1) * i / (float) GRID_DIVISIONS_X;
+            gridPath.moveTo(x, 0);
+            gridPath.lineTo(x, h);
+        }
+        for (int i = 0; i <= GRID_DIVISIONS_Y; i++) {
+            float y = (h - 1) * i / (float) GRID_DIVISIONS_Y;
+            gridPath.moveTo(0, y);
+            gridPath.lineTo(w, y);
+        }
+    }
+
+    // ---- Dessin ----
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        long t0 = System.nanoTime();
+        invalidatePending.set(false);
+
+        canvas.drawPath(gridPath, gridPaint);
+
+        SampleHistory history = source;
+        if (history != null) {
+            int columns = columnMin.length;
+            long end = history.getTotalSamples();
+            int filled = history.query(end - spanSamples, end, columns, columnMin, columnMax);
+
+            if (filled > 0) {
+                float height = getHeight();
+                float range = maxValue - minValue;
+                float yScale = range != 0 ? height / range : 0;
+                float xStep = (getWidth() - 1) / (float) Math.max(filled - 1, 1);
+
+                int n = 0;
+                float prevX = 0;
+                float prevY = height - (columnMax[0] - minValue) * yScale;
+                for (int c = 0; c < filled; c++) {
+                    float x = c * xStep;
+                    float yLow = height - (columnMin[c] - minValue) * yScale;
+                    float yHigh = height - (columnMax[c] - minValue) * yScale;
+
+                    // Liaison avec la colonne précédente
+                    lineBuffer[n++] = prevX;
+                    lineBuffer[n++] = prevY;
+                    lineBuffer[n++] = x;
+                    lineBuffer[n++] = yLow;
+
+                    // Enveloppe min/max de la colonne
+                    lineBuffer[n++] = x;
+                    lineBuffer[n++] = yLow;
+                    lineBuffer[n++] = x;
+                    lineBuffer[n++] = yHigh;
+
+                    prevX = x;
+                    prevY = yHigh;
+                }
+                canvas.drawLines(lineBuffer, 0, n, tracePaint);
+            }
+        }
+
+        lastDrawTimeNanos = System.nanoTime() - t0;
+        // Moyenne glissante exponentielle (poids 1/16)
+        averageDrawTimeNanos += (lastDrawTimeNanos - averageDrawTimeNanos) >> 4;
+        if (frameListener != null) frameListener.onFrameDrawn(lastDrawTimeNanos);
+    }
+
+    // ---- Mise à jour des données ----
+
+    /**
+     * Signale l’arrivée de nouveaux échantillons. Peut être appelée depuis n’importe quel thread ;
+     * plusieurs appels entre deux VSYNC ne provoquent qu’un seul redessin.
+     */
+    public void notifyDataChanged() {
+        if (invalidatePending.compareAndSet(false, true)) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    public void setSource(@Nullable SampleHistory history) {
+        this.source = history;
+        notifyDataChanged();
+    }
+
+    /**
+     * Définit le nombre d’échantillons visibles (échelle horizontale).
+     */
+    public void setSpanSamples(long samples) {
+        spanSamples = Math.max(1, samples);
+        notifyDataChanged();
+    }
+
+    /**
+     * Définit la plage verticale affichée (échelle et décalage).
+     */
+    public void setVerticalRange(float min, float max) {
+        minValue = min;
+        maxValue = max;
+        notifyDataChanged();
+    }
+
+    // ---- Temps de dessin ----
+
+    public long getLastDrawTimeNanos() {
+        return lastDrawTimeNanos;
+    }
+
+    public long getAverageDrawTimeNanos() {
+        return averageDrawTimeNanos;
+    }
+
+    // ---- Interface d’écoute ----
+    public interface OnFrameDrawnListener {
+        void onFrameDrawn(long drawTimeNanos);
+    }
+
+    public void setOnFrameDrawnListener(OnFrameDrawnListener listener) {
+        this.frameListener = listener;
+    }
+}
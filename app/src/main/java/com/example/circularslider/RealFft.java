@@ -0,0 +1,127 @@
+package com.example.circularslider;
+
+/**
+ * RealFft 类：N 点实数序列的基 2 FFT。
+ *
+ * 实现方式：把 N 个实数采样打包成 N/2 个复数 (偶数位为实部，奇数位为虚部)，
+ * 做一次 N/2 点复数 FFT，再用一次后处理分离出实数序列的前 N/2 + 1 个频点。
+ * 位反转表、复数 FFT 的旋转因子以及后处理的旋转因子都在构造时预先计算，
+ * forward() 只使用内部预分配的工作数组，不产生任何分配。
+ *
+ * 本类不是线程安全的：每个线程应使用自己的实例。
+ */
+public class RealFft {
+
+    private final int size;  // N
+    private final int half;  // M = N / 2
+
+    private final int[] bitReverse;   // M 项
+    private final float[] twCos;      // cos(2πk/M), k < M/2
+    private final float[] twSin;      // -sin(2πk/M), k < M/2
+    private final float[] postCos;    // cos(2πk/N), k <= M
+    private final float[] postSin;    // -sin(2πk/N), k <= M
+
+    private final float[] zr;
+    private final float[] zi;
+
+    /**
+     * @param size FFT 点数，必须是 2 的幂且不小于 4。
+     */
+    public RealFft(int size) {
+        if (size < 4 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+
+        // 1. 位反转表
+        bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        // 2. 复数 FFT 旋转因子
+        twCos = new float[half / 2];
+        twSin = new float[half / 2];
+        for (int k = 0; k < half / 2; k++) {
+            double a = 2 * Math.PI * k / half;
+            twCos[k] = (float) Math.cos(a);
+            twSin[k] = (float) -Math.sin(a);
+        }
+
+        // 3. 实数后处理旋转因子
+        postCos = new float[half + 1];
+        postSin = new float[half + 1];
+        for (int k = 0; k <= half; k++) {
+            double a = 2 * Math.PI * k / size;
+            postCos[k] = (float) Math.cos(a);
+            postSin[k] = (float) -Math.sin(a);
+        }
+
+        zr = new float[half];
+        zi = new float[half];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 返回输出频点数 (N/2 + 1)。
+     */
+    public int getBinCount() {
+        return half + 1;
+    }
+
+    /**
+     * 正向变换。
+     * @param input N 个实数采样 (不会被修改)。
+     * @param outRe 实部输出，至少 N/2 + 1 项。
+     * @param outIm 虚部输出，至少 N/2 + 1 项。
+     */
+    public void forward(float[] input, float[] outRe, float[] outIm) {
+        final int m = half;
+
+        // 1. 打包并按位反转顺序放入工作数组
+        for (int i = 0; i < m; i++) {
+            int j = bitReverse[i];
+            zr[j] = input[2 * i];
+            zi[j] = input[2 * i + 1];
+        }
+
+        // 2. M 点复数 FFT (迭代蝶形运算)
+        for (int len = 2; len <= m; len <<= 1) {
+            int h = len >> 1;
+            int step = m / len;
+            for (int i = 0; i < m; i += len) {
+                for (int k = 0, t = 0; k < h; k++, t += step) {
+                    float wr = twCos[t];
+                    float wi = twSin[t];
+                    int a = i + k;
+                    int b = a + h;
+                    float tr = zr[b] * wr - zi[b] * wi;
+                    float ti = zr[b] * wi + zi[b] * wr;
+                    zr[b] = zr[a] - tr;
+                    zi[b] = zi[a] - ti;
+                    zr[a] += tr;
+                    zi[a] += ti;
+                }
+            }
+        }
+
+        // 3. 分离出实数序列的频谱：X[k] = E[k] + W^k * O[k]
+        for (int k = 0; k <= m; k++) {
+            int a = k == m ? 0 : k;
+            int b = k == 0 ? 0 : m - k;
+            float er = (zr[a] + zr[b]) * 0.5f;
+            float ei = (zi[a] - zi[b]) * 0.5f;
+            float or = (zi[a] + zi[b]) * 0.5f;
+            float oi = -(zr[a] - zr[b]) * 0.5f;
+            float wr = postCos[k];
+            float wi = postSin[k];
+            outRe[k] = er + wr * or - wi * oi;
+            outIm[k] = ei + wr * oi + wi * or;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReconnectController 类：链路意外断开后自动重新连接到最近一次的地址。
+ *
+ * - connect()/disconnect() 代替直接调用 Transceiver，记录用户选择的地址 (lastAddress)；
+ * - 第一次进入 CONNECTED 后才会"武装"：之后的 CONNECTED -> NOT_CONNECTED 被视为掉线，
+ *   按带抖动的指数退避 (initialDelay, 2x, ... 直到 maxDelay) 重试，直到重新连接成功、
+ *   达到最大尝试次数或用户调用 disconnect()；
+ * - 从掉线到重新进入 CONNECTED 的时间被记录为重连耗时 (getLastReconnectMillis() 等)。
+ *
+ * 所有者 (例如 OscilloManager) 必须把 Transceiver 的状态变化转发给 onConnectionStatusChanged()。
+ * 延时由 TransportExecutors 的共享定时器完成，连接调用本身在 connectExecutor 上执行。
+ */
+public class ReconnectController {
+
+    private static final String TAG = "ReconnectController";
+
+    public static final long DEFAULT_INITIAL_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 30_000;
+
+    private final Transceiver transceiver;
+    private final Random random = new Random();
+
+    private long initialDelayMs = DEFAULT_INITIAL_DELAY_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private int maxAttempts = 0; // 0 表示不限
+
+    private volatile String lastAddress;
+    private volatile boolean enabled = true;
+
+    // 以下状态由 this 锁保护
+    private boolean armed = false;          // 曾经连接成功，且用户没有主动断开
+    private long droppedAtNanos = 0;        // 掉线时刻，0 表示没有在恢复中
+    private int attempt = 0;                // 本次恢复已进行的尝试次数
+    private ScheduledFuture<?> pending;
+
+    // 统计
+    private volatile long reconnectCount = 0;
+    private volatile long failedAttempts = 0;
+    private volatile long lastReconnectNanos = 0;
+    private volatile long maxReconnectNanos = 0;
+    private volatile long totalReconnectNanos = 0;
+
+    public ReconnectController(Transceiver transceiver) {
+        this.transceiver = transceiver;
+    }
+
+    /**
+     * 设置退避参数。
+     * @param initialDelayMs 第一次重试的基准延时 (实际延时在其一半到全部之间随机)。
+     * @param maxDelayMs 延时上限。
+     * @param maxAttempts 每次掉线的最大尝试次数，0 表示不限。
+     */
+    public synchronized void setBackoff(long initialDelayMs, long maxDelayMs, int maxAttempts) {
+        if (initialDelayMs <= 0 || maxDelayMs < initialDelayMs || maxAttempts < 0) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialDelayMs + "/" + maxDelayMs + "/" + maxAttempts);
+        }
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 启用或禁用自动重连 (默认启用)。禁用时取消等待中的重试。
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cancelPending();
+            droppedAtNanos = 0;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 返回缓存的连接地址 (最近一次 connect() 的参数，或 setLastAddress() 恢复的值)，可能为 null。
+     */
+    public String getLastAddress() {
+        return lastAddress;
+    }
+
+    /**
+     * 恢复缓存的地址 (例如应用启动时从 SharedPreferences 读取)，不发起连接。
+     */
+    public void setLastAddress(String address) {
+        this.lastAddress = address;
+    }
+
+    // --------------------------------------------------------
+    // --- 用户操作 ---
+    // --------------------------------------------------------
+
+    /**
+     * 用户发起的连接：缓存地址，取消等待中的重试并连接。
+     * 在新地址第一次连接成功之前不会自动重试 (连接失败照常报告给用户)。
+     * 已连接或正在连接时，Transceiver 会忽略该请求，缓存的地址也保持不变。
+     */
+    public void connect(String address) {
+        synchronized (this) {
+            if (transceiver.getStatus() == Transceiver.STATE_NOT_CONNECTED) {
+                lastAddress = address;
+                armed = false;
+                cancelPending();
+                droppedAtNanos = 0;
+                attempt = 0;
+            }
+        }
+        transceiver.connect(address);
+    }
+
+    /**
+     * 用户发起的断开：解除武装 (不会自动重连) 并断开。
+     */
+    public void disconnect() {
+        synchronized (this) {
+            armed = false;
+            cancelPending();
+            droppedAtNanos = 0;
+        }
+        transceiver.disconnect();
+    }
+
+    /**
+     * 当前是否正在从掉线中恢复。
+     */
+    public synchronized boolean isReconnecting() {
+        return droppedAtNanos != 0;
+    }
+
+    // --------------------------------------------------------
+    // --- 状态变化 ---
+    // --------------------------------------------------------
+
+    /**
+     * 由所有者在 Transceiver 报告状态变化时调用 (任意线程)。
+     */
+    public synchronized void onConnectionStatusChanged(int status) {
+        if (status == Transceiver.STATE_CONNECTED) {
+            armed = true;
+            cancelPending();
+            if (droppedAtNanos != 0) {
+                long elapsed = System.nanoTime() - droppedAtNanos;
+                droppedAtNanos = 0;
+                lastReconnectNanos = elapsed;
+                totalReconnectNanos += elapsed;
+                maxReconnectNanos = Math.max(maxReconnectNanos, elapsed);
+                reconnectCount++;
+                Log.i(TAG, "Reconnected to " + lastAddress + " after " + attempt + " attempts in "
+                        + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+            }
+            attempt = 0;
+        } else if (status == Transceiver.STATE_NOT_CONNECTED) {
+            if (!armed || !enabled || lastAddress == null) {
+                return;
+            }
+            if (droppedAtNanos == 0) {
+                // CONNECTED -> NOT_CONNECTED：掉线，开始恢复
+                droppedAtNanos = System.nanoTime();
+                attempt = 0;
+                Log.w(TAG, "Link to " + lastAddress + " dropped. Reconnecting.");
+            } else {
+                failedAttempts++;
+            }
+            scheduleAttempt();
+        }
+    }
+
+    /**
+     * 安排下一次尝试。调用者持有 this 锁。
+     */
+    private void scheduleAttempt() {
+        if (maxAttempts > 0 && attempt >= maxAttempts) {
+            Log.e(TAG, "Giving up on " + lastAddress + " after " + attempt + " attempts.");
+            droppedAtNanos = 0;
+            return;
+        }
+        long delay = nextDelayMillis(attempt++);
+        TransportExecutors executors = transceiver.getExecutors();
+        cancelPending();
+        try {
+            pending = executors.getScheduler().schedule(() -> {
+                // 在 connectExecutor 上连接，不占用共享定时器线程
+                try {
+                    executors.getConnectExecutor().execute(this::attemptReconnect);
+                } catch (RejectedExecutionException e) {
+                    Log.e(TAG, "Reconnect rejected: " + e.getMessage());
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            Log.d(TAG, "Reconnect attempt " + attempt + " in " + delay + " ms");
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Reconnect rejected: " + e.getMessage());
+            droppedAtNanos = 0;
+        }
+    }
+
+    private void attemptReconnect() {
+        String address;
+        synchronized (this) {
+            if (droppedAtNanos == 0 || !armed || !enabled) {
+                return; // 已经恢复、被用户断开或禁用
+            }
+            pending = null;
+            address = lastAddress;
+        }
+        transceiver.connect(address);
+    }
+
+    /**
+     * 第 n 次尝试 (从 0 开始) 的延时：指数增长的 d = initialDelay * 2^n (不超过 maxDelay)，
+     * 实际取 [d/2, d) 内的随机值，避免多个设备同时重试。
+     */
+    private long nextDelayMillis(int n) {
+        long d = n >= 30 ? maxDelayMs : Math.min(maxDelayMs, initialDelayMs << n);
+        long half = Math.max(1, d / 2);
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回成功恢复的次数。
+     */
+    public long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * 返回失败的重连尝试次数 (累计)。
+     */
+    public long getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /**
+     * 返回最近一次恢复的耗时 (毫秒，从掉线到重新连接)，尚未恢复过时为 0。
+     */
+    public long getLastReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastReconnectNanos);
+    }
+
+    /**
+     * 返回最长的恢复耗时 (毫秒)。
+     */
+    public long getMaxReconnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxReconnectNanos);
+    }
+
+    /**
+     * 返回平均恢复耗时 (毫秒)。
+     */
+    public double getAverageReconnectMillis() {
+        long count = reconnectCount;
+        return count > 0 ? totalReconnectNanos / 1e6 / count : 0;
+    }
+}
@@ -0,0 +1,584 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReliableLink 类：Transceiver 之上可选的可靠传输层 (选择重传的滑动窗口 ARQ)。
+ *
+ * FrameProcessor 协议只有校验和，校验失败的帧被标记后丢弃。ReliableLink 在两端各放一个实例，
+ * 把消息装进带序号的 DATA 帧，接收端用 ACK 帧确认：
+ * - DATA：[CMD_ARQ_DATA][序号高][序号低][消息...]，序号 16 位循环；
+ * - ACK：[CMD_ARQ_ACK][期望的下一个序号高][低][SACK 位图]，位图第 i 位表示序号 (期望序号 + 1 + i) 已收到。
+ *
+ * 发送端最多有 window 个未确认的帧 (已编码的帧保存在预分配的槽中，重传时不再编码)：
+ * - 累计确认释放窗口，send() 在窗口满时阻塞 (背压)；
+ * - 选择重传：SACK 显示某帧之后的帧已到达，而它发出已超过一个 SRTT，则只重传这个缺口
+ *   (窗口用完、没有新 ACK 时由定时检查在 2 SRTT 后再次重传)；
+ * - 超时重传：最高 SACK 之后的帧按 RTO 重传，RTO 按 Jacobson/Karels (RFC 6298) 由 RTT 样本计算，
+ *   重传帧不产生样本 (Karn 算法)，超时后 RTO 加倍直到收到新的样本。
+ * 接收端缓存窗口内乱序到达的帧，按序交给 MessageListener (在链路的读取线程上、持有接收锁时回调)。
+ * ACK 也由这个读取线程处理，所以监听器不能阻塞：在 onMessage() 中调用 send() 时，如果窗口已满，
+ * 就再也没有线程能处理释放窗口的 ACK (同时定时检查也会在接收锁上等待)。需要回复时把工作交给其他线程。
+ *
+ * ReliableLink 替换链路的 TransceiverListener；非 ARQ 帧和状态变化转发给 setTransceiverListener() 设置的监听器。
+ * 链路断开时两端都复位 (序号从 0 重新开始)，等待中的 send() 返回 false。
+ * 超时检查由 TransportExecutors 的共享定时器每 TICK_MS 毫秒执行一次。
+ * 链路为 ChannelTransceiver 时新数据以阻塞方式进入发送缓冲区，重传和 ACK 从不阻塞 (发送缓冲区满时留到下一次检查)。
+ */
+public class ReliableLink implements TransceiverListener {
+
+    private static final String TAG = "ReliableLink";
+
+    // 命令 ID
+    public static final byte CMD_ARQ_DATA = (byte) 0xA0;
+    public static final byte CMD_ARQ_ACK = (byte) 0xA1;
+
+    public static final int DEFAULT_WINDOW = 128;
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1024;
+    public static final int MAX_WINDOW = 1024;
+
+    // 命令 ID + 16 位序号
+    private static final int HEADER_SIZE = 3;
+    public static final int MAX_MESSAGE_SIZE = SampleDecoder.MAX_PARAM_SIZE - 1 - HEADER_SIZE;
+
+    // 重传超时 (RFC 6298)
+    public static final long INITIAL_RTO_MS = 200;
+    public static final long MIN_RTO_MS = 10;
+    public static final long MAX_RTO_MS = 2000;
+    private static final long TICK_MS = 5;
+
+    private static final int SEQ_MASK = 0xFFFF;
+
+    /**
+     * 可靠消息的接收者。
+     */
+    public interface MessageListener {
+        /**
+         * 按发送顺序收到一条消息 (在链路的读取线程上调用，buffer 在返回后被重用)。
+         * 调用时持有接收锁，实现不能阻塞，也不能调用同一个 ReliableLink 的 send() (窗口满时会死锁)。
+         */
+        void onMessage(byte[] buffer, int offset, int length);
+    }
+
+    private final Transceiver link;
+    private final int window;
+    private final int mask;
+    private final int maxMessageSize;
+
+    private volatile MessageListener messageListener;
+    private volatile TransceiverListener listener;
+
+    // --- 发送端 (由 this 锁保护；send() 之间由 sendLock 串行化) ---
+    private final Object sendLock = new Object();
+    private final FrameProcessor dataEncoder = new FrameProcessor();
+    private final byte[] dataPayload;
+    private final byte[][] txFrame;
+    private final int[] txFrameLength;
+    private final long[] txSentNanos;
+    private final boolean[] txRetransmitted;
+    private final boolean[] txSacked;
+    private int sndUna = 0;   // 最早的未确认序号
+    private int sndNext = 0;  // 下一个新帧的序号
+    private int sndSacked = 0; // 已被 SACK 的最高序号 + 1 (之前未被 SACK 的帧是已知的缺口)
+    private boolean connected = false;
+    private long epoch = -1;
+    private ScheduledFuture<?> tick;
+
+    private long srttNanos = 0;
+    private long rttvarNanos = 0;
+    private long rtoNanos = TimeUnit.MILLISECONDS.toNanos(INITIAL_RTO_MS);
+    private boolean rttValid = false;
+
+    // --- 接收端 (由 rxLock 保护) ---
+    private final Object rxLock = new Object();
+    private final byte[][] rxMessage;
+    private final int[] rxLength;  // -1 表示空槽
+    private final byte[] rxScratch;
+    private int rcvNext = 0;
+    private final FrameProcessor ackEncoder = new FrameProcessor();
+    private final byte[] ackPayload;
+    private final byte[] ackFrame;
+    private boolean ackPending = false;
+
+    // 统计
+    private volatile long messagesSent = 0;
+    private volatile long messagesDelivered = 0;
+    private volatile long bytesDelivered = 0;
+    private volatile long retransmissions = 0;
+    private volatile long selectiveRetransmissions = 0;
+    private volatile long timeouts = 0;
+    private volatile long corruptedFrames = 0;
+    private volatile long duplicateFrames = 0;
+
+    public ReliableLink(Transceiver link) {
+        this(link, DEFAULT_WINDOW, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * 构造函数：接管 link 的监听器。两端必须使用相同的窗口大小。
+     * @param window 未确认帧的最大数量 (2 的幂，2 到 MAX_WINDOW)。
+     * @param maxMessageSize 单条消息的最大字节数 (1 到 MAX_MESSAGE_SIZE)。
+     */
+    public ReliableLink(Transceiver link, int window, int maxMessageSize) {
+        if (window < 2 || window > MAX_WINDOW || Integer.bitCount(window) != 1) {
+            throw new IllegalArgumentException("Window must be a power of two in [2, " + MAX_WINDOW + "]: " + window);
+        }
+        if (maxMessageSize < 1 || maxMessageSize > MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid max message size: " + maxMessageSize);
+        }
+        this.link = link;
+        this.window = window;
+        this.mask = window - 1;
+        this.maxMessageSize = maxMessageSize;
+
+        dataPayload = new byte[HEADER_SIZE + maxMessageSize];
+        int frameSize = FrameProcessor.maxFrameSize(HEADER_SIZE + maxMessageSize);
+        txFrame = new byte[window][frameSize];
+        txFrameLength = new int[window];
+        txSentNanos = new long[window];
+        txRetransmitted = new boolean[window];
+        txSacked = new boolean[window];
+
+        rxMessage = new byte[window][maxMessageSize];
+        rxLength = new int[window];
+        rxScratch = new byte[2 + maxMessageSize];
+        ackPayload = new byte[HEADER_SIZE + window / 8];
+        ackFrame = new byte[FrameProcessor.maxFrameSize(ackPayload.length)];
+        resetReceiver();
+
+        link.setTransceiverListener(this);
+    }
+
+    public void setMessageListener(MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    /**
+     * 设置非 ARQ 帧和连接状态变化的监听器。
+     */
+    public void setTransceiverListener(TransceiverListener listener) {
+        this.listener = listener;
+    }
+
+    public Transceiver getLink() {
+        return link;
+    }
+
+    // --------------------------------------------------------
+    // --- 发送 ---
+    // --------------------------------------------------------
+
+    /**
+     * 可靠地发送一条消息。窗口已满时阻塞，直到收到确认或链路断开。
+     * @return true 如果消息已进入窗口 (之后会被重传直到确认)；false 如果未连接、等待期间断开或被中断。
+     * @throws IllegalArgumentException 消息超过 maxMessageSize。
+     */
+    public boolean send(byte[] message, int offset, int length) {
+        if (length > maxMessageSize) {
+            throw new IllegalArgumentException("Message too large: " + length);
+        }
+        synchronized (sendLock) {
+            int index;
+            synchronized (this) {
+                // 1. 等待窗口空间
+                while (connected && sndNext - sndUna >= window) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                if (!connected) return false;
+
+                // 2. 编码到槽中 (重传时直接使用)
+                int seq = sndNext;
+                index = seq & mask;
+                dataPayload[0] = CMD_ARQ_DATA;
+                dataPayload[1] = (byte) (seq >> 8);
+                dataPayload[2] = (byte) seq;
+                System.arraycopy(message, offset, dataPayload, HEADER_SIZE, length);
+                dataEncoder.setIntegrityMode(link.getIntegrityMode()); // 与链路协商的格式一致
+                txFrameLength[index] = dataEncoder.toFrame(dataPayload, 0, HEADER_SIZE + length, txFrame[index], 0);
+                txSentNanos[index] = System.nanoTime();
+                txRetransmitted[index] = false;
+                txSacked[index] = false;
+                sndNext++;
+                messagesSent++;
+            }
+            // 3. 在锁外阻塞地放入发送缓冲区 (槽在被确认之前不会被改写)
+            if (!transmit(txFrame[index], txFrameLength[index], true)) {
+                // 发送缓冲区拒绝 (例如正在断开)：留给超时重传
+                Log.d(TAG, "Initial transmission deferred.");
+            }
+            return true;
+        }
+    }
+
+    public boolean send(byte[] message) {
+        return send(message, 0, message.length);
+    }
+
+    /**
+     * 等待所有已发送的消息被确认。
+     * @return true 如果全部确认；false 如果超时或链路断开。
+     */
+    public synchronized boolean awaitAcknowledged(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (connected && sndUna != sndNext) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return connected;
+    }
+
+    /**
+     * 把一个已编码的帧交给链路。ChannelTransceiver 支持阻塞和整帧拒绝，其他实现直接 sendEncoded()。
+     */
+    private boolean transmit(byte[] frame, int length, boolean block) {
+        if (link instanceof ChannelTransceiver) {
+            return ((ChannelTransceiver) link).enqueue(frame, 0, length, block);
+        }
+        return link.sendEncoded(frame, 0, length);
+    }
+
+    /**
+     * 重传一个槽 (不阻塞)。调用者持有 this 锁。
+     * @return false 如果发送缓冲区已满。
+     */
+    private boolean retransmit(int seq, long now) {
+        int index = seq & mask;
+        if (!transmit(txFrame[index], txFrameLength[index], false)) {
+            return false;
+        }
+        txSentNanos[index] = now;
+        txRetransmitted[index] = true;
+        retransmissions++;
+        return true;
+    }
+
+    /**
+     * 处理 ACK (读取线程)。
+     */
+    private void onAck(FrameProcessor.Data data) {
+        int n = data.getParam(rxScratch, 0);
+        if (n < 2) return;
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (!connected) return;
+            int cum = unwrap((rxScratch[0] & 0xFF) << 8 | (rxScratch[1] & 0xFF), sndUna);
+            if (cum - sndUna < 0 || cum - sndNext > 0) {
+                return; // 过期或无效的 ACK
+            }
+
+            // 1. 累计确认：释放窗口。只有被确认的帧都没有重传过时才取 RTT 样本 (Karn)，
+            //    否则样本会包含恢复缺口所用的时间
+            if (cum != sndUna) {
+                boolean ambiguous = false;
+                for (int seq = sndUna; seq != cum; seq++) {
+                    ambiguous |= txRetransmitted[seq & mask];
+                }
+                if (!ambiguous) {
+                    updateRto(now - txSentNanos[(cum - 1) & mask]);
+                } else if (rttValid) {
+                    rtoNanos = computeRto(); // 有进展：撤销超时退避
+                }
+                sndUna = cum;
+                notifyAll();
+            }
+
+            // 2. SACK：标记已收到的帧，记录最高的已收到序号
+            for (int i = 0; i < (n - 2) * 8; i++) {
+                if ((rxScratch[2 + (i >> 3)] & (1 << (i & 7))) != 0) {
+                    int seq = cum + 1 + i;
+                    if (seq - sndNext >= 0) break;
+                    txSacked[seq & mask] = true;
+                    if (seq + 1 - sndSacked > 0) sndSacked = seq + 1;
+                }
+            }
+            if (sndSacked - sndUna < 0) sndSacked = sndUna;
+
+            // 3. 选择重传：已知缺口中发出已超过一个 SRTT 的帧
+            repairHoles(now, rttValid ? srttNanos : rtoNanos / 2);
+        }
+    }
+
+    /**
+     * 重传 sndSacked 之前没有被 SACK、且最近一次发出已超过 age 的帧。调用者持有 this 锁。
+     */
+    private void repairHoles(long now, long age) {
+        for (int seq = sndUna; seq - sndSacked < 0; seq++) {
+            int index = seq & mask;
+            if (!txSacked[index] && now - txSentNanos[index] >= age) {
+                if (!retransmit(seq, now)) break;
+                selectiveRetransmissions++;
+            }
+        }
+    }
+
+    /**
+     * RFC 6298：用一个 RTT 样本更新 SRTT/RTTVAR 和 RTO。调用者持有 this 锁。
+     */
+    private void updateRto(long sample) {
+        if (!rttValid) {
+            srttNanos = sample;
+            rttvarNanos = sample / 2;
+            rttValid = true;
+        } else {
+            rttvarNanos = (3 * rttvarNanos + Math.abs(srttNanos - sample)) / 4;
+            srttNanos = (7 * srttNanos + sample) / 8;
+        }
+        rtoNanos = computeRto();
+    }
+
+    private long computeRto() {
+        long rto = srttNanos + Math.max(TimeUnit.MILLISECONDS.toNanos(TICK_MS), 4 * rttvarNanos);
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(MIN_RTO_MS), Math.min(TimeUnit.MILLISECONDS.toNanos(MAX_RTO_MS), rto));
+    }
+
+    /**
+     * 定时检查 (共享定时器线程)：超时重传和补发未能发出的 ACK。
+     */
+    private void onTick() {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (connected) {
+                // 已知缺口的重传也丢失时不等 RTO：窗口用完后没有新的 ACK 触发选择重传
+                if (rttValid) {
+                    repairHoles(now, 2 * srttNanos);
+                }
+                boolean expired = false;
+                for (int seq = sndSacked - sndUna > 0 ? sndSacked : sndUna; seq - sndNext < 0; seq++) {
+                    int index = seq & mask;
+                    if (!txSacked[index] && now - txSentNanos[index] >= rtoNanos) {
+                        if (!retransmit(seq, now)) break;
+                        expired = true;
+                    }
+                }
+                if (expired) {
+                    timeouts++;
+                    rtoNanos = Math.min(2 * rtoNanos, TimeUnit.MILLISECONDS.toNanos(MAX_RTO_MS));
+                }
+            }
+        }
+        synchronized (rxLock) {
+            if (ackPending) {
+                sendAck();
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 接收 ---
+    // --------------------------------------------------------
+
+    /**
+     * 处理 DATA (读取线程)。
+     */
+    private void onData(FrameProcessor.Data data) {
+        int n = data.getParam(rxScratch, 0);
+        if (n < 2) return;
+        int length = n - 2;
+        MessageListener l = messageListener;
+        synchronized (rxLock) {
+            int seq = unwrap((rxScratch[0] & 0xFF) << 8 | (rxScratch[1] & 0xFF), rcvNext);
+            int distance = seq - rcvNext;
+            if (distance < 0 || rxLength[seq & mask] >= 0) {
+                duplicateFrames++;
+            } else if (distance < window) {
+                if (distance == 0) {
+                    // 按序：直接交付，然后交付之后已缓存的帧
+                    deliver(l, rxScratch, 2, length);
+                    rcvNext++;
+                    int index;
+                    while (rxLength[index = rcvNext & mask] >= 0) {
+                        deliver(l, rxMessage[index], 0, rxLength[index]);
+                        rxLength[index] = -1;
+                        rcvNext++;
+                    }
+                } else {
+                    // 乱序：缓存
+                    int index = seq & mask;
+                    System.arraycopy(rxScratch, 2, rxMessage[index], 0, length);
+                    rxLength[index] = length;
+                }
+            }
+            // 窗口之外的帧丢弃，但仍然确认，让发送端知道期望的序号
+            sendAck();
+        }
+    }
+
+    private void deliver(MessageListener l, byte[] buffer, int offset, int length) {
+        messagesDelivered++;
+        bytesDelivered += length;
+        if (l != null) {
+            l.onMessage(buffer, offset, length);
+        }
+    }
+
+    /**
+     * 发送 ACK (不阻塞；发送缓冲区满时留到下一次定时检查)。调用者持有 rxLock。
+     */
+    private void sendAck() {
+        ackPayload[0] = CMD_ARQ_ACK;
+        ackPayload[1] = (byte) (rcvNext >> 8);
+        ackPayload[2] = (byte) rcvNext;
+        for (int b = HEADER_SIZE; b < ackPayload.length; b++) {
+            int bits = 0;
+            for (int i = 0; i < 8; i++) {
+                int seq = rcvNext + 1 + (b - HEADER_SIZE) * 8 + i;
+                if (seq - rcvNext < window && rxLength[seq & mask] >= 0) {
+                    bits |= 1 << i;
+                }
+            }
+            ackPayload[b] = (byte) bits;
+        }
+        ackEncoder.setIntegrityMode(link.getIntegrityMode());
+        int length = ackEncoder.toFrame(ackPayload, 0, ackPayload.length, ackFrame, 0);
+        ackPending = !transmit(ackFrame, length, false);
+    }
+
+    /**
+     * 把 16 位序号还原为离 reference 最近的完整序号。
+     */
+    private static int unwrap(int wire, int reference) {
+        return reference + (short) (wire - (reference & SEQ_MASK));
+    }
+
+    // --------------------------------------------------------
+    // --- TransceiverListener 实现 ---
+    // --------------------------------------------------------
+
+    @Override
+    public void onTransceiverDataReceived(FrameProcessor.Data data) {
+        byte id = data.getId();
+        if (id == CMD_ARQ_DATA || id == CMD_ARQ_ACK) {
+            if (!data.getFrameValidity()) {
+                corruptedFrames++; // 不确认，由发送端重传
+                return;
+            }
+            if (id == CMD_ARQ_DATA) {
+                onData(data);
+            } else {
+                onAck(data);
+            }
+            return;
+        }
+        TransceiverListener l = listener;
+        if (l != null) {
+            l.onTransceiverDataReceived(data);
+        }
+    }
+
+    @Override
+    public void onTransceiverConnectionStatusChanged(int status) {
+        if (status == Transceiver.STATE_CONNECTED) {
+            synchronized (this) {
+                long current = link.getEpoch();
+                if (current != epoch) {
+                    // 新的连接 (包括被合并掉的断开)：两端都从序号 0 开始
+                    reset();
+                    epoch = current;
+                }
+                connected = true;
+                startTick();
+            }
+        } else if (status == Transceiver.STATE_NOT_CONNECTED) {
+            synchronized (this) {
+                connected = false;
+                stopTick();
+                reset();
+                notifyAll(); // 唤醒等待窗口的 send()
+            }
+        }
+        TransceiverListener l = listener;
+        if (l != null) {
+            l.onTransceiverConnectionStatusChanged(status);
+        }
+    }
+
+    /**
+     * 复位两端的状态。调用者持有 this 锁。
+     */
+    private void reset() {
+        sndUna = 0;
+        sndNext = 0;
+        sndSacked = 0;
+        rttValid = false;
+        srttNanos = 0;
+        rttvarNanos = 0;
+        rtoNanos = TimeUnit.MILLISECONDS.toNanos(INITIAL_RTO_MS);
+        synchronized (rxLock) {
+            resetReceiver();
+        }
+    }
+
+    private void resetReceiver() {
+        rcvNext = 0;
+        ackPending = false;
+        for (int i = 0; i < window; i++) {
+            rxLength[i] = -1;
+        }
+    }
+
+    private void startTick() {
+        if (tick != null) return;
+        try {
+            tick = link.getExecutors().getScheduler()
+                    .scheduleAtFixedRate(this::onTick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Retransmission timer rejected: " + e.getMessage());
+        }
+    }
+
+    private void stopTick() {
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    public long getMessagesSent() { return messagesSent; }
+    public long getMessagesDelivered() { return messagesDelivered; }
+    public long getBytesDelivered() { return bytesDelivered; }
+    /** 重传的帧数 (超时和选择重传)。 */
+    public long getRetransmissions() { return retransmissions; }
+    /** 由 SACK 触发的选择重传帧数。 */
+    public long getSelectiveRetransmissions() { return selectiveRetransmissions; }
+    /** 发生超时重传的检查次数。 */
+    public long getTimeouts() { return timeouts; }
+    /** 收到的校验失败的 ARQ 帧数。 */
+    public long getCorruptedFrames() { return corruptedFrames; }
+    /** 收到的重复 DATA 帧数。 */
+    public long getDuplicateFrames() { return duplicateFrames; }
+
+    /**
+     * 返回未确认的帧数。
+     */
+    public synchronized int getInFlight() {
+        return sndNext - sndUna;
+    }
+
+    /**
+     * 返回平滑 RTT (毫秒)，尚无样本时为 0。
+     */
+    public synchronized double getSmoothedRttMillis() {
+        return rttValid ? srttNanos / 1e6 : 0;
+    }
+
+    /**
+     * 返回当前的重传超时 (毫秒)。
+     */
+    public synchronized double getRtoMillis() {
+        return rtoNanos / 1e6;
+    }
+}
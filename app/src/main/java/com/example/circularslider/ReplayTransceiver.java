@@ -0,0 +1,232 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 实现 Transceiver 抽象类的回放版本：读取 LinkCapture 记录，
+ * 把其中的 Rx 字节块按原始时间间隔 (或加速) 推入 FrameProcessor 和 TransceiverListener，
+ * 与 BluetoothManager 的接收路径完全相同 (Transceiver.onBytesReceived)。
+ *
+ * 它不依赖蓝牙硬件，可以在普通 Linux 机器上重现现场数据、做负载测试和解码吞吐量测量。
+ *
+ * connect(id) 中的 id 是记录目录或单个段文件的路径。
+ * send() 的数据只被编码和记录 (Tx)，不会影响回放内容。
+ */
+public class ReplayTransceiver extends Transceiver {
+
+    private static final String TAG = "ReplayTransceiver";
+
+    // --- 回放节奏 ---
+    public static final int PACING_REAL_TIME = 0;         // 按记录的时间间隔
+    public static final int PACING_SCALED = 1;            // 按 speed 倍速
+    public static final int PACING_AS_FAST_AS_POSSIBLE = 2;
+
+    // 回放缓冲区的初始大小 (遇到更大的记录时按需扩大)
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+
+    private volatile int pacing = PACING_REAL_TIME;
+    private volatile double speed = 1.0;
+
+    private ReplayThread replayThread;
+
+    // 最近一次回放的结果
+    private volatile long replayedBytes = 0;
+    private volatile long replayedFrames = 0;
+    private volatile long replayElapsedNanos = 0;
+
+    public ReplayTransceiver() {
+    }
+
+    /**
+     * 设置回放节奏。在 connect() 之前调用。
+     * @param pacing PACING_* 常量。
+     * @param speed PACING_SCALED 时的倍速 (例如 10.0 表示 10 倍速)，其他模式忽略。
+     */
+    public void setPacing(int pacing, double speed) {
+        if (pacing == PACING_SCALED && !(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        this.pacing = pacing;
+        this.speed = pacing == PACING_SCALED ? speed : 1.0;
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 回放线程 ---
+    // ----------------------------------------------------------------------
+
+    private class ReplayThread extends Thread {
+        private final File path;
+        private final long epoch;
+        private byte[] chunk = new byte[CHUNK_BUFFER_SIZE];
+        private volatile boolean running = true;
+
+        ReplayThread(File path, long epoch) {
+            super("ReplayThread");
+            this.path = path;
+            this.epoch = epoch;
+        }
+
+        public void run() {
+            LinkCaptureReader reader;
+            try {
+                reader = new LinkCaptureReader(path);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to open capture: " + e.getMessage());
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+                return;
+            }
+            updateConnectionStatus(epoch, STATE_CONNECTED);
+
+            long bytesAtStart = getRxByteCount();
+            long framesAtStart = getRxFrameCount();
+            long wallStart = System.nanoTime();
+            long firstTimestamp = Long.MIN_VALUE;
+            int mode = pacing;
+            double factor = speed;
+
+            try {
+                while (running && reader.next()) {
+                    if (reader.getDirection() != LinkCapture.DIR_RX) continue;
+
+                    // 1. 节奏控制：等待到该记录对应的时刻
+                    if (mode != PACING_AS_FAST_AS_POSSIBLE) {
+                        if (firstTimestamp == Long.MIN_VALUE) {
+                            firstTimestamp = reader.getTimestampNanos();
+                        }
+                        long due = wallStart + (long) ((reader.getTimestampNanos() - firstTimestamp) / factor);
+                        long wait;
+                        while (running && (wait = due - System.nanoTime()) > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    }
+
+                    // 2. 与 BluetoothManager 相同的接收路径 (整条记录，缓冲区不够时扩大，不截断)
+                    if (reader.getLength() > chunk.length) {
+                        chunk = new byte[Math.max(reader.getLength(), 2 * chunk.length)];
+                    }
+                    int count = reader.read(chunk, 0);
+                    onBytesReceived(chunk, 0, count);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Capture read error.", e);
+            } finally {
+                reader.close();
+            }
+
+            replayElapsedNanos = System.nanoTime() - wallStart;
+            replayedBytes = getRxByteCount() - bytesAtStart;
+            replayedFrames = getRxFrameCount() - framesAtStart;
+            Log.i(TAG, "Replay finished: " + replayedBytes + " bytes, " + replayedFrames + " frames, "
+                    + getReplayThroughput() / 1e6 + " MB/s");
+
+            if (running) {
+                // 回放结束相当于链路断开
+                updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+            }
+        }
+
+        void cancel() {
+            running = false;
+            interrupt();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 抽象方法实现 (Transceiver) ---
+    // ----------------------------------------------------------------------
+
+    @Override
+    public synchronized void connect(String id) {
+        long epoch = beginConnect();
+        if (epoch < 0) {
+            Log.w(TAG, "Already replaying.");
+            return;
+        }
+        stopReplayThread();
+        replayThread = new ReplayThread(new File(id), epoch);
+        replayThread.start();
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        long epoch = getEpoch();
+        stopReplayThread();
+        updateConnectionStatus(epoch, STATE_NOT_CONNECTED);
+    }
+
+    @Override
+    public void send(byte[] data) {
+        if (frameProcessor == null) {
+            Log.e(TAG, "FrameProcessor is not attached. Cannot send data.");
+            return;
+        }
+        byte[] frameToSend = frameProcessor.toFrame(data);
+        sendEncoded(frameToSend, 0, frameToSend.length);
+    }
+
+    @Override
+    public boolean sendEncoded(byte[] frame, int offset, int length) {
+        onBytesSent(frame, offset, length);
+        return true;
+    }
+
+    private void stopReplayThread() {
+        if (replayThread != null) {
+            replayThread.cancel();
+            try {
+                replayThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replayThread = null;
+        }
+    }
+
+    /**
+     * 等待当前回放结束 (用于测试和基准)。
+     */
+    public void awaitCompletion() throws InterruptedException {
+        ReplayThread t;
+        synchronized (this) {
+            t = replayThread;
+        }
+        if (t != null) t.join();
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 统计 ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * 返回最近一次回放推入的字节数。
+     */
+    public long getReplayedBytes() {
+        return replayedBytes;
+    }
+
+    /**
+     * 返回最近一次回放解码出的帧数。
+     */
+    public long getReplayedFrames() {
+        return replayedFrames;
+    }
+
+    /**
+     * 返回最近一次回放的耗时 (纳秒)。
+     */
+    public long getReplayElapsedNanos() {
+        return replayElapsedNanos;
+    }
+
+    /**
+     * 返回最近一次回放的吞吐量 (字节/秒)。
+     */
+    public double getReplayThroughput() {
+        long elapsed = replayElapsedNanos;
+        return elapsed > 0 ? replayedBytes * 1e9 / elapsed : 0;
+    }
+}
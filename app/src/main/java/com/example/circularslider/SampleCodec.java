@@ -0,0 +1,320 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * SampleCodec 类：对采样块做无损压缩，用于存储采集数据。
+ *
+ * 【编码】：
+ * 相邻采样先做差分 (delta)，再做 zig-zag 映射，使小的正负差值都变成小的非负整数：
+ * zz = (d << 1) ^ (d >> 31)。之后按模式写出：
+ * - MODE_VARINT：每个 zz 写成 varint (每字节 7 位，最高位为续位)。
+ *   慢变信号的大多数差值只占 1 字节。
+ * - MODE_BITPACK：每 BLOCK_SIZE 个 zz 为一块，块首 1 字节记录块内最大值所需位数 w，
+ *   随后是 n × w 位紧密排列的数据 (低位在前)。对噪声均匀的信号比 varint 更紧凑，
+ *   解码也没有逐字节的分支。
+ *
+ * 【编码块格式】：
+ * 采样数 (varint) | 模式 (byte) | 数据
+ * 每次 encode() 的输出是自包含的 (预测值从 0 开始)，可以独立解码。
+ *
+ * 【性能说明】：
+ * 编码和解码都直接读写调用者提供的数组，实例只持有一个固定的块缓冲区，
+ * 运行过程中没有任何分配。本类不是线程安全的，每个线程应使用自己的实例。
+ */
+public class SampleCodec {
+
+    private static final String TAG = "SampleCodec";
+
+    public static final int MODE_VARINT = 0;
+    public static final int MODE_BITPACK = 1;
+
+    public static final int BLOCK_SIZE = 128;
+
+    // 16 位采样的差值经 zig-zag 后最多 17 位
+    private static final int MAX_WIDTH = 17;
+
+    private final int mode;
+    private final int[] block = new int[BLOCK_SIZE];
+
+    // 最近一次 decode() 结束时的读取位置
+    private int decodedBytes;
+
+    /**
+     * 构造函数。
+     * @param mode MODE_VARINT 或 MODE_BITPACK。
+     */
+    public SampleCodec(int mode) {
+        if (mode != MODE_VARINT && mode != MODE_BITPACK) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        this.mode = mode;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * 返回 count 个采样编码后的最大字节数 (用于分配输出数组)。
+     */
+    public static int maxEncodedSize(int count) {
+        // 头部：5 字节 varint + 1 字节模式；每个采样最多 3 字节；每块 1 字节位宽
+        return 6 + count * 3 + (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    // --------------------------------------------------------
+    // --- 编码 ---
+    // --------------------------------------------------------
+
+    /**
+     * 编码 src[offset .. offset+count)。
+     * @param dst 输出数组，剩余空间至少为 maxEncodedSize(count)。
+     * @return 写入的字节数。
+     */
+    public int encode(short[] src, int offset, int count, byte[] dst, int dstOffset) {
+        if (dst.length - dstOffset < maxEncodedSize(count)) {
+            throw new IllegalArgumentException("Output buffer too small");
+        }
+        int p = writeVarint(count, dst, dstOffset);
+        dst[p++] = (byte) mode;
+
+        int previous = 0;
+        if (mode == MODE_VARINT) {
+            for (int i = 0; i < count; i++) {
+                int sample = src[offset + i];
+                int delta = sample - previous;
+                previous = sample;
+                p = writeVarint((delta << 1) ^ (delta >> 31), dst, p);
+            }
+        } else {
+            for (int start = 0; start < count; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, count - start);
+                int any = 0;
+                for (int i = 0; i < n; i++) {
+                    int sample = src[offset + start + i];
+                    int delta = sample - previous;
+                    previous = sample;
+                    int zz = (delta << 1) ^ (delta >> 31);
+                    block[i] = zz;
+                    any |= zz;
+                }
+                int width = 32 - Integer.numberOfLeadingZeros(any);
+                dst[p++] = (byte) width;
+                p = packBlock(n, width, dst, p);
+            }
+        }
+        return p - dstOffset;
+    }
+
+    private int packBlock(int n, int width, byte[] dst, int p) {
+        if (width == 0) return p; // 整块差值都为 0
+        long acc = 0;
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            acc |= (long) block[i] << bits;
+            bits += width;
+            while (bits >= 8) {
+                dst[p++] = (byte) acc;
+                acc >>>= 8;
+                bits -= 8;
+            }
+        }
+        if (bits > 0) {
+            dst[p++] = (byte) acc;
+        }
+        return p;
+    }
+
+    private static int writeVarint(int value, byte[] dst, int p) {
+        while ((value & ~0x7F) != 0) {
+            dst[p++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[p++] = (byte) value;
+        return p;
+    }
+
+    // --------------------------------------------------------
+    // --- 解码 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回编码块中的采样数 (不解码数据)。
+     */
+    public static int peekSampleCount(byte[] src, int srcOffset, int srcLength) {
+        int value = 0;
+        int end = srcOffset + srcLength;
+        for (int p = srcOffset, shift = 0; p < end && shift < 32; p++, shift += 7) {
+            int b = src[p];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Truncated sample count");
+    }
+
+    /**
+     * 解码一个编码块 (模式从块头读取，与本实例的模式无关)。
+     * @param dst 输出数组，剩余空间至少为 peekSampleCount()。
+     * @return 解码出的采样数。
+     * @throws IllegalArgumentException 数据被截断或损坏。
+     */
+    public int decode(byte[] src, int srcOffset, int srcLength, short[] dst, int dstOffset) {
+        int end = srcOffset + srcLength;
+        int count = peekSampleCount(src, srcOffset, srcLength);
+        int p = srcOffset;
+        while (src[p] < 0) p++;
+        p++;
+        if (count < 0 || dst.length - dstOffset < count) {
+            throw new IllegalArgumentException("Output buffer too small: " + count);
+        }
+        if (p >= end) {
+            throw new IllegalArgumentException("Truncated header");
+        }
+        int blockMode = src[p++];
+
+        int previous = 0;
+        if (blockMode == MODE_VARINT) {
+            for (int i = 0; i < count; i++) {
+                int zz = 0;
+                int shift = 0;
+                int b;
+                do {
+                    if (p >= end || shift > 14) {
+                        throw new IllegalArgumentException("Corrupt varint at sample " + i);
+                    }
+                    b = src[p++];
+                    zz |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += (zz >>> 1) ^ -(zz & 1);
+                dst[dstOffset + i] = (short) previous;
+            }
+        } else if (blockMode == MODE_BITPACK) {
+            for (int start = 0; start < count; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, count - start);
+                if (p >= end) {
+                    throw new IllegalArgumentException("Truncated block at sample " + start);
+                }
+                int width = src[p++];
+                if (width < 0 || width > MAX_WIDTH || p + (n * width + 7) / 8 > end) {
+                    throw new IllegalArgumentException("Corrupt block at sample " + start);
+                }
+                int mask = (1 << width) - 1;
+                long acc = 0;
+                int bits = 0;
+                int out = dstOffset + start;
+                for (int i = 0; i < n; i++) {
+                    while (bits < width) {
+                        acc |= (long) (src[p++] & 0xFF) << bits;
+                        bits += 8;
+                    }
+                    int zz = (int) acc & mask;
+                    acc >>>= width;
+                    bits -= width;
+                    previous += (zz >>> 1) ^ -(zz & 1);
+                    dst[out + i] = (short) previous;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown mode: " + blockMode);
+        }
+        decodedBytes = p - srcOffset;
+        return count;
+    }
+
+    /**
+     * 返回最近一次 decode() 消耗的字节数 (用于解码连续存放的多个编码块)。
+     */
+    public int getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    // --------------------------------------------------------
+    // --- 压缩率和吞吐量 ---
+    // --------------------------------------------------------
+
+    /**
+     * 一次测量的结果。
+     */
+    public static final class Report {
+        private long frames;
+        private long samples;
+        private long rawBytes;
+        private long encodedBytes;
+        private long encodeNanos;
+        private long decodeNanos;
+        private boolean lossless = true;
+
+        public long getFrames() { return frames; }
+        public long getSamples() { return samples; }
+        /** 原始采样占用的字节数 (每个采样 2 字节)。 */
+        public long getRawBytes() { return rawBytes; }
+        public long getEncodedBytes() { return encodedBytes; }
+        /** 压缩比 (原始字节 / 编码字节)。 */
+        public double getCompressionRatio() {
+            return encodedBytes > 0 ? (double) rawBytes / encodedBytes : 0;
+        }
+        /** 编码吞吐量 (按原始字节计，MB/s)。 */
+        public double getEncodeThroughput() {
+            return encodeNanos > 0 ? rawBytes * 1e3 / encodeNanos : 0;
+        }
+        /** 解码吞吐量 (按原始字节计，MB/s)。 */
+        public double getDecodeThroughput() {
+            return decodeNanos > 0 ? rawBytes * 1e3 / decodeNanos : 0;
+        }
+        /** 所有帧解码后是否与原始采样完全一致。 */
+        public boolean isLossless() { return lossless; }
+
+        @Override
+        public String toString() {
+            return frames + " frames, " + samples + " samples, ratio " + getCompressionRatio()
+                    + ", encode " + getEncodeThroughput() + " MB/s, decode " + getDecodeThroughput()
+                    + " MB/s, lossless " + lossless;
+        }
+    }
+
+    /**
+     * 用记录文件中的 0x8F 帧测量压缩率和编解码吞吐量：逐帧编码、解码并校验。
+     * @param capture FrameCaptureWriter 生成的记录文件。
+     * @param decoder 与记录时相同采样格式的解码器。
+     */
+    public Report measure(File capture, SampleDecoder decoder) throws IOException {
+        Report report = new Report();
+        byte[] encoded = new byte[maxEncodedSize(SampleDecoder.MAX_PARAM_SIZE)];
+        short[] decoded = new short[SampleDecoder.MAX_PARAM_SIZE];
+        FrameCaptureReader.Frame frame = new FrameCaptureReader.Frame();
+
+        try (FrameCaptureReader reader = new FrameCaptureReader(capture)) {
+            while (reader.next(frame)) {
+                int count = decoder.decode(frame);
+                if (count == 0) continue;
+                short[] raw = decoder.getRawSamples();
+
+                long t0 = System.nanoTime();
+                int length = encode(raw, 0, count, encoded, 0);
+                long t1 = System.nanoTime();
+                decode(encoded, 0, length, decoded, 0);
+                long t2 = System.nanoTime();
+
+                for (int i = 0; i < count; i++) {
+                    if (decoded[i] != raw[i]) {
+                        report.lossless = false;
+                        break;
+                    }
+                }
+                report.frames++;
+                report.samples += count;
+                report.rawBytes += 2L * count;
+                report.encodedBytes += length;
+                report.encodeNanos += t1 - t0;
+                report.decodeNanos += t2 - t1;
+            }
+        }
+        Log.i(TAG, "Codec mode " + mode + ": " + report);
+        return report;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.circularslider;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SampleDecoder 类：把 dataTransfert (0x8F) 帧的参数解码为采样块。
+ * 参数是紧密排列的有符号采样 (每个 1 或 2 字节)，字节序由 setSampleFormat() 指定。
+ *
+ * 【性能说明】：
+ * 参数字节、ByteBuffer 视图以及 short[]/float[] 输出数组都在构造时一次性分配，
+ * 每一帧都复用它们，解码过程中没有装箱，也没有逐样本的对象分配。
+ * 因此 getRawSamples()/getSamples() 返回的数组在下一次 decode() 时会被覆盖，
+ * 需要保留数据的调用者必须自行复制。
+ *
+ * 本类不是线程安全的：应只在接收线程 (ReadingThread) 上调用 decode()。
+ */
+public class SampleDecoder {
+
+    // Table 1: dataTransfert 命令 ID
+    public static final byte CMD_DATA_TRANSFERT = (byte) 0x8F;
+
+    // FrameProcessor 最多接受 4095 字节的 Payload (含 1 字节命令 ID)
+    public static final int MAX_PARAM_SIZE = 4096;
+
+    private final byte[] paramBytes = new byte[MAX_PARAM_SIZE];
+    private final ByteBuffer paramView = ByteBuffer.wrap(paramBytes);
+
+    // 解码结果 (最坏情况：每个采样 1 字节)
+    private final short[] rawSamples = new short[MAX_PARAM_SIZE];
+    private final float[] samples = new float[MAX_PARAM_SIZE];
+    private int sampleCount = 0;
+    private long totalSamples = 0;
+
+    // 采样格式
+    private int bytesPerSample = 2;
+
+    // 校准：物理值 = raw * scale + offset
+    private float scale = 1f;
+    private float offset = 0f;
+
+    public SampleDecoder() {
+        paramView.order(ByteOrder.BIG_ENDIAN); // 与帧中 LENGTH 字段的字节序一致
+    }
+
+    /**
+     * 设置采样格式。
+     * @param bytesPerSample 每个采样的字节数 (1 或 2)。
+     * @param order 多字节采样的字节序。
+     */
+    public void setSampleFormat(int bytesPerSample, ByteOrder order) {
+        if (bytesPerSample != 1 && bytesPerSample != 2) {
+            throw new IllegalArgumentException("bytesPerSample must be 1 or 2: " + bytesPerSample);
+        }
+        this.bytesPerSample = bytesPerSample;
+        paramView.order(order);
+    }
+
+    /**
+     * 设置校准参数 (增益和偏移)。
+     * @param scale 每个 LSB 对应的物理量。
+     * @param offset 加在缩放结果上的偏移。
+     */
+    public void setCalibration(float scale, float offset) {
+        this.scale = scale;
+        this.offset = offset;
+    }
+
+    /**
+     * 解码一帧。非 0x8F 帧或校验失败的帧被忽略。
+     * @param data FrameProcessor 解码得到的帧。
+     * @return 本帧得到的采样数，被忽略时返回 0。
+     */
+    public int decode(FrameProcessor.Data data) {
+        sampleCount = 0;
+        if (data == null || data.getId() != CMD_DATA_TRANSFERT || !data.getFrameValidity()) {
+            return 0;
+        }
+
+        // 1. 将参数复制到复用的字节数组中 (无分配)
+        int length = data.getParam(paramBytes, 0);
+        return decodeParamBytes(length);
+    }
+
+    /**
+     * 解码 FrameCaptureReader 读出的一帧 (参数视图不会被移动)。
+     * @return 本帧得到的采样数，非 0x8F 帧或无效帧返回 0。
+     */
+    public int decode(FrameCaptureReader.Frame frame) {
+        sampleCount = 0;
+        if (frame.getId() != CMD_DATA_TRANSFERT || !frame.getFrameValidity()) {
+            return 0;
+        }
+        ByteBuffer params = frame.getParams();
+        int position = params.position();
+        int length = Math.min(params.remaining(), paramBytes.length);
+        params.get(paramBytes, 0, length);
+        params.position(position);
+        return decodeParamBytes(length);
+    }
+
+    private int decodeParamBytes(int length) {
+        // 2. 通过 ByteBuffer 视图按指定字节序读取采样
+        final float k = scale;
+        final float b = offset;
+        int count = length / bytesPerSample;
+        if (bytesPerSample == 2) {
+            for (int i = 0, pos = 0; i < count; i++, pos += 2) {
+                short raw = paramView.getShort(pos);
+                rawSamples[i] = raw;
+                samples[i] = raw * k + b;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                short raw = paramBytes[i];
+                rawSamples[i] = raw;
+                samples[i] = raw * k + b;
+            }
+        }
+
+        sampleCount = count;
+        totalSamples += count;
+        return count;
+    }
+
+    /**
+     * 返回最近一次 decode() 得到的原始采样 (有效长度为 getSampleCount())。
+     */
+    public short[] getRawSamples() {
+        return rawSamples;
+    }
+
+    /**
+     * 返回最近一次 decode() 得到的校准后采样 (有效长度为 getSampleCount())。
+     */
+    public float[] getSamples() {
+        return samples;
+    }
+
+    /**
+     * 返回最近一次 decode() 得到的采样数。
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * 返回自创建以来解码的采样总数。
+     */
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.circularslider;
+
+/**
+ * SampleHistory 类：固定容量的采样历史环形存储，并维护多级 min/max 抽取金字塔。
+ *
+ * 【结构】：
+ * - 第 0 级：原始采样环 (capacity 个 float)。
+ * - 第 k 级 (k >= 1)：每个条目覆盖 factor^k 个连续采样，保存其最小值和最大值。
+ *   每级条目数为 capacity / factor^k，因此所有级别覆盖相同的时间跨度。
+ * 每追加一个采样只更新各级的累加器，块完成时才写入对应级别，均摊 O(1)。
+ *
+ * 【查询】：
+ * query() 为 N 个像素列各计算一对 min/max。它选择块大小不超过“每列采样数”的最高级别，
+ * 所以每列最多访问 factor + 1 个条目，总代价为 O(N)，与查询的时间跨度无关。
+ * 列边界按所选级别的块对齐，误差小于一列宽度。
+ *
+ * 【内存】：约 capacity * (1 + 2 / (factor - 1)) 个 float，创建后不再增长。
+ *
+ * 所有公有方法都是同步的：接收线程追加数据，UI 线程同时查询。
+ * reconfigure() 在原实例上重新分配，持有引用的视图不需要重新设置数据源。
+ */
+public class SampleHistory {
+
+    private int capacity;
+    private int factor;
+    private int levelCount; // 包括第 0 级
+
+    // 第 0 级：原始采样
+    private float[] raw;
+
+    // 第 k 级：blockSize[k] = factor^k, levelMin[k]/levelMax[k] 的长度为 capacity / blockSize[k]
+    private long[] blockSize;
+    private float[][] levelMin;
+    private float[][] levelMax;
+
+    // 每级当前未完成块的累加器 (第 k 级累加的是第 k-1 级已完成的条目)
+    private float[] accMin;
+    private float[] accMax;
+
+    // 已写入的采样总数 (下一个采样的绝对索引)
+    private long total = 0;
+
+    /**
+     * 构造函数。
+     * @param capacity 保留的最大采样数，会向上取整为最高级块大小的整数倍。
+     * @param factor 相邻两级之间的抽取倍数 (>= 2)。
+     */
+    public SampleHistory(int capacity, int factor) {
+        reconfigure(capacity, factor);
+    }
+
+    /**
+     * 重新配置容量和抽取倍数 (重新分配存储，已有的历史数据被丢弃)。
+     * @param capacity 保留的最大采样数，会向上取整为最高级块大小的整数倍。
+     * @param factor 相邻两级之间的抽取倍数 (>= 2)。
+     */
+    public synchronized void reconfigure(int capacity, int factor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (factor < 2) {
+            throw new IllegalArgumentException("factor must be >= 2: " + factor);
+        }
+        // 级数：直到最高级只剩很少的条目为止
+        int levels = 1;
+        long size = factor;
+        while (size * factor <= capacity) {
+            levels++;
+            size *= factor;
+        }
+        long top = size / factor; // 最高级的块大小
+        long rounded = ((capacity + top - 1) / top) * top;
+        if (rounded > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+        this.capacity = (int) rounded;
+        this.factor = factor;
+        this.levelCount = levels;
+
+        raw = new float[this.capacity];
+        blockSize = new long[levels];
+        levelMin = new float[levels][];
+        levelMax = new float[levels][];
+        accMin = new float[levels];
+        accMax = new float[levels];
+
+        total = 0;
+        blockSize[0] = 1;
+        for (int k = 1; k < levels; k++) {
+            blockSize[k] = blockSize[k - 1] * factor;
+            int entries = (int) (this.capacity / blockSize[k]);
+            levelMin[k] = new float[entries];
+            levelMax[k] = new float[entries];
+        }
+        resetAccumulators();
+    }
+
+    private void resetAccumulators() {
+        for (int k = 0; k < levelCount; k++) {
+            accMin[k] = Float.POSITIVE_INFINITY;
+            accMax[k] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 写入 ---
+    // --------------------------------------------------------
+
+    /**
+     * 追加一批采样。
+     * @param samples 采样数组 (可以是 SampleDecoder 复用的数组，内容会被复制)。
+     * @param offset 起始位置。
+     * @param count 采样数。
+     */
+    public synchronized void append(float[] samples, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            float v = samples[offset + i];
+            raw[(int) (total % capacity)] = v;
+            total++;
+
+            if (levelCount > 1) {
+                // 第 1 级累加原始采样
+                if (v < accMin[1]) accMin[1] = v;
+                if (v > accMax[1]) accMax[1] = v;
+
+                // 块完成时逐级向上传递
+                for (int k = 1; k < levelCount && total % blockSize[k] == 0; k++) {
+                    float mn = accMin[k];
+                    float mx = accMax[k];
+                    int entries = levelMin[k].length;
+                    int slot = (int) ((total / blockSize[k] - 1) % entries);
+                    levelMin[k][slot] = mn;
+                    levelMax[k][slot] = mx;
+                    accMin[k] = Float.POSITIVE_INFINITY;
+                    accMax[k] = Float.NEGATIVE_INFINITY;
+
+                    if (k + 1 < levelCount) {
+                        if (mn < accMin[k + 1]) accMin[k + 1] = mn;
+                        if (mx > accMax[k + 1]) accMax[k + 1] = mx;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空历史 (不释放内存)。
+     */
+    public synchronized void clear() {
+        total = 0;
+        resetAccumulators();
+    }
+
+    // --------------------------------------------------------
+    // --- 查询 ---
+    // --------------------------------------------------------
+
+    /**
+     * 计算 [start, end) 区间内 columns 个像素列的 min/max 包络。
+     * 区间会被裁剪到仍保留在历史中的部分。
+     * @param start 起始绝对采样索引 (含)。
+     * @param end 结束绝对采样索引 (不含)。
+     * @param columns 列数 (outMin/outMax 至少要有这么长)。
+     * @param outMin 每列最小值 (输出)。
+     * @param outMax 每列最大值 (输出)。
+     * @return 实际填充的列数；区间为空时返回 0。
+     */
+    public synchronized int query(long start, long end, int columns, float[] outMin, float[] outMax) {
+        long oldest = getOldestIndexLocked();
+        if (start < oldest) start = oldest;
+        if (end > total) end = total;
+        if (columns <= 0 || end <= start) {
+            return 0;
+        }
+
+        long span = end - start;
+
+        // 选择块大小不超过每列采样数的最高级别
+        int level = 0;
+        while (level + 1 < levelCount && blockSize[level + 1] * columns <= span) {
+            level++;
+        }
+        long bs = blockSize[level];
+
+        for (int c = 0; c < columns; c++) {
+            long s = start + span * c / columns;
+            long e = start + span * (c + 1) / columns;
+            if (e <= s) e = s + 1;
+            if (e > end) e = end;
+
+            long jStart = s / bs;
+            long jEnd = (e + bs - 1) / bs;
+            float mn = Float.POSITIVE_INFINITY;
+            float mx = Float.NEGATIVE_INFINITY;
+            for (long j = jStart; j < jEnd; j++) {
+                if (level == 0) {
+                    float v = raw[(int) (j % capacity)];
+                    if (v < mn) mn = v;
+                    if (v > mx) mx = v;
+                } else if ((j + 1) * bs <= total) {
+                    int slot = (int) (j % levelMin[level].length);
+                    if (levelMin[level][slot] < mn) mn = levelMin[level][slot];
+                    if (levelMax[level][slot] > mx) mx = levelMax[level][slot];
+                } else {
+                    // 当前未完成的块：合并各级累加器
+                    for (int k = 1; k <= level; k++) {
+                        if (accMin[k] < mn) mn = accMin[k];
+                        if (accMax[k] > mx) mx = accMax[k];
+                    }
+                }
+            }
+            outMin[c] = mn;
+            outMax[c] = mx;
+        }
+        return columns;
+    }
+
+    private long getOldestIndexLocked() {
+        return Math.max(0, total - capacity);
+    }
+
+    // --------------------------------------------------------
+    // --- 状态 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回已写入的采样总数，即下一个采样的绝对索引。
+     */
+    public synchronized long getTotalSamples() {
+        return total;
+    }
+
+    /**
+     * 返回仍保留在历史中的最早采样的绝对索引。
+     */
+    public synchronized long getOldestIndex() {
+        return getOldestIndexLocked();
+    }
+
+    /**
+     * 返回容量 (采样数)。
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 返回相邻两级之间的抽取倍数。
+     */
+    public synchronized int getFactor() {
+        return factor;
+    }
+
+    /**
+     * 返回采样数组和金字塔占用的字节数。
+     */
+    public synchronized long getMemoryBytes() {
+        long floats = raw.length;
+        for (int k = 1; k < levelCount; k++) {
+            floats += levelMin[k].length + levelMax[k].length;
+        }
+        return floats * 4;
+    }
+}
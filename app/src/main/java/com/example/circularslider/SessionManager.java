@@ -0,0 +1,308 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SessionManager 类：同时管理多个设备会话 (每个会话一个 Transceiver)，
+ * 并支持按组广播命令。
+ *
+ * - 每个 Session 有自己的 FrameProcessor、SampleDecoder 和统计数据，
+ *   是其 Transceiver 的监听器；收到的帧和解码出的采样连同会话 ID 一起交给 SessionListener。
+ * - 组 (group) 是会话 ID 的集合。broadcast() 只编码一次帧，然后通过 Transceiver.sendEncoded()
+ *   把同一个字节数组发给组内所有已连接的会话 (各 Transceiver 会复制到自己的发送缓冲区)。
+ *
+ * 会话可以使用任意 Transceiver 实现 (BluetoothManager、TcpTransceiver、MultiplexedTransport.Link 等)。
+ * 回调在各会话的接收线程上进行，监听器需要自行切换到 UI 线程。
+ */
+public class SessionManager {
+
+    private static final String TAG = "SessionManager";
+
+    // Table 1: 命令 ID
+    public static final byte CMD_CALIBRATION_DUTY_CYCLE = CalibrationDutyCycleCommand.ID;
+
+    /**
+     * 会话事件监听器。
+     */
+    public interface SessionListener {
+        /** 会话收到一帧 (包括校验失败的帧)。 */
+        void onSessionData(String sessionId, FrameProcessor.Data data);
+
+        /** 会话的 0x8F 帧解码出一块采样 (数组在下一帧时被覆盖)。 */
+        void onSessionSamples(String sessionId, float[] samples, int count);
+
+        /** 会话的连接状态变化。 */
+        void onSessionStatusChanged(String sessionId, int status);
+    }
+
+    /**
+     * 一个设备会话。
+     */
+    public final class Session implements TransceiverListener {
+        private final String id;
+        private final Transceiver transceiver;
+        private final SampleDecoder decoder = new SampleDecoder();
+
+        // 统计 (只由该会话的接收线程写入)
+        private volatile long framesReceived = 0;
+        private volatile long invalidFrames = 0;
+        private volatile long samplesReceived = 0;
+        private volatile long lastFrameNanos = 0;
+
+        // 由任意调用线程更新：只计入被 Transceiver 接受的帧
+        private final AtomicLong commandsSent = new AtomicLong();
+
+        private Session(String id, Transceiver transceiver) {
+            this.id = id;
+            this.transceiver = transceiver;
+        }
+
+        /**
+         * 把会话挂到 Transceiver 上 (替换其 FrameProcessor 和监听器)。
+         */
+        private void attach() {
+            transceiver.attachFrameProcessor(new FrameProcessor());
+            transceiver.setTransceiverListener(this);
+        }
+
+        @Override
+        public void onTransceiverDataReceived(FrameProcessor.Data data) {
+            framesReceived++;
+            lastFrameNanos = System.nanoTime();
+            if (!data.getFrameValidity()) {
+                invalidFrames++;
+            }
+            SessionListener l = listener;
+            if (l != null) {
+                l.onSessionData(id, data);
+            }
+            int count = decoder.decode(data);
+            if (count > 0) {
+                samplesReceived += count;
+                if (l != null) {
+                    l.onSessionSamples(id, decoder.getSamples(), count);
+                }
+            }
+        }
+
+        @Override
+        public void onTransceiverConnectionStatusChanged(int status) {
+            SessionListener l = listener;
+            if (l != null) {
+                l.onSessionStatusChanged(id, status);
+            }
+        }
+
+        public String getId() { return id; }
+        public Transceiver getTransceiver() { return transceiver; }
+        /** 本会话的采样解码器 (用于设置采样格式和校准)。 */
+        public SampleDecoder getDecoder() { return decoder; }
+        public long getFramesReceived() { return framesReceived; }
+        public long getInvalidFrames() { return invalidFrames; }
+        public long getSamplesReceived() { return samplesReceived; }
+        /** 最近一帧的接收时间 (System.nanoTime())，尚未收到时为 0。 */
+        public long getLastFrameNanos() { return lastFrameNanos; }
+        /** 被 Transceiver 接受 (进入发送缓冲区) 的命令数。 */
+        public long getCommandsSent() { return commandsSent.get(); }
+    }
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> groups = new ConcurrentHashMap<>();
+    private volatile SessionListener listener;
+
+    // 广播时复用的编码缓冲区 (由 encoder 保护)
+    private final FrameProcessor encoder = new FrameProcessor();
+    private final byte[] broadcastFrame = new byte[FrameProcessor.maxFrameSize(SampleDecoder.MAX_PARAM_SIZE)];
+    private final CalibrationDutyCycleCommand dutyCycleCommand = new CalibrationDutyCycleCommand();
+    private final byte[] dutyCyclePayload = new byte[2];
+
+    public void setSessionListener(SessionListener listener) {
+        this.listener = listener;
+    }
+
+    // --------------------------------------------------------
+    // --- 会话 ---
+    // --------------------------------------------------------
+
+    /**
+     * 添加一个会话。Transceiver 的监听器和 FrameProcessor 会被替换为会话自己的。
+     * @throws IllegalArgumentException 会话 ID 已存在 (此时 Transceiver 不会被修改)。
+     */
+    public Session addSession(String sessionId, Transceiver transceiver) {
+        Session session = new Session(sessionId, transceiver);
+        if (sessions.putIfAbsent(sessionId, session) != null) {
+            throw new IllegalArgumentException("Duplicate session: " + sessionId);
+        }
+        session.attach();
+        return session;
+    }
+
+    /**
+     * 断开并移除一个会话 (同时从所有组中移除)。
+     */
+    public void removeSession(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            session.transceiver.disconnect();
+            session.transceiver.setTransceiverListener(null);
+            for (Set<String> members : groups.values()) {
+                members.remove(sessionId);
+            }
+        }
+    }
+
+    public Session getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public Collection<Session> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * 连接一个会话。
+     * @param address 传给 Transceiver.connect() 的地址。
+     */
+    public void connect(String sessionId, String address) {
+        requireSession(sessionId).transceiver.connect(address);
+    }
+
+    /**
+     * 断开所有会话 (会话保留，可以重新连接)。
+     */
+    public void disconnectAll() {
+        for (Session session : sessions.values()) {
+            session.transceiver.disconnect();
+        }
+    }
+
+    private Session requireSession(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            throw new IllegalArgumentException("Unknown session: " + sessionId);
+        }
+        return session;
+    }
+
+    // --------------------------------------------------------
+    // --- 组 ---
+    // --------------------------------------------------------
+
+    public void addToGroup(String group, String sessionId) {
+        requireSession(sessionId);
+        groups.computeIfAbsent(group, g -> new CopyOnWriteArraySet<>()).add(sessionId);
+    }
+
+    public void removeFromGroup(String group, String sessionId) {
+        Set<String> members = groups.get(group);
+        if (members != null) {
+            members.remove(sessionId);
+        }
+    }
+
+    /**
+     * 返回组内的会话 ID (快照)。
+     */
+    public List<String> getGroup(String group) {
+        Set<String> members = groups.get(group);
+        return members != null ? new ArrayList<>(members) : new ArrayList<>();
+    }
+
+    // --------------------------------------------------------
+    // --- 命令 ---
+    // --------------------------------------------------------
+
+    /**
+     * 向一个会话发送命令。
+     * @return true 如果帧已进入该会话的发送缓冲区。
+     * @throws IllegalArgumentException 负载为空或过大。
+     */
+    public boolean send(String sessionId, byte[] payload) {
+        Session session = requireSession(sessionId);
+        checkPayload(payload, 0, payload.length);
+        synchronized (encoder) {
+            encoder.setIntegrityMode(session.transceiver.getIntegrityMode());
+            int frameLength = encoder.toFrame(payload, 0, payload.length, broadcastFrame, 0);
+            if (!session.transceiver.sendEncoded(broadcastFrame, 0, frameLength)) {
+                return false;
+            }
+        }
+        session.commandsSent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 把同一个命令发给组内所有已连接的会话：帧只编码一次
+     * (会话协商了不同的完整性模式时，每种模式编码一次)。
+     * @return 接受了该帧的会话数 (发送缓冲区已满而丢弃的不计入)。
+     * @throws IllegalArgumentException 负载为空或过大。
+     */
+    public int broadcast(String group, byte[] payload) {
+        return broadcast(group, payload, 0, payload.length);
+    }
+
+    private int broadcast(String group, byte[] payload, int offset, int length) {
+        checkPayload(payload, offset, length);
+        Set<String> members = groups.get(group);
+        if (members == null || members.isEmpty()) {
+            return 0;
+        }
+        int sent = 0;
+        synchronized (encoder) {
+            int frameLength = -1;
+            for (String sessionId : members) {
+                Session session = sessions.get(sessionId);
+                if (session == null || session.transceiver.getStatus() != Transceiver.STATE_CONNECTED) {
+                    continue;
+                }
+                int mode = session.transceiver.getIntegrityMode();
+                if (frameLength < 0 || mode != encoder.getIntegrityMode()) {
+                    encoder.setIntegrityMode(mode);
+                    frameLength = encoder.toFrame(payload, offset, length, broadcastFrame, 0);
+                }
+                if (session.transceiver.sendEncoded(broadcastFrame, 0, frameLength)) {
+                    session.commandsSent.incrementAndGet();
+                    sent++;
+                }
+            }
+        }
+        Log.d(TAG, "Broadcast 0x" + Integer.toHexString(payload[offset] & 0xFF) + " to " + sent + " sessions of " + group);
+        return sent;
+    }
+
+    /**
+     * 检查负载：至少包含命令 ID (解码端拒绝 LENGTH 为 0 的帧)，且不超过一帧的容量。
+     * @throws IllegalArgumentException 负载为空或过大。
+     * @throws IndexOutOfBoundsException offset/length 超出数组。
+     */
+    private static void checkPayload(byte[] payload, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, payload.length);
+        if (length < 1) {
+            throw new IllegalArgumentException("Empty payload");
+        }
+        if (length > SampleDecoder.MAX_PARAM_SIZE - 1) {
+            throw new IllegalArgumentException("Payload too large: " + length);
+        }
+    }
+
+    /**
+     * 向组广播 calibration duty cycle (0x0A) 命令。
+     * @param alpha 占空比 (0.0 到 1.0)。
+     * @return 接受了该帧的会话数。
+     */
+    public int setCalibrationDutyCycle(String group, float alpha) {
+        synchronized (dutyCyclePayload) {
+            int length = dutyCycleCommand.setDutyCycle(alpha).encode(dutyCyclePayload, 0);
+            return broadcast(group, dutyCyclePayload, 0, length);
+        }
+    }
+}
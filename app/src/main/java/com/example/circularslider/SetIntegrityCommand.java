@@ -0,0 +1,51 @@
+package com.example.circularslider;
+
+/**
+ * 完整性模式协商命令 (ID 0x0B)：参数为 1 字节的 FrameProcessor.INTEGRITY_* 模式。
+ * 设备用当前格式回送相同的帧作为确认 (见 IntegrityNegotiator)。
+ */
+public final class SetIntegrityCommand extends Command {
+
+    public static final byte ID = (byte) 0x0B;
+
+    private int mode = FrameProcessor.INTEGRITY_SUM8;
+
+    public SetIntegrityCommand() {
+        super(ID);
+    }
+
+    /**
+     * @param mode FrameProcessor.INTEGRITY_SUM8、INTEGRITY_CRC16 或 INTEGRITY_CRC32。
+     */
+    public SetIntegrityCommand setMode(int mode) {
+        FrameProcessor.checkSize(mode); // 验证
+        this.mode = mode;
+        return this;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    @Override
+    public int getParamLength() {
+        return 1;
+    }
+
+    @Override
+    protected void writeParams(byte[] dst, int offset) {
+        dst[offset] = (byte) mode;
+    }
+
+    /**
+     * 不支持的模式视为格式错误。
+     */
+    @Override
+    protected boolean readParams(FrameProcessor.Data frame) {
+        if (frame.getParamLength() < 1) return false;
+        int value = frame.getParamByte(0);
+        if (value < FrameProcessor.INTEGRITY_SUM8 || value > FrameProcessor.INTEGRITY_CRC32) return false;
+        mode = value;
+        return true;
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+/**
+ * SpectrumAnalyzer 类：在后台线程上对采样流做加窗 FFT，并以限定的速率发布平均频谱。
+ *
+ * 【数据流】：
+ * 接收线程调用 push() 把采样复制进输入环形缓冲区 (只持锁复制，绝不等待)；
+ * 如果工作线程跟不上，最旧的采样被丢弃并计数，接收线程永远不会被阻塞。
+ * 工作线程每积累 hop = N * (1 - overlap) 个新采样就计算一帧：
+ * 滑动帧 → 乘窗函数表 → RealFft → 功率谱 → 指数平均 (权重 1/averages)。
+ * 距离上次发布超过 minPublishIntervalNanos 时，把平均功率转换为 dB 并通知监听器。
+ *
+ * 所有数组 (输入环、帧、窗函数表、FFT 输出、平均值、发布缓冲区) 在配置生效时分配，
+ * 处理过程中不再分配内存。
+ */
+public class SpectrumAnalyzer {
+
+    private static final String TAG = "SpectrumAnalyzer";
+
+    // --- 窗函数 ---
+    public static final int WINDOW_RECTANGULAR = 0;
+    public static final int WINDOW_HANN = 1;
+    public static final int WINDOW_HAMMING = 2;
+    public static final int WINDOW_BLACKMAN = 3;
+
+    public static final int MAX_FFT_SIZE = 8192;
+
+    /**
+     * 频谱发布回调 (在工作线程上调用)。
+     */
+    public interface SpectrumListener {
+        /**
+         * @param magnitudeDb 每个频点的幅度 (dB)，数组在下一次发布时被覆盖。
+         * @param binCount 有效频点数 (N/2 + 1)。
+         * @param binHz 相邻频点之间的频率间隔 (Hz)。
+         */
+        void onSpectrum(float[] magnitudeDb, int binCount, float binHz);
+    }
+
+    // --- 配置 (工作线程在每次循环开始时读取) ---
+    private int fftSize = 1024;
+    private int windowType = WINDOW_HANN;
+    private int hop = 512;
+    private int averages = 4;
+    private volatile long minPublishIntervalNanos = 50_000_000L; // 最多 20 次/秒
+    private volatile float sampleRate = 1f;
+
+    // --- 输入环形缓冲区 (由 lock 保护) ---
+    private final Object lock = new Object();
+    private float[] input;
+    private int inputRead = 0;
+    private int inputCount = 0;
+    private long droppedSamples = 0;
+    private boolean reconfigure = true;
+
+    // --- 工作线程私有的配置快照和数组 ---
+    private int activeSize;
+    private int activeHop;
+    private int activeAverages;
+    private RealFft fft;
+    private float[] window;
+    private float[] frame;
+    private float[] windowed;
+    private float[] re;
+    private float[] im;
+    private float[] averagePower;
+    private float[] published;
+    private float powerScale;
+    private int framesFilled = 0;  // 帧中已有的采样数 (首帧需要填满 N 个)
+    private int framesAveraged = 0;
+    private long lastPublishNanos = 0;
+    private long framesComputed = 0;
+
+    private volatile SpectrumListener listener;
+    private WorkerThread workerThread;
+
+    public SpectrumAnalyzer() {
+        synchronized (lock) {
+            input = new float[fftSize * 4];
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 配置 ---
+    // --------------------------------------------------------
+
+    /**
+     * 配置分析参数。新配置在工作线程的下一次循环中生效，已缓冲的采样会被丢弃。
+     * @param fftSize FFT 点数 (2 的幂，4 到 MAX_FFT_SIZE)。
+     * @param windowType WINDOW_* 常量。
+     * @param overlap 相邻帧的重叠比例 (0 到 0.95)。
+     * @param averages 指数平均的帧数 (>= 1)。
+     */
+    public void configure(int fftSize, int windowType, float overlap, int averages) {
+        if (fftSize < 4 || fftSize > MAX_FFT_SIZE || (fftSize & (fftSize - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid FFT size: " + fftSize);
+        }
+        if (overlap < 0f || overlap > 0.95f) {
+            throw new IllegalArgumentException("Invalid overlap: " + overlap);
+        }
+        synchronized (lock) {
+            this.fftSize = fftSize;
+            this.windowType = windowType;
+            this.hop = Math.max(1, Math.round(fftSize * (1f - overlap)));
+            this.averages = Math.max(1, averages);
+            this.input = new float[fftSize * 4];
+            this.inputRead = 0;
+            this.inputCount = 0;
+            this.reconfigure = true;
+        }
+    }
+
+    /**
+     * 设置采样率，仅用于计算频点间隔。
+     */
+    public void setSampleRate(float sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 设置最大发布速率。
+     * @param maxPerSecond 每秒最多发布的频谱数。
+     */
+    public void setMaxPublishRate(float maxPerSecond) {
+        minPublishIntervalNanos = (long) (1_000_000_000L / Math.max(maxPerSecond, 0.01f));
+    }
+
+    public void setListener(SpectrumListener listener) {
+        this.listener = listener;
+    }
+
+    // --------------------------------------------------------
+    // --- 生产者 (接收线程) ---
+    // --------------------------------------------------------
+
+    /**
+     * 把一批采样放入输入缓冲区。永不阻塞；缓冲区满时覆盖最旧的采样。
+     * 分析器未启动时直接返回。
+     */
+    public void push(float[] samples, int offset, int count) {
+        synchronized (lock) {
+            if (workerThread == null) return;
+
+            float[] buf = input;
+            int capacity = buf.length;
+            for (int i = 0; i < count; i++) {
+                int writeIndex = (inputRead + inputCount) % capacity;
+                buf[writeIndex] = samples[offset + i];
+                if (inputCount == capacity) {
+                    inputRead = (inputRead + 1) % capacity;
+                    droppedSamples++;
+                } else {
+                    inputCount++;
+                }
+            }
+            lock.notify();
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 生命周期 ---
+    // --------------------------------------------------------
+
+    /**
+     * 启动工作线程。
+     */
+    public void start() {
+        synchronized (lock) {
+            if (workerThread != null) return;
+            workerThread = new WorkerThread();
+            workerThread.start();
+        }
+    }
+
+    /**
+     * 停止工作线程并等待其结束。
+     */
+    public void stop() {
+        WorkerThread t;
+        synchronized (lock) {
+            t = workerThread;
+            workerThread = null;
+            if (t == null) return;
+            t.running = false;
+            lock.notifyAll();
+        }
+        t.interrupt();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --------------------------------------------------------
+    // --- 工作线程 ---
+    // --------------------------------------------------------
+
+    private class WorkerThread extends Thread {
+        private volatile boolean running = true;
+
+        WorkerThread() {
+            super("SpectrumAnalyzer");
+            setPriority(Thread.NORM_PRIORITY - 1); // 低于接收线程和 UI
+        }
+
+        public void run() {
+            Log.i(TAG, "SpectrumAnalyzer started.");
+            try {
+                while (running) {
+                    int need;
+                    int offsetInFrame;
+                    synchronized (lock) {
+                        if (reconfigure) {
+                            applyConfiguration();
+                        }
+                        // 首帧需要填满 N 个采样，之后每帧需要 hop 个新采样
+                        need = framesFilled < activeSize ? activeSize - framesFilled : activeHop;
+                        while (running && !reconfigure && inputCount < need) {
+                            lock.wait();
+                        }
+                        if (!running) break;
+                        if (reconfigure) continue;
+
+                        // 滑动帧：左移 need 个采样，再从输入环复制 need 个新采样
+                        offsetInFrame = framesFilled < activeSize ? framesFilled : activeSize - need;
+                        if (framesFilled >= activeSize) {
+                            System.arraycopy(frame, need, frame, 0, activeSize - need);
+                        }
+                        int capacity = input.length;
+                        for (int i = 0; i < need; i++) {
+                            frame[offsetInFrame + i] = input[(inputRead + i) % capacity];
+                        }
+                        inputRead = (inputRead + need) % capacity;
+                        inputCount -= need;
+                    }
+                    framesFilled = Math.min(activeSize, offsetInFrame + need);
+                    if (framesFilled == activeSize) {
+                        computeFrame();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Log.i(TAG, "SpectrumAnalyzer stopped.");
+        }
+    }
+
+    /**
+     * 在工作线程上 (持有 lock 时) 根据当前配置分配所有数组和查表。
+     */
+    private void applyConfiguration() {
+        reconfigure = false;
+        activeSize = fftSize;
+        activeHop = Math.min(hop, fftSize);
+        activeAverages = averages;
+        int n = activeSize;
+        if (fft == null || fft.getSize() != n) {
+            fft = new RealFft(n);
+            frame = new float[n];
+            windowed = new float[n];
+            re = new float[n / 2 + 1];
+            im = new float[n / 2 + 1];
+            averagePower = new float[n / 2 + 1];
+            published = new float[n / 2 + 1];
+        }
+        window = buildWindow(windowType, n);
+
+        // 单边幅度谱归一化：幅度 = 2 |X| / sum(w)
+        double gain = 0;
+        for (float w : window) gain += w;
+        powerScale = (float) (4.0 / (gain * gain));
+
+        framesFilled = 0;
+        framesAveraged = 0;
+    }
+
+    /**
+     * 计算一帧频谱并在需要时发布。只使用预分配的数组。
+     */
+    private void computeFrame() {
+        final int n = activeSize;
+        for (int i = 0; i < n; i++) {
+            windowed[i] = frame[i] * window[i];
+        }
+        fft.forward(windowed, re, im);
+        framesComputed++;
+
+        // 指数平均：avg += (p - avg) / k，前 k 帧逐步增大 k 以避免启动偏差
+        int bins = n / 2 + 1;
+        if (framesAveraged < activeAverages) framesAveraged++;
+        float alpha = 1f / framesAveraged;
+        for (int k = 0; k < bins; k++) {
+            float p = (re[k] * re[k] + im[k] * im[k]) * powerScale;
+            averagePower[k] += (p - averagePower[k]) * alpha;
+        }
+
+        long now = System.nanoTime();
+        SpectrumListener l = listener;
+        if (l != null && now - lastPublishNanos >= minPublishIntervalNanos) {
+            lastPublishNanos = now;
+            for (int k = 0; k < bins; k++) {
+                // 10*log10(p)，加一个很小的下限避免 -Infinity
+                published[k] = (float) (10.0 * Math.log10(averagePower[k] + 1e-20f));
+            }
+            l.onSpectrum(published, bins, sampleRate / n);
+        }
+    }
+
+    private static float[] buildWindow(int type, int n) {
+        float[] w = new float[n];
+        for (int i = 0; i < n; i++) {
+            double x = 2 * Math.PI * i / (n - 1);
+            switch (type) {
+                case WINDOW_HANN:
+                    w[i] = (float) (0.5 - 0.5 * Math.cos(x));
+                    break;
+                case WINDOW_HAMMING:
+                    w[i] = (float) (0.54 - 0.46 * Math.cos(x));
+                    break;
+                case WINDOW_BLACKMAN:
+                    w[i] = (float) (0.42 - 0.5 * Math.cos(x) + 0.08 * Math.cos(2 * x));
+                    break;
+                default:
+                    w[i] = 1f;
+            }
+        }
+        return w;
+    }
+
+    // --------------------------------------------------------
+    // --- 统计 ---
+    // --------------------------------------------------------
+
+    /**
+     * 返回因工作线程跟不上而被丢弃的采样数。
+     */
+    public long getDroppedSamples() {
+        synchronized (lock) {
+            return droppedSamples;
+        }
+    }
+
+    /**
+     * 返回已计算的 FFT 帧数 (仅供统计，非严格同步)。
+     */
+    public long getFramesComputed() {
+        return framesComputed;
+    }
+}
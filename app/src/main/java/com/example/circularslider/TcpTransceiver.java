@@ -0,0 +1,50 @@
+package com.example.circularslider;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 实现 Transceiver 抽象类的 TCP 版本，基于阻塞模式的 NIO SocketChannel。
+ * 用于连接通过 TCP 提供串口数据的设备或模拟器 (例如串口转以太网网关)。
+ *
+ * connect(id) 中的 id 格式为 "host:port"。
+ */
+public class TcpTransceiver extends ChannelTransceiver {
+
+    public static final int CONNECT_TIMEOUT_MS = 5000;
+
+    public TcpTransceiver() {
+    }
+
+    public TcpTransceiver(int txBufferSize) {
+        super(txBufferSize);
+    }
+
+    @Override
+    protected ByteChannel openChannel(String id) throws IOException {
+        int colon = id.lastIndexOf(':');
+        if (colon <= 0 || colon == id.length() - 1) {
+            throw new IOException("Invalid address (expected host:port): " + id);
+        }
+        String host = id.substring(0, colon);
+        int port;
+        try {
+            port = Integer.parseInt(id.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid port: " + id);
+        }
+
+        SocketChannel channel = SocketChannel.open();
+        try {
+            // 小帧 (命令) 不应等待 Nagle 合并
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+}
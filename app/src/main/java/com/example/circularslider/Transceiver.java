@@ -1,9 +1,21 @@
 package com.example.circularslider;
 // 确保包名与您的项目一致
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 抽象类：定义 Transceiver 的通用接口和连接状态。
  * (参考 UML 图 5)
+ *
+ * 连接状态是一个无锁状态机：状态和连接代数 (epoch) 打包在同一个 AtomicLong 中，
+ * 只允许以下转换 (compareAndSet)：
+ * - NOT_CONNECTED -> CONNECTING：beginConnect()，同时 epoch 加一；
+ * - CONNECTING -> CONNECTED、CONNECTING/CONNECTED -> NOT_CONNECTED：updateConnectionStatus(epoch, ...)，
+ *   epoch 必须等于当前连接的 epoch。
+ * 因此旧连接遗留的任务 (持有旧 epoch) 无法改变新连接的状态。
+ * 监听器通知是合并的：同一时刻只有一个线程在通知，按转换顺序报告，同一连接的同一状态只报告一次。
+ * 被合并掉中间状态的另一次连接 (例如很快失败的重连) 仍会报告一次，即使状态值与上次相同。
  */
 public abstract class Transceiver {
 
@@ -12,10 +24,30 @@ public abstract class Transceiver {
     public static final int STATE_CONNECTING = 1;    // 设备正在连接 [cite: 288]
     public static final int STATE_CONNECTED = 2;     // 设备已连接 [cite: 289]
 
-    protected int state = STATE_NOT_CONNECTED;
-    protected TransceiverListener listener;
+    // 状态字：高位为 epoch，低 STATE_BITS 位为状态
+    private static final int STATE_BITS = 8;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+    private final AtomicLong stateWord = new AtomicLong(STATE_NOT_CONNECTED);
+
+    // 通知合并：notifying 为 true 的线程负责把 stateWord 的变化报告给监听器
+    private final AtomicBoolean notifying = new AtomicBoolean(false);
+    private volatile long notifiedWord = STATE_NOT_CONNECTED; // 只由持有 notifying 的线程写入
+
+    protected volatile TransceiverListener listener;
     protected FrameProcessor frameProcessor;
 
+    // 可选的原始链路记录 (null 表示不记录)
+    protected volatile LinkCapture linkCapture;
+
+    // 连接/读写任务使用的执行器 (null 表示使用 TransportExecutors.getDefault())
+    private volatile TransportExecutors executors;
+
+    // 接收统计 (只由读取线程写入)
+    private volatile long rxBytes = 0;
+    private volatile long rxFrames = 0;
+    private volatile long lastValidFrameNanos = 0;
+
     // --- 抽象方法：必须由子类（如 BluetoothManager）实现 ---
 
     /**
@@ -35,6 +67,28 @@ public abstract class Transceiver {
      */
     public abstract void send(byte[] data); // 对应 UML 图中的 send(byte[] data) [cite: 224]
 
+    /**
+     * 抽象方法：发送一个已经编码好的完整帧 (不再经过 FrameProcessor)。
+     * 用于把同一帧广播给多个设备时只编码一次。实现会复制数据，调用者返回后即可重用 frame。
+     * @param frame 包含 FrameProcessor.toFrame() 输出的数组。
+     * @param offset 帧的起始位置。
+     * @param length 帧的字节数。
+     * @return true 如果整帧已进入发送队列；false 如果未连接或发送缓冲区空间不足 (整帧被丢弃)。
+     */
+    public abstract boolean sendEncoded(byte[] frame, int offset, int length);
+
+    /**
+     * 阻塞版本的 sendEncoded()：发送缓冲区空间不足时等待写任务腾出空间 (背压)，整帧放入，不会截断。
+     * 默认实现不等待，直接调用 sendEncoded()；有发送缓冲区的实现会覆盖它。
+     * @return true 如果整帧已进入发送缓冲区；false 如果未连接、帧大于发送缓冲区、等待期间断开或线程被中断。
+     */
+    public boolean sendEncodedBlocking(byte[] frame, int offset, int length) {
+        if (getStatus() != STATE_CONNECTED) {
+            return false;
+        }
+        return sendEncoded(frame, offset, length);
+    }
+
     // --- 具体方法 ---
 
     /**
@@ -48,7 +102,14 @@ public abstract class Transceiver {
      * 返回当前连接状态。
      */
     public int getStatus() { // 对应 UML 图中的 getStatus()
-        return state;
+        return (int) (stateWord.get() & STATE_MASK);
+    }
+
+    /**
+     * 返回当前 (或最近一次) 连接尝试的 epoch。每次 beginConnect() 成功时加一，初始为 0。
+     */
+    public long getEpoch() {
+        return stateWord.get() >>> STATE_BITS;
     }
 
     /**
@@ -68,13 +129,197 @@ public abstract class Transceiver {
     }
 
     /**
-     * 更改状态并通知监听器。
-     * @param newState 新状态。
+     * 设置附加的 FrameProcessor 的完整性模式 (编码和解码同时生效)。
+     * 通常由 IntegrityNegotiator 在设备确认后调用；每次新连接 (beginConnect()) 都恢复为 INTEGRITY_SUM8。
+     * @param mode FrameProcessor.INTEGRITY_SUM8、INTEGRITY_CRC16 或 INTEGRITY_CRC32。
+     */
+    public void setIntegrityMode(int mode) {
+        FrameProcessor fp = frameProcessor;
+        if (fp != null) {
+            fp.setIntegrityMode(mode);
+        }
+    }
+
+    /**
+     * 返回当前的完整性模式。自行编码帧再调用 sendEncoded() 的组件 (例如 ReliableLink、SessionManager)
+     * 必须使用相同的模式编码。
+     */
+    public int getIntegrityMode() {
+        FrameProcessor fp = frameProcessor;
+        return fp != null ? fp.getIntegrityMode() : FrameProcessor.INTEGRITY_SUM8;
+    }
+
+    /**
+     * 注入连接和读写任务使用的执行器 (在 connect() 之前调用)。
+     * @param executors 自定义执行器，传入 null 恢复为共享的默认执行器。
+     */
+    public void setExecutors(TransportExecutors executors) {
+        this.executors = executors;
+    }
+
+    /**
+     * 返回当前使用的执行器。
+     */
+    protected TransportExecutors getExecutors() {
+        TransportExecutors e = executors;
+        return e != null ? e : TransportExecutors.getDefault();
+    }
+
+    /**
+     * 设置原始链路记录器。所有收发的原始字节块都会带时间戳写入其中。
+     * @param capture 已启动的 LinkCapture，传入 null 停止记录。
+     */
+    public void setLinkCapture(LinkCapture capture) {
+        this.linkCapture = capture;
+    }
+
+    /**
+     * 接收路径：子类的读取线程收到一块原始字节后调用。
+     * 依次完成记录、逐字节交给 FrameProcessor 解码，以及把完整帧传给监听器。
+     * @param buffer 读取缓冲区。
+     * @param offset 起始位置。
+     * @param length 字节数。
+     */
+    protected void onBytesReceived(byte[] buffer, int offset, int length) {
+        LinkCapture capture = linkCapture;
+        if (capture != null) {
+            capture.append(LinkCapture.DIR_RX, buffer, offset, length);
+        }
+
+        rxBytes += length;
+
+        FrameProcessor fp = frameProcessor;
+        if (fp == null) return;
+
+        for (int i = offset; i < offset + length; i++) {
+            // 传递给 FrameProcessor 进行解码
+            fp.fromFrame(buffer[i]);
+
+            // 检查是否有完整帧等待读取
+            if (fp.framePending()) {
+                FrameProcessor.Data decoded = fp.getData();
+                rxFrames++;
+                if (decoded.getFrameValidity()) {
+                    lastValidFrameNanos = System.nanoTime();
+                }
+                if (listener != null) {
+                    // 传递给监听器 (OscilloManager 将处理线程切换到 UI)
+                    listener.onTransceiverDataReceived(decoded);
+                }
+            }
+        }
+    }
+
+    /**
+     * 发送路径：编码后的帧进入发送队列时调用，用于记录 Tx 方向的数据。
+     */
+    protected void onBytesSent(byte[] buffer, int offset, int length) {
+        LinkCapture capture = linkCapture;
+        if (capture != null) {
+            capture.append(LinkCapture.DIR_TX, buffer, offset, length);
+        }
+    }
+
+    /**
+     * 返回自创建以来接收的原始字节数。
+     */
+    public long getRxByteCount() {
+        return rxBytes;
+    }
+
+    /**
+     * 返回自创建以来解码出的完整帧数 (包括校验失败的帧)。
+     */
+    public long getRxFrameCount() {
+        return rxFrames;
+    }
+
+    /**
+     * 返回最近一次收到校验正确的帧的时间 (System.nanoTime())，尚未收到时为 0。
+     */
+    public long getLastValidFrameNanos() {
+        return lastValidFrameNanos;
+    }
+
+    // --- 连接状态机 ---
+
+    /**
+     * 开始一次新的连接：NOT_CONNECTED -> CONNECTING，并分配新的 epoch。
+     * @return 新连接的 epoch；如果当前不是 NOT_CONNECTED (已连接或正在连接) 则返回 -1。
+     */
+    protected final long beginConnect() {
+        while (true) {
+            long word = stateWord.get();
+            if ((word & STATE_MASK) != STATE_NOT_CONNECTED) {
+                return -1;
+            }
+            long epoch = (word >>> STATE_BITS) + 1;
+            if (stateWord.compareAndSet(word, (epoch << STATE_BITS) | STATE_CONNECTING)) {
+                // 协商的完整性模式只对一次连接有效，新连接从默认格式开始
+                setIntegrityMode(FrameProcessor.INTEGRITY_SUM8);
+                dispatchStatus();
+                return epoch;
+            }
+        }
+    }
+
+    /**
+     * 在 epoch 对应的连接内更改状态并通知监听器。
+     * 合法转换为 CONNECTING -> CONNECTED 和 CONNECTING/CONNECTED -> NOT_CONNECTED。
+     * @param epoch beginConnect() 返回的 epoch。
+     * @param newState STATE_CONNECTED 或 STATE_NOT_CONNECTED。
+     * @return true 如果状态已改变；false 如果 epoch 已过期或转换不合法 (状态不变，不通知)。
+     */
+    protected final boolean updateConnectionStatus(long epoch, int newState) {
+        while (true) {
+            long word = stateWord.get();
+            if ((word >>> STATE_BITS) != epoch) {
+                return false; // 旧连接的任务
+            }
+            int current = (int) (word & STATE_MASK);
+            boolean legal;
+            switch (newState) {
+                case STATE_CONNECTED:
+                    legal = current == STATE_CONNECTING;
+                    break;
+                case STATE_NOT_CONNECTED:
+                    legal = current != STATE_NOT_CONNECTED;
+                    break;
+                default:
+                    legal = false; // CONNECTING 只能由 beginConnect() 进入
+            }
+            if (!legal) {
+                return false;
+            }
+            if (stateWord.compareAndSet(word, (epoch << STATE_BITS) | newState)) {
+                dispatchStatus();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 把 stateWord 的变化报告给监听器。
+     * 如果另一个线程 (或更外层的回调) 正在通知，它会在当前回调返回后接着报告新的状态。
      */
-    protected void updateConnectionStatus(int newState) {
-        this.state = newState;
-        if (listener != null) {
-            listener.onTransceiverConnectionStatusChanged(newState);
+    private void dispatchStatus() {
+        while (notifying.compareAndSet(false, true)) {
+            try {
+                long word;
+                while ((word = stateWord.get()) != notifiedWord) {
+                    notifiedWord = word;
+                    TransceiverListener l = listener;
+                    if (l != null) {
+                        l.onTransceiverConnectionStatusChanged((int) (word & STATE_MASK));
+                    }
+                }
+            } finally {
+                notifying.set(false);
+            }
+            // 在释放 notifying 之后又有转换：重新获得通知权继续
+            if (stateWord.get() == notifiedWord) {
+                return;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,218 @@
+package com.example.circularslider;
+
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransportExecutors 类：传输层 (BluetoothManager、ChannelTransceiver 等) 共享的执行模型。
+ *
+ * 连接、读取和写出不再各自 new Thread()，而是作为 Task 提交到这里的执行器：
+ * - connectExecutor：执行阻塞的连接操作；
+ * - ioExecutor：执行读写循环 (每个连接两个长时间运行的任务)；
+ * - scheduler：共享的定时器 (一个线程)，用于重连退避等延时操作，定时任务本身必须很短。
+ * 默认前两者是带名称和优先级线程的缓存线程池，断开后线程回到池中被下一次连接重用，
+ * 空闲 60 秒后才退出，因此反复连接/断开不会让线程数增长。定时器线程同样在空闲 60 秒后退出。
+ *
+ * 可以通过 Transceiver.setExecutors() 注入自定义的执行器或 ThreadFactory (例如测试中使用固定线程池)。
+ */
+public final class TransportExecutors {
+
+    private static final String TAG = "TransportExecutors";
+
+    // 等待任务结束的最长时间
+    public static final long JOIN_TIMEOUT_MS = 2000;
+
+    // 读写线程略高于默认优先级，减少接收延迟
+    public static final int IO_PRIORITY = Thread.NORM_PRIORITY + 2;
+
+    private static TransportExecutors defaultInstance;
+
+    // 空闲线程的保留时间
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ExecutorService connectExecutor;
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService scheduler;
+
+    public TransportExecutors(ExecutorService connectExecutor, ExecutorService ioExecutor,
+                              ScheduledExecutorService scheduler) {
+        this.connectExecutor = connectExecutor;
+        this.ioExecutor = ioExecutor;
+        this.scheduler = scheduler;
+    }
+
+    public TransportExecutors(ExecutorService connectExecutor, ExecutorService ioExecutor) {
+        this(connectExecutor, ioExecutor,
+                newScheduler(new NamedThreadFactory("transport-timer", Thread.NORM_PRIORITY, true)));
+    }
+
+    public TransportExecutors(ThreadFactory connectFactory, ThreadFactory ioFactory) {
+        this(Executors.newCachedThreadPool(connectFactory), Executors.newCachedThreadPool(ioFactory));
+    }
+
+    /**
+     * 返回进程内共享的默认实例 (守护线程，名称 "transport-connect-N" / "transport-io-N")。
+     */
+    public static synchronized TransportExecutors getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new TransportExecutors(
+                    new NamedThreadFactory("transport-connect", Thread.NORM_PRIORITY, true),
+                    new NamedThreadFactory("transport-io", IO_PRIORITY, true));
+        }
+        return defaultInstance;
+    }
+
+    public ExecutorService getConnectExecutor() {
+        return connectExecutor;
+    }
+
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 创建单线程定时器：取消的任务立即从队列中移除，空闲时线程退出。
+     */
+    public static ScheduledExecutorService newScheduler(ThreadFactory factory) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, factory);
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * 中断所有任务并等待线程退出。不应对 getDefault() 返回的共享实例调用。
+     * @return true 如果所有线程都在超时前退出。
+     */
+    public boolean shutdown(long timeoutMs) throws InterruptedException {
+        scheduler.shutdownNow();
+        connectExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        return connectExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)
+                && ioExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                && scheduler.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    // ----------------------------------------------------------------------
+    // --- 可取消、可等待的任务 ---
+    // ----------------------------------------------------------------------
+
+    /**
+     * 传输任务的基类，替代原来的 Thread 子类。
+     *
+     * cancel() 清除 running 标志、调用 onCancel() (子类在这里关闭套接字或唤醒等待的线程)，
+     * 并中断正在执行该任务的线程；await() 等待 execute() 返回。
+     * 中断只在任务运行期间发出 (与 runner 的设置/清除互斥)，不会误伤池中随后执行的其他任务。
+     */
+    public abstract static class Task implements Runnable {
+        protected volatile boolean running = true;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Thread runner;
+
+        @Override
+        public final void run() {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            try {
+                if (running) {
+                    execute();
+                }
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                Thread.interrupted(); // 清除中断标志后再把线程还给线程池
+                done.countDown();
+            }
+        }
+
+        /**
+         * 任务主体。应定期检查 running，并在被中断或 onCancel() 之后尽快返回。
+         */
+        protected abstract void execute();
+
+        /**
+         * cancel() 时调用：关闭资源或唤醒阻塞的等待。默认不做任何事。
+         */
+        protected void onCancel() {
+        }
+
+        /**
+         * 提交到执行器。
+         * @return false 如果执行器已关闭 (任务被视为已结束)。
+         */
+        public final boolean submit(ExecutorService executor) {
+            try {
+                executor.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                Log.e(TAG, "Task rejected: " + e.getMessage());
+                running = false;
+                done.countDown();
+                return false;
+            }
+        }
+
+        public final void cancel() {
+            running = false;
+            onCancel();
+            synchronized (this) {
+                // 任务取消自己时不中断 (调用者之后可能还要执行监听器回调)
+                if (runner != null && runner != Thread.currentThread()) {
+                    runner.interrupt();
+                }
+            }
+        }
+
+        /**
+         * 等待任务结束。从任务自身的线程调用时立即返回 false (不能等待自己)。
+         * @return true 如果任务已结束。
+         */
+        public final boolean await(long timeoutMs) {
+            synchronized (this) {
+                if (runner == Thread.currentThread()) return false;
+            }
+            try {
+                boolean finished = done.await(timeoutMs, TimeUnit.MILLISECONDS);
+                if (!finished) {
+                    Log.w(TAG, "Task did not stop within " + timeoutMs + " ms: " + getClass().getSimpleName());
+                }
+                return finished;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        public final boolean isFinished() {
+            return done.getCount() == 0;
+        }
+    }
+
+    /**
+     * 取消并等待一组任务 (null 元素被忽略)。先全部取消，再逐个等待。
+     */
+    public static void cancelAndAwait(Task... tasks) {
+        for (Task task : tasks) {
+            if (task != null) task.cancel();
+        }
+        for (Task task : tasks) {
+            if (task != null) task.await(JOIN_TIMEOUT_MS);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.circularslider;
+
+/**
+ * TriggerEngine 类：在采样流上进行增量触发检测 (边沿、电平、迟滞、释抑、预触发)。
+ *
+ * 【工作方式】：
+ * process() 对每个采样只做一次判断，全部状态都是基本类型字段，没有任何分配。
+ * 采样同时写入“镜像环形缓冲区”的两个位置 (i 和 i + ringSize)，
+ * 因此任意长度不超过 ringSize 的最近窗口在数组中都是连续的，
+ * 捕获窗口可以直接以 (数组, 偏移, 长度) 的切片形式交给监听器，无需复制。
+ *
+ * 【迟滞】：上升沿触发要求信号先低于 level - hysteresis (“武装”)，再达到 level；
+ * 下降沿触发则相反。这样可以避免噪声在电平附近反复触发。
+ *
+ * 【线程】：由 OscilloManager 在接收线程上调用 process()；
+ * 配置方法可以从 UI 线程调用，两者通过 synchronized 互斥 (每批采样加锁一次)。
+ */
+public class TriggerEngine {
+
+    // --- 触发边沿 ---
+    public static final int SLOPE_RISING = 0;
+    public static final int SLOPE_FALLING = 1;
+
+    /**
+     * 捕获完成时的回调。切片只在回调期间有效，之后会被新的采样覆盖。
+     */
+    public interface TriggerListener {
+        /**
+         * @param buffer 镜像环形缓冲区 (只读使用)。
+         * @param offset 窗口在 buffer 中的起始位置。
+         * @param length 窗口长度 (= captureLength)。
+         * @param triggerIndex 触发点的绝对采样索引，位于窗口的 preTrigger 处。
+         */
+        void onTriggered(float[] buffer, int offset, int length, long triggerIndex);
+    }
+
+    // --- 配置 ---
+    private int slope = SLOPE_RISING;
+    private float level = 0f;
+    private float hysteresis = 0f;
+    private int holdoff = 0;          // 两次触发之间的最小采样数
+    private int preTrigger = 0;       // 窗口中触发点之前的采样数
+    private int captureLength = 1024; // 窗口总长度
+
+    // --- 镜像环形缓冲区 ---
+    private int ringSize;
+    private float[] ring;
+
+    // --- 检测状态 ---
+    private long total = 0;                       // 已处理的采样数
+    private boolean armed = false;
+    private boolean capturing = false;
+    private long triggerIndex = -1;
+    private long captureEndIndex = -1;            // 窗口最后一个采样的绝对索引
+    private long holdoffUntil = 0;                // 在此索引之前不允许新的触发
+    private long triggerCount = 0;
+
+    private TriggerListener listener;
+
+    public TriggerEngine() {
+        allocateRing();
+    }
+
+    // --------------------------------------------------------
+    // --- 配置 ---
+    // --------------------------------------------------------
+
+    /**
+     * 设置触发条件。
+     * @param slope SLOPE_RISING 或 SLOPE_FALLING。
+     * @param level 触发电平 (校准后的物理量)。
+     * @param hysteresis 迟滞幅度 (>= 0)。
+     */
+    public synchronized void setTrigger(int slope, float level, float hysteresis) {
+        if (slope != SLOPE_RISING && slope != SLOPE_FALLING) {
+            throw new IllegalArgumentException("Unknown slope: " + slope);
+        }
+        this.slope = slope;
+        this.level = level;
+        this.hysteresis = Math.abs(hysteresis);
+        armed = false;
+    }
+
+    /**
+     * 设置捕获窗口。会重新分配环形缓冲区并丢弃正在进行的捕获。
+     * @param captureLength 窗口长度 (采样数)。
+     * @param preTrigger 触发点之前保留的采样数 (0 到 captureLength - 1)。
+     * @param holdoff 触发后的释抑时间 (采样数)。
+     */
+    public synchronized void setCapture(int captureLength, int preTrigger, int holdoff) {
+        if (captureLength <= 0 || preTrigger < 0 || preTrigger >= captureLength || holdoff < 0) {
+            throw new IllegalArgumentException("Invalid capture window");
+        }
+        this.captureLength = captureLength;
+        this.preTrigger = preTrigger;
+        this.holdoff = holdoff;
+        allocateRing();
+    }
+
+    public synchronized void setListener(TriggerListener listener) {
+        this.listener = listener;
+    }
+
+    private void allocateRing() {
+        ringSize = captureLength;
+        ring = new float[ringSize * 2];
+        capturing = false;
+        armed = false;
+        total = 0;
+        holdoffUntil = 0;
+    }
+
+    // --------------------------------------------------------
+    // --- 处理 ---
+    // --------------------------------------------------------
+
+    /**
+     * 处理一批采样 (单次遍历)。
+     * @param samples 采样数组 (例如 SampleDecoder 复用的数组)。
+     * @param offset 起始位置。
+     * @param count 采样数。
+     */
+    public synchronized void process(float[] samples, int offset, int count) {
+        final float[] buf = ring;
+        final int size = ringSize;
+        final boolean rising = slope == SLOPE_RISING;
+        final float armLevel = rising ? level - hysteresis : level + hysteresis;
+
+        for (int i = 0; i < count; i++) {
+            float v = samples[offset + i];
+            long idx = total++;
+            int pos = (int) (idx % size);
+            buf[pos] = v;
+            buf[pos + size] = v;
+
+            // 1. 迟滞：先武装，再检测越过电平
+            boolean fire = false;
+            if (!armed) {
+                armed = rising ? v <= armLevel : v >= armLevel;
+            } else if (rising ? v >= level : v <= level) {
+                armed = false;
+                fire = true;
+            }
+
+            // 2. 触发 (不在捕获或释抑期间，且已有足够的预触发采样)
+            if (fire && !capturing && idx >= holdoffUntil && idx >= preTrigger) {
+                capturing = true;
+                triggerIndex = idx;
+                captureEndIndex = idx - preTrigger + captureLength - 1;
+                holdoffUntil = idx + holdoff;
+                triggerCount++;
+            }
+
+            // 3. 窗口填满：以零拷贝切片的形式发布
+            if (capturing && idx == captureEndIndex) {
+                capturing = false;
+                if (listener != null) {
+                    int start = (int) ((idx + 1 - captureLength) % size);
+                    listener.onTriggered(buf, start, captureLength, triggerIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回触发次数。
+     */
+    public synchronized long getTriggerCount() {
+        return triggerCount;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.circularslider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DeviceSimulator 通过 LoopbackTransceiver 与主机端相连：应答 0x0A 命令，并按配置的采样率发送 0x8F 帧。
+ */
+public class DeviceSimulatorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private LoopbackTransceiver host;
+    private DeviceSimulator simulator;
+    private final HostListener listener = new HostListener();
+
+    @Before
+    public void setUp() {
+        host = new LoopbackTransceiver();
+        simulator = new DeviceSimulator(host.peer());
+        host.attachFrameProcessor(new FrameProcessor());
+        host.setTransceiverListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        host.disconnect();
+        host.peer().disconnect();
+    }
+
+    @Test
+    public void answersCalibrationDutyCycleCommand() throws InterruptedException {
+        simulator.setSampleRate(10_000f);
+        connect();
+
+        CommandEncoder commandEncoder = new CommandEncoder();
+        CalibrationDutyCycleCommand command = new CalibrationDutyCycleCommand();
+        assertTrue(commandEncoder.send(host, command.setPercent(30)));
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (listener.dutyCycleAcks.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, listener.dutyCycleAcks.get());
+        assertEquals(30, listener.lastDutyCyclePercent);
+        assertEquals(0.3f, simulator.getDutyCycle(), 1e-6);
+        assertEquals(0, listener.invalidFrames.get());
+    }
+
+    @Test
+    public void streamsSamplesAtTheConfiguredRate() throws InterruptedException {
+        float sampleRate = 40_000f;
+        int samplesPerFrame = 100;
+        simulator.setSampleRate(sampleRate);
+        simulator.setPayloadSize(samplesPerFrame * 2);
+        connect();
+
+        Thread.sleep(200); // 预热
+        long framesAtStart = listener.dataFrames.get();
+        long samplesAtStart = listener.samples.get();
+        long start = System.nanoTime();
+        Thread.sleep(1000);
+        long frames = listener.dataFrames.get() - framesAtStart;
+        long samples = listener.samples.get() - samplesAtStart;
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double expectedFrames = sampleRate / samplesPerFrame * seconds;
+        assertTrue("frames: " + frames + ", expected about " + expectedFrames,
+                Math.abs(frames - expectedFrames) < expectedFrames * 0.2);
+        assertEquals(frames * samplesPerFrame, samples);
+        assertEquals(0, listener.invalidFrames.get());
+    }
+
+    private void connect() throws InterruptedException {
+        host.connect("loopback");
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while ((host.getStatus() != Transceiver.STATE_CONNECTED
+                || host.peer().getStatus() != Transceiver.STATE_CONNECTED)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Transceiver.STATE_CONNECTED, host.getStatus());
+    }
+
+    /**
+     * 主机端监听器 (在主机端的读取线程上调用)。
+     */
+    private static class HostListener implements TransceiverListener {
+        private final SampleDecoder decoder = new SampleDecoder();
+        final AtomicLong dataFrames = new AtomicLong();
+        final AtomicLong samples = new AtomicLong();
+        final AtomicInteger dutyCycleAcks = new AtomicInteger();
+        final AtomicInteger invalidFrames = new AtomicInteger();
+        volatile int lastDutyCyclePercent = -1;
+
+        @Override
+        public void onTransceiverDataReceived(FrameProcessor.Data data) {
+            if (!data.getFrameValidity()) {
+                invalidFrames.incrementAndGet();
+            } else if (data.getId() == SampleDecoder.CMD_DATA_TRANSFERT) {
+                samples.addAndGet(decoder.decode(data));
+                dataFrames.incrementAndGet();
+            } else if (data.getId() == DeviceSimulator.CMD_CALIBRATION_DUTY_CYCLE) {
+                lastDutyCyclePercent = data.getParamByte(0);
+                dutyCycleAcks.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onTransceiverConnectionStatusChanged(int status) {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.circularslider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个 LoopbackTransceiver 之间的 ReliableLink：在不同的丢帧率和损坏率下，
+ * 每条消息都恰好交付一次，并且按发送顺序交付。
+ */
+public class ReliableLinkTest {
+
+    private static final int MESSAGES = 5000;
+    private static final int MESSAGE_SIZE = 256;
+    private static final int WINDOW = 64;
+    private static final long TIMEOUT_MS = 30000;
+
+    private LoopbackTransceiver host;
+    private LoopbackTransceiver device;
+
+    @Before
+    public void setUp() {
+        host = new LoopbackTransceiver();
+        device = host.peer();
+        host.attachFrameProcessor(new FrameProcessor());
+        device.attachFrameProcessor(new FrameProcessor());
+    }
+
+    @After
+    public void tearDown() {
+        host.disconnect();
+        device.disconnect();
+    }
+
+    @Test
+    public void deliversInOrderOnCleanLink() throws InterruptedException {
+        assertExactInOrderDelivery(0f, 0f);
+    }
+
+    @Test
+    public void deliversInOrderWithLightImpairment() throws InterruptedException {
+        assertExactInOrderDelivery(0.05f, 0.01f);
+    }
+
+    @Test
+    public void deliversInOrderWithModerateImpairment() throws InterruptedException {
+        assertExactInOrderDelivery(0.10f, 0.02f);
+    }
+
+    @Test
+    public void deliversInOrderWithHeavyImpairment() throws InterruptedException {
+        assertExactInOrderDelivery(0.20f, 0.05f);
+    }
+
+    private void assertExactInOrderDelivery(float lossRate, float corruptRate) throws InterruptedException {
+        ReliableLink sender = new ReliableLink(host, WINDOW, MESSAGE_SIZE);
+        ReliableLink receiver = new ReliableLink(device, WINDOW, MESSAGE_SIZE);
+        SequenceChecker checker = new SequenceChecker();
+        receiver.setMessageListener(checker);
+
+        connect();
+        host.setImpairment(lossRate, corruptRate);
+        device.setImpairment(lossRate, corruptRate);
+
+        byte[] message = new byte[MESSAGE_SIZE];
+        for (int i = 0; i < MESSAGES; i++) {
+            fill(message, i);
+            assertTrue("send " + i, sender.send(message));
+        }
+        assertTrue("not acknowledged", sender.awaitAcknowledged(TIMEOUT_MS));
+
+        assertEquals("out of order or corrupted: " + checker.firstError, 0, checker.errors.get());
+        assertEquals(MESSAGES, checker.next.get());
+        assertEquals(MESSAGES, receiver.getMessagesDelivered());
+        if (lossRate > 0) {
+            assertTrue(host.getFramesLost() + device.getFramesLost() > 0);
+            assertTrue(sender.getRetransmissions() > 0);
+        }
+    }
+
+    private void connect() throws InterruptedException {
+        host.connect("loopback");
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((host.getStatus() != Transceiver.STATE_CONNECTED
+                || device.getStatus() != Transceiver.STATE_CONNECTED)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Transceiver.STATE_CONNECTED, host.getStatus());
+        assertEquals(Transceiver.STATE_CONNECTED, device.getStatus());
+    }
+
+    /**
+     * 前 4 字节为序号，其余字节由序号生成 (包含需要转义的字节)。
+     */
+    private static void fill(byte[] message, int seq) {
+        message[0] = (byte) (seq >>> 24);
+        message[1] = (byte) (seq >>> 16);
+        message[2] = (byte) (seq >>> 8);
+        message[3] = (byte) seq;
+        for (int k = 4; k < message.length; k++) {
+            message[k] = (byte) (k * 7 + seq);
+        }
+    }
+
+    /**
+     * 检查收到的消息是否正好是下一个期望的序号且内容完整 (在接收端的读取线程上调用)。
+     */
+    private static class SequenceChecker implements ReliableLink.MessageListener {
+        private final byte[] expected = new byte[MESSAGE_SIZE];
+        final AtomicLong next = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        volatile String firstError;
+
+        @Override
+        public void onMessage(byte[] buffer, int offset, int length) {
+            int seq = (int) next.getAndIncrement();
+            fill(expected, seq);
+            boolean ok = length == MESSAGE_SIZE;
+            for (int k = 0; ok && k < length; k++) {
+                ok = buffer[offset + k] == expected[k];
+            }
+            if (!ok && errors.getAndIncrement() == 0) {
+                firstError = "message " + seq + " (length " + length + ")";
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.circularslider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 记录 -> 回放的往返测试：LinkCapture 写入的 Rx 字节块经 ReplayTransceiver 回放后，
+ * 解码出的帧数、顺序和内容与写入的完全相同 (在 JVM 上运行，不需要设备)。
+ */
+public class ReplayTransceiverTest {
+
+    private static final int SEGMENT_SIZE = 8 * 1024; // 小段：测试中会多次换段
+    private static final int CHUNK_SIZE = 37;         // 与帧边界不对齐
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("capture").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replaysEveryRecordedFrameInOrder() throws Exception {
+        int frames = 2000;
+        long bytes = record(frames, 0);
+
+        CountingListener listener = new CountingListener();
+        ReplayTransceiver replay = replay(listener);
+
+        assertEquals(bytes, replay.getReplayedBytes());
+        assertEquals(frames, replay.getReplayedFrames());
+        assertEquals(frames, listener.frames);
+        assertEquals(frames, listener.validFrames);
+        assertEquals("out-of-order frames", 0, listener.outOfOrder);
+    }
+
+    @Test
+    public void restartedCaptureReplaysOnlyTheNewSession() throws Exception {
+        record(3000, 0);
+        int frames = 25;
+        record(frames, 1);
+
+        CountingListener listener = new CountingListener();
+        ReplayTransceiver replay = replay(listener);
+
+        assertEquals(frames, replay.getReplayedFrames());
+        assertEquals(frames, listener.validFrames);
+        assertEquals("out-of-order frames", 0, listener.outOfOrder);
+    }
+
+    @Test
+    public void replaysRecordsLargerThanTheInitialBufferWhole() throws Exception {
+        int frames = 3000;
+        // 整个流作为一条 Rx 记录 (超过 ReplayTransceiver 的初始缓冲区 64 KB)
+        long bytes = record(frames, 0, 1024 * 1024, Integer.MAX_VALUE);
+        assertTrue("record too small for the test: " + bytes, bytes > 64 * 1024);
+
+        CountingListener listener = new CountingListener();
+        ReplayTransceiver replay = replay(listener);
+
+        assertEquals(bytes, replay.getReplayedBytes());
+        assertEquals(frames, listener.frames);
+        assertEquals(frames, listener.validFrames);
+        assertEquals("out-of-order frames", 0, listener.outOfOrder);
+    }
+
+    private long record(int count, int seed) throws Exception {
+        return record(count, seed, SEGMENT_SIZE, CHUNK_SIZE);
+    }
+
+    /**
+     * 记录 count 个 dataTransfert 帧 (参数以 16 位序号开头)，Rx 按固定大小分块，中间夹杂 Tx 记录。
+     * @return 记录的 Rx 字节数。
+     */
+    private long record(int count, int seed, int segmentSize, int chunkSize) throws Exception {
+        FrameProcessor encoder = new FrameProcessor();
+        byte[] payload = new byte[1 + 2 + 64];
+        byte[] stream = new byte[count * FrameProcessor.maxFrameSize(payload.length)];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int params = 2 + (i * 7 + seed) % 64;
+            payload[0] = SampleDecoder.CMD_DATA_TRANSFERT;
+            payload[1] = (byte) (i >> 8);
+            payload[2] = (byte) i;
+            for (int k = 3; k < 1 + params; k++) {
+                payload[k] = (byte) (i + k);
+            }
+            length += encoder.toFrame(payload, 0, 1 + params, stream, length);
+        }
+
+        LinkCapture capture = new LinkCapture(directory, segmentSize);
+        capture.start();
+        try {
+            for (int offset = 0; offset < length; offset += Math.min(chunkSize, length - offset)) {
+                append(capture, LinkCapture.DIR_RX, stream, offset, Math.min(chunkSize, length - offset));
+                if (offset % (CHUNK_SIZE * 16) == 0) {
+                    append(capture, LinkCapture.DIR_TX, stream, 0, 4); // 回放时应被忽略
+                }
+            }
+        } finally {
+            capture.stop();
+        }
+        return length;
+    }
+
+    private static void append(LinkCapture capture, byte direction, byte[] data, int offset, int length)
+            throws InterruptedException {
+        // 下一个段尚未就绪时记录被丢弃：测试中重试，保证记录完整
+        while (!capture.append(direction, data, offset, length)) {
+            Thread.sleep(1);
+        }
+    }
+
+    private ReplayTransceiver replay(TransceiverListener listener) throws InterruptedException {
+        ReplayTransceiver replay = new ReplayTransceiver();
+        replay.attachFrameProcessor(new FrameProcessor());
+        replay.setTransceiverListener(listener);
+        replay.setPacing(ReplayTransceiver.PACING_AS_FAST_AS_POSSIBLE, 1.0);
+        replay.connect(directory.getPath());
+        replay.awaitCompletion();
+        assertTrue(replay.getStatus() == Transceiver.STATE_NOT_CONNECTED);
+        return replay;
+    }
+
+    private static class CountingListener implements TransceiverListener {
+        int frames;
+        int validFrames;
+        int outOfOrder;
+
+        @Override
+        public void onTransceiverDataReceived(FrameProcessor.Data data) {
+            if (data.getFrameValidity() && data.getId() == SampleDecoder.CMD_DATA_TRANSFERT) {
+                int sequence = (data.getParamByte(0) & 0xFF) << 8 | (data.getParamByte(1) & 0xFF);
+                if (sequence != (validFrames & 0xFFFF)) {
+                    outOfOrder++;
+                }
+                validFrames++;
+            }
+            frames++;
+        }
+
+        @Override
+        public void onTransceiverConnectionStatusChanged(int status) {
+        }
+    }
+}
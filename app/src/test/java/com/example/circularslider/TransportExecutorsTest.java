@@ -0,0 +1,86 @@
+package com.example.circularslider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 反复连接/断开时，传输层的线程被线程池重用：创建的线程数和存活的线程数都不随循环次数增长。
+ */
+public class TransportExecutorsTest {
+
+    private static final int CYCLES = 5000;
+    private static final long TIMEOUT_MS = 5000;
+
+    // 每个循环最多同时有 2 个连接任务和 4 个读写任务 (两端各一读一写)，加上退出中的任务
+    private static final int MAX_CONNECT_THREADS = 4;
+    private static final int MAX_IO_THREADS = 8;
+
+    private NamedThreadFactory connectFactory;
+    private NamedThreadFactory ioFactory;
+    private TransportExecutors executors;
+    private LoopbackTransceiver host;
+
+    @Before
+    public void setUp() {
+        connectFactory = new NamedThreadFactory("test-connect", Thread.NORM_PRIORITY, true);
+        ioFactory = new NamedThreadFactory("test-io", TransportExecutors.IO_PRIORITY, true);
+        executors = new TransportExecutors(connectFactory, ioFactory);
+        host = new LoopbackTransceiver();
+        host.setExecutors(executors);
+        host.peer().setExecutors(executors);
+        host.attachFrameProcessor(new FrameProcessor());
+        host.peer().attachFrameProcessor(new FrameProcessor());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        host.disconnect();
+        host.peer().disconnect();
+        assertTrue(executors.shutdown(TIMEOUT_MS));
+    }
+
+    @Test
+    public void threadCountStaysFlatAcrossReconnectCycles() throws InterruptedException {
+        for (int i = 0; i < CYCLES; i++) {
+            host.connect("loopback");
+            awaitStatus(host, Transceiver.STATE_CONNECTED);
+            awaitStatus(host.peer(), Transceiver.STATE_CONNECTED);
+
+            host.disconnect();
+            host.peer().disconnect();
+            assertEquals(Transceiver.STATE_NOT_CONNECTED, host.getStatus());
+            assertEquals(Transceiver.STATE_NOT_CONNECTED, host.peer().getStatus());
+        }
+
+        assertTrue("connect threads created: " + connectFactory.getCreatedCount(),
+                connectFactory.getCreatedCount() <= MAX_CONNECT_THREADS);
+        assertTrue("io threads created: " + ioFactory.getCreatedCount(),
+                ioFactory.getCreatedCount() <= MAX_IO_THREADS);
+        int live = countLiveThreads("test-");
+        assertTrue("live transport threads: " + live, live <= MAX_CONNECT_THREADS + MAX_IO_THREADS);
+    }
+
+    private static void awaitStatus(Transceiver transceiver, int status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (transceiver.getStatus() != status) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Status " + transceiver.getStatus() + ", expected " + status);
+            }
+            Thread.sleep(0, 100_000);
+        }
+    }
+
+    private static int countLiveThreads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}